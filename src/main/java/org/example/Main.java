@@ -1,6 +1,7 @@
 package org.example;
 
 import org.example.core.ApplicationInitializer;
+import org.example.core.HotKeyTracker;
 import org.example.database.MongoDBClient;
 import org.example.core.WebServer;
 import org.slf4j.Logger;
@@ -32,6 +33,12 @@ public class Main {
         MongoDBClient mongoDBClient = applicationInitializer.getMongoDBClient();
         logger.info("Server Information: Host --> {} And port --> {}", System.getProperty("HOST"), System.getProperty("PORT"));
 
+        // The caches are filled with the blobs that were hot before the last shutdown, before the server accepts requests.
+        logger.info("[...] Pre-warming caches...⌛");
+        applicationInitializer.getCacheWarmer().warm();
+        HotKeyTracker hotKeyTracker = applicationInitializer.getHotKeyTracker();
+        hotKeyTracker.startPersisting();
+
         WebServer webServer = new WebServer();
         webServer.startServer();
 
@@ -39,6 +46,8 @@ public class Main {
         // Add a shutdown hook to close the database connection when the application is shutting down.
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             logger.info("Application is shutting down, closing database connection... \uD83D\uDEA8");
+            applicationInitializer.getRequestExecutor().shutdown();
+            hotKeyTracker.persist();
             mongoDBClient.close();
         }));
 
@@ -7,6 +7,7 @@ public final class AWSConstants {
     public static final String AWS4_REQUEST = "aws4_request";
     public static final String HMAC_ALGORITHM = "HmacSHA256";
     public static final String AWS_SERVICE = "s3";
+    public static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
 
     private AWSConstants() {
     }
@@ -1,12 +1,12 @@
 package org.example.aws;
 
+import org.example.utils.FileUtils;
 import org.example.utils.RequestUtils;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 
@@ -89,13 +89,7 @@ public class AWSV4SignatureBase {
      * @return hashed string
      */
     public String hash(String text) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hashedBytes = md.digest(text.getBytes(StandardCharsets.UTF_8));
-            return bytesToHex(hashedBytes);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        }
+        return FileUtils.hash(text);
     }
 
     /**
@@ -105,11 +99,7 @@ public class AWSV4SignatureBase {
      * @return hex string
      */
     private String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
-        }
-        return sb.toString();
+        return FileUtils.toHex(bytes);
     }
 
     /**
@@ -8,9 +8,13 @@ import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.ParseException;
 import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.InputStreamEntity;
+import org.example.exception.BlobNotFoundException;
+import org.example.model.BlobRange;
 import org.example.model.CanonicalRequest;
 import org.example.utils.FileUtils;
 import org.example.utils.RequestUtils;
@@ -18,7 +22,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 /**
@@ -27,6 +32,8 @@ import java.util.*;
  */
 public class S3Client {
     private static final Logger logger = LoggerFactory.getLogger(S3Client.class);
+    // SHA-256 of an empty body, used to sign requests without a payload.
+    private static final String EMPTY_PAYLOAD_HASH = FileUtils.hash("");
 
     private AWSV4SignatureGenerator signatureBuilder;
     private final Date date = new Date();
@@ -67,21 +74,69 @@ public class S3Client {
      * Gets an object from S3.
      *
      * @param key The key of the object to get.
-     * @return The object data as a string.
+     * @return The raw bytes of the object.
+     * @throws BlobNotFoundException If the object does not exist.
+     * @throws UncheckedIOException  If the request fails, S3 answers with an error, or the body cannot be read.
      */
-    public String getObjectFromS3(String key) {
-        String hashedPayload = getHashedPayload("");
+    public byte[] getObjectFromS3(String key) {
+        CloseableHttpResponse httpResponse = executeRequest(createGetRequest(key));
+        if (httpResponse == null) {
+            throw new UncheckedIOException(new IOException("Error retrieving object " + key + " from S3"));
+        }
+        if (httpResponse.getCode() == HttpStatus.SC_NOT_FOUND) {
+            closeResponse(httpResponse);
+            throw new BlobNotFoundException(key);
+        }
+        if (httpResponse.getCode() < HttpStatus.SC_SUCCESS || httpResponse.getCode() >= HttpStatus.SC_REDIRECTION) {
+            closeResponse(httpResponse);
+            throw new UncheckedIOException(new IOException("Error retrieving object " + key + " from S3: status " + httpResponse.getCode()));
+        }
+        return readResponseBytes(httpResponse);
+    }
+
+    /**
+     * Opens a streaming GET for an object in S3.
+     * The response body is not consumed, the caller must close the response once it has been read.
+     *
+     * @param key The key of the object to get.
+     * @return The HTTP response, or null if the request could not be executed.
+     */
+    public CloseableHttpResponse openObjectFromS3(String key) {
+        return executeRequest(createGetRequest(key));
+    }
+
+    /**
+     * Opens a streaming ranged GET for an object in S3, so only the requested bytes leave the bucket.
+     * The Range header is not part of the signed headers, which S3 allows.
+     * The response body is not consumed, the caller must close the response once it has been read.
+     *
+     * @param key   The key of the object to get.
+     * @param range The requested byte range.
+     * @return The HTTP response, or null if the request could not be executed.
+     */
+    public CloseableHttpResponse openObjectFromS3(String key, BlobRange range) {
+        HttpGet httpGet = createGetRequest(key);
+        if (!range.isFull()) {
+            httpGet.setHeader("Range", range.toHeaderValue());
+        }
+        return executeRequest(httpGet);
+    }
+
+    /**
+     * Creates a signed GET request for the provided key.
+     *
+     * @param key The key of the object to get.
+     * @return The signed GET request.
+     */
+    private HttpGet createGetRequest(String key) {
+        String hashedPayload = EMPTY_PAYLOAD_HASH;
         SortedMap<String, String> canonicalHeaders = getCanonicalHeaders(hashedPayload);
 
         CanonicalRequest canonicalRequest = new CanonicalRequest("GET", "/" + key, "", canonicalHeaders, getSignedHeaders(canonicalHeaders), hashedPayload);
 
         HttpGet httpGet = new HttpGet("https://" + System.getProperty("S3_BUCKET") + ".s3." + System.getProperty("S3_REGION") + ".amazonaws.com/" + key);
         setRequestHeaders(httpGet, canonicalHeaders, hashedPayload, canonicalRequest);
-
-        CloseableHttpResponse httpResponse = executeRequest(httpGet);
-
-
-        return handleResponse(httpResponse);
+        return httpGet;
     }
 
     /**
@@ -91,38 +146,74 @@ public class S3Client {
      * @param data The data of the object to put.
      * @return The HTTP response.
      */
-    public HttpResponse putObjectToS3(String key, String data) {
-        byte[] decodedData = data.getBytes();
-        String hashedPayload = getHashedPayload(FileUtils.encodeStringToBase64(data));
+    public HttpResponse putObjectToS3(String key, byte[] data) {
+        return putObjectToS3(key, data, FileUtils.hashBytes(data));
+    }
 
+    /**
+     * Puts an object to S3 whose SHA-256 is already known, so the payload is not hashed again to sign the request.
+     *
+     * @param key           The key of the object to put.
+     * @param data          The data of the object to put.
+     * @param hashedPayload The hex encoded SHA-256 of the data.
+     * @return The HTTP response.
+     * @throws UncheckedIOException If the request fails or S3 does not store the object.
+     */
+    public HttpResponse putObjectToS3(String key, byte[] data, String hashedPayload) {
         SortedMap<String, String> canonicalHeaders = getCanonicalHeaders(hashedPayload);
 
         CanonicalRequest canonicalRequest = new CanonicalRequest("PUT", "/" + key, "", canonicalHeaders, getSignedHeaders(canonicalHeaders), hashedPayload);
 
         HttpPut httpPut = new HttpPut("https://" + System.getProperty("S3_BUCKET") + ".s3." + System.getProperty("S3_REGION") + ".amazonaws.com/" + key);
         setRequestHeaders(httpPut, canonicalHeaders, hashedPayload, canonicalRequest);
-        httpPut.setEntity(new ByteArrayEntity(decodedData, ContentType.APPLICATION_OCTET_STREAM));
+        httpPut.setEntity(new ByteArrayEntity(data, ContentType.APPLICATION_OCTET_STREAM));
 
         CloseableHttpResponse httpResponse = executeRequest(httpPut);
 
-        handleResponse(httpResponse);
+        checkPutResponse(key, httpResponse);
 
         return httpResponse;
     }
 
     /**
-     * Gets the hashed payload from the provided base64 data.
+     * Streams an object to S3 without buffering it.
+     * The payload is sent as UNSIGNED-PAYLOAD since its hash is not known until the last byte has been read,
+     * so S3 needs the exact content length instead.
      *
-     * @param base64Data The base64 data to hash.
-     * @return The hashed payload.
+     * @param key  The key of the object to put.
+     * @param data The raw bytes of the object.
+     * @param size The exact number of bytes in the stream.
+     * @return The HTTP response.
      */
-    private String getHashedPayload(String base64Data) {
-        try {
-            return FileUtils.hashStringContent(base64Data);
-        } catch (NoSuchAlgorithmException e) {
-            logger.error("Error hashing payload: {}", e.getMessage());
-            throw new RuntimeException(e);
-        }
+    public HttpResponse putObjectToS3(String key, InputStream data, long size) {
+        return putObjectToS3(key, data, size, AWSConstants.UNSIGNED_PAYLOAD);
+    }
+
+    /**
+     * Streams an object to S3 without buffering it, signed with a payload hash that is already known,
+     * such as the SHA-256 computed while an upload was spooled.
+     *
+     * @param key           The key of the object to put.
+     * @param data          The raw bytes of the object.
+     * @param size          The exact number of bytes in the stream.
+     * @param hashedPayload The hex encoded SHA-256 of the stream, or UNSIGNED-PAYLOAD.
+     * @return The HTTP response.
+     * @throws UncheckedIOException If the request fails or S3 does not store the object.
+     */
+    public HttpResponse putObjectToS3(String key, InputStream data, long size, String hashedPayload) {
+        SortedMap<String, String> canonicalHeaders = getCanonicalHeaders(hashedPayload);
+
+        CanonicalRequest canonicalRequest = new CanonicalRequest("PUT", "/" + key, "", canonicalHeaders, getSignedHeaders(canonicalHeaders), hashedPayload);
+
+        HttpPut httpPut = new HttpPut("https://" + System.getProperty("S3_BUCKET") + ".s3." + System.getProperty("S3_REGION") + ".amazonaws.com/" + key);
+        setRequestHeaders(httpPut, canonicalHeaders, hashedPayload, canonicalRequest);
+        httpPut.setEntity(new InputStreamEntity(data, size, ContentType.APPLICATION_OCTET_STREAM));
+
+        CloseableHttpResponse httpResponse = executeRequest(httpPut);
+
+        checkPutResponse(key, httpResponse);
+
+        return httpResponse;
     }
 
     /**
@@ -164,6 +255,56 @@ public class S3Client {
         httpRequest.setHeader(AWSConstants.X_AMZ_CONTENT_SHA256, hashedPayload);
     }
 
+    /**
+     * Reads the body of a response as raw bytes, without decoding it as text, and releases the response.
+     *
+     * @param httpResponse The HTTP response.
+     * @return The body.
+     * @throws UncheckedIOException If the body cannot be read.
+     */
+    private byte[] readResponseBytes(CloseableHttpResponse httpResponse) {
+        logger.info("Response: {}", httpResponse.getCode());
+        try {
+            return EntityUtils.toByteArray(httpResponse.getEntity());
+        } catch (IOException e) {
+            logger.error("Error handling response: {}", e.getMessage());
+            throw new UncheckedIOException(e);
+        } finally {
+            closeResponse(httpResponse);
+        }
+    }
+
+    /**
+     * Releases a response whose body is no longer needed.
+     *
+     * @param httpResponse The HTTP response.
+     */
+    private void closeResponse(CloseableHttpResponse httpResponse) {
+        try {
+            httpResponse.close();
+        } catch (IOException e) {
+            logger.warn("Error closing response: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Checks that S3 stored an uploaded object, so no metadata is written for an object that is not in the bucket.
+     * The response body is logged and consumed either way.
+     *
+     * @param key          The key of the object.
+     * @param httpResponse The HTTP response of the PUT, or null if the request could not be executed.
+     * @throws UncheckedIOException If the request failed or S3 answered with anything but 2xx.
+     */
+    private void checkPutResponse(String key, CloseableHttpResponse httpResponse) {
+        if (httpResponse == null) {
+            throw new UncheckedIOException(new IOException("Error uploading object " + key + " to S3"));
+        }
+        handleResponse(httpResponse);
+        if (httpResponse.getCode() < HttpStatus.SC_SUCCESS || httpResponse.getCode() >= HttpStatus.SC_REDIRECTION) {
+            throw new UncheckedIOException(new IOException("Error uploading object " + key + " to S3: status " + httpResponse.getCode()));
+        }
+    }
+
     /**
      * Handles the response from the HTTP request.
      *
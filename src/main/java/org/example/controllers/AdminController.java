@@ -0,0 +1,124 @@
+package org.example.controllers;
+
+import com.google.inject.Inject;
+import io.undertow.server.HttpHandler;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.example.annontations.ApiEndpoint;
+import org.example.core.BlobCache;
+import org.example.core.DiskBlobCache;
+import org.example.core.HotKeyTracker;
+import org.example.core.JsonCodec;
+import org.example.core.OffHeapBlobCache;
+import org.example.core.ServerProfile;
+import org.example.core.SingleFlight;
+import org.example.database.MetadataCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * This class is responsible for handling administrative requests.
+ * It exposes the runtime configuration of the server so deployments can be inspected and tuned.
+ */
+public class AdminController {
+    private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
+    private final ServerProfile serverProfile;
+    private final JsonCodec jsonCodec;
+    private final BlobCache blobCache;
+    private final OffHeapBlobCache offHeapBlobCache;
+    private final DiskBlobCache diskBlobCache;
+    private final MetadataCache metadataCache;
+    private final SingleFlight singleFlight;
+    private final HotKeyTracker hotKeyTracker;
+
+    /**
+     * Constructor for the AdminController.
+     *
+     * @param serverProfile    The active ServerProfile.
+     * @param jsonCodec        The JsonCodec used for response bodies.
+     * @param blobCache        The shared blob cache.
+     * @param offHeapBlobCache The shared off-heap blob cache.
+     * @param diskBlobCache    The shared disk cache in front of remote backends.
+     * @param metadataCache    The shared cache in front of the "metadata" collection.
+     * @param singleFlight     The shared SingleFlight that coalesces concurrent reads.
+     * @param hotKeyTracker    The shared tracker of the most read blobs.
+     */
+    @Inject
+    public AdminController(ServerProfile serverProfile, JsonCodec jsonCodec, BlobCache blobCache, OffHeapBlobCache offHeapBlobCache,
+                           DiskBlobCache diskBlobCache, MetadataCache metadataCache, SingleFlight singleFlight,
+                           HotKeyTracker hotKeyTracker) {
+        this.serverProfile = serverProfile;
+        this.jsonCodec = jsonCodec;
+        this.blobCache = blobCache;
+        this.offHeapBlobCache = offHeapBlobCache;
+        this.diskBlobCache = diskBlobCache;
+        this.metadataCache = metadataCache;
+        this.singleFlight = singleFlight;
+        this.hotKeyTracker = hotKeyTracker;
+    }
+
+    /**
+     * Endpoint for reading the active server profile.
+     * Expects a GET request at path "/v1/admin/server-profile" and returns the effective Undertow tuning values as JSON.
+     *
+     * @return HttpHandler for handling the server profile request.
+     */
+    @ApiEndpoint(method = "GET", path = "/v1/admin/server-profile")
+    public HttpHandler getServerProfile() {
+        return exchange -> {
+            try {
+                exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+                exchange.getResponseSender().send(jsonCodec.writeAsString(serverProfile));
+            } catch (Exception e) {
+                logger.error("Failed to serialize server profile", e);
+                exchange.setStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
+                exchange.endExchange();
+            }
+        };
+    }
+
+    /**
+     * Endpoint for reading the blob cache statistics.
+     * Expects a GET request at path "/v1/admin/cache" and returns the budget, current size and hit, miss and eviction counters
+     * of the heap, off-heap and disk tiers and of the metadata cache, and the number of coalesced reads, as JSON.
+     *
+     * @return HttpHandler for handling the cache statistics request.
+     */
+    @ApiEndpoint(method = "GET", path = "/v1/admin/cache")
+    public HttpHandler getCacheStats() {
+        return exchange -> {
+            try {
+                exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+                exchange.getResponseSender().send(jsonCodec.writeAsString(Map.of("heap", blobCache, "offHeap", offHeapBlobCache, "disk", diskBlobCache,
+                        "metadata", metadataCache, "coalescing", singleFlight)));
+            } catch (Exception e) {
+                logger.error("Failed to serialize cache statistics", e);
+                exchange.setStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
+                exchange.endExchange();
+            }
+        };
+    }
+
+    /**
+     * Endpoint for reading the most frequently read blobs.
+     * Expects a GET request at path "/v1/admin/hot-keys" and returns the hot ids with their estimated read counts,
+     * hottest first, as JSON. These are the blobs the caches are pre-warmed with after a restart.
+     *
+     * @return HttpHandler for handling the hot keys request.
+     */
+    @ApiEndpoint(method = "GET", path = "/v1/admin/hot-keys")
+    public HttpHandler getHotKeys() {
+        return exchange -> {
+            try {
+                exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+                exchange.getResponseSender().send(jsonCodec.writeAsString(hotKeyTracker));
+            } catch (Exception e) {
+                logger.error("Failed to serialize hot keys", e);
+                exchange.setStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
+                exchange.endExchange();
+            }
+        };
+    }
+}
@@ -1,25 +1,50 @@
 package org.example.controllers;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.google.inject.Inject;
 import com.mongodb.MongoWriteException;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.DateUtils;
+import io.undertow.util.ETag;
+import io.undertow.util.ETagUtils;
+import io.undertow.util.Headers;
 import io.undertow.util.StatusCodes;
 import org.example.annontations.ApiEndpoint;
+import org.example.core.HotKeyTracker;
+import org.example.core.JsonCodec;
 import org.example.exception.BlobNotFoundException;
+import org.example.exception.BlobTooLargeException;
 import org.example.exception.DuplicateBlobException;
 import org.example.exception.InvalidJsonException;
 import org.example.exception.InvalidRequestException;
+import org.example.exception.RangeNotSatisfiableException;
+import org.example.model.BatchGetRequest;
+import org.example.model.BatchItemResult;
 import org.example.model.Blob;
+import org.example.model.BlobContent;
+import org.example.model.BlobRange;
 import org.example.model.BlobDto;
 import org.example.services.StorageService;
 import org.example.utils.FileUtils;
-import org.example.utils.ParsingUtils;
 import org.example.utils.RequestUtils;
+import org.example.utils.SpillBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * This class is responsible for handling storage related requests.
@@ -29,18 +54,51 @@ public class StorageController {
 
 
     private static final Logger logger = LoggerFactory.getLogger(StorageController.class);
+    private static final String OCTET_STREAM = "application/octet-stream";
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String JSON = "application/json";
+    private static final int JSON_SPILL_THRESHOLD = Integer.getInteger("JSON_SPILL_THRESHOLD", 1024 * 1024);
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int BATCH_MAX_IDS = Integer.getInteger("BATCH_MAX_IDS", 1000);
+    private static final int BATCH_WRITE_SIZE = Integer.getInteger("BATCH_WRITE_SIZE", 500);
 
     private final StorageService storageService;
+    private final JsonCodec jsonCodec;
+    private final HotKeyTracker hotKeyTracker;
 
     /**
      * Constructor for the StorageController.
-     * Initializes the storageService with the provided StorageService.
+     * Initializes the storageService with the provided StorageService and a JsonCodec of its own.
      *
      * @param storageService The StorageService.
      */
-    @Inject
     public StorageController(StorageService storageService) {
+        this(storageService, new JsonCodec());
+    }
+
+    /**
+     * Constructor for the StorageController without hot key tracking.
+     *
+     * @param storageService The StorageService.
+     * @param jsonCodec      The JsonCodec used for request and response bodies.
+     */
+    public StorageController(StorageService storageService, JsonCodec jsonCodec) {
+        this(storageService, jsonCodec, new HotKeyTracker(0, 1, null, 0));
+    }
+
+    /**
+     * Constructor for the StorageController.
+     * Initializes the storageService, the shared jsonCodec and the shared hotKeyTracker.
+     *
+     * @param storageService The StorageService.
+     * @param jsonCodec      The JsonCodec used for request and response bodies.
+     * @param hotKeyTracker  The HotKeyTracker that counts reads of blobs that exist.
+     */
+    @Inject
+    public StorageController(StorageService storageService, JsonCodec jsonCodec, HotKeyTracker hotKeyTracker) {
         this.storageService = storageService;
+        this.jsonCodec = jsonCodec;
+        this.hotKeyTracker = hotKeyTracker;
     }
 
     /**
@@ -49,34 +107,84 @@ public class StorageController {
      * The request body should contain a JSON object with the following fields:
      * - id: The id of the blob.
      * - data: The data of the blob.
+     * The body is parsed incrementally and the base64 data is decoded while it is read. Decoded payloads up to
+     * {@link #JSON_SPILL_THRESHOLD} bytes are kept in memory, larger ones are spilled to a temporary file and
+     * streamed to the backend from there, so heap use per upload does not grow with the payload. Decoding stops with
+     * 413 as soon as the data exceeds the largest blob size, so nothing beyond it is written to disk.
      *
      * @return HttpHandler for handling the save blob request.
      */
     @ApiEndpoint(method = "POST", path = "/v1/blobs")
     public HttpHandler saveBlob() {
         return exchange -> {
-            exchange.getRequestReceiver().receiveFullBytes((ex, data) -> {
-                try {
-                    BlobDto blobData = ParsingUtils.parseJson(new ByteArrayInputStream(data), BlobDto.class);
-                    blobData.setData(FileUtils.decodeBase64ToString(blobData.getData()));
-                    storageService.saveBlob(blobData);
-                    exchange.setStatusCode(StatusCodes.CREATED);
-                } catch (DuplicateBlobException e) {
-                    handleDuplicateBlobException(ex, e);
-                } catch (InvalidRequestException | InvalidJsonException e) {
-                    handleInvalidRequestException(ex, e);
-                } catch (Exception e) {
-                    handleException(ex, e);
+            try (SpillBuffer data = new SpillBuffer(JSON_SPILL_THRESHOLD, FileUtils.MAX_BLOB_SIZE)) {
+                String id = jsonCodec.readBlobUpload(exchange.getInputStream(), data);
+                if (!data.isSpilled()) {
+                    storageService.saveBlob(new BlobDto(id, data.toByteArray()));
+                } else {
+                    try (InputStream in = data.openInputStream()) {
+                        storageService.saveBlob(id, in, data.size());
+                    }
                 }
-            }, this::handleException);
+                exchange.setStatusCode(StatusCodes.CREATED);
+            } catch (DuplicateBlobException e) {
+                handleDuplicateBlobException(exchange, e);
+            } catch (BlobTooLargeException e) {
+                handleBlobTooLargeException(exchange, e);
+            } catch (InvalidRequestException | InvalidJsonException e) {
+                handleInvalidRequestException(exchange, e);
+            } catch (Exception e) {
+                handleException(exchange, e);
+            }
         };
     }
 
 
+    /**
+     * Endpoint for uploading a blob as raw bytes.
+     * Expects a PUT request at path "/v1/blobs/{id}" with an application/octet-stream body.
+     * The body is streamed straight to the storage backend, so no JSON parsing or base64 decoding takes place
+     * and heap use stays bounded regardless of the payload size.
+     * A body sent with "Content-Encoding: gzip" or "deflate" is stored compressed as it is, and later sent without
+     * recompressing to clients that accept that coding.
+     *
+     * @return HttpHandler for handling the raw upload request.
+     */
+    @ApiEndpoint(method = "PUT", path = "/v1/blobs/{id}")
+    public HttpHandler uploadBlob() {
+        return exchange -> {
+            try {
+                String id = exchange.getQueryParameters().get("id").getFirst();
+                String encoding = exchange.getRequestHeaders().getFirst(Headers.CONTENT_ENCODING);
+                if (encoding == null || encoding.equalsIgnoreCase("identity")) {
+                    storageService.saveBlob(id, exchange.getInputStream(), exchange.getRequestContentLength());
+                } else if (FileUtils.isSupportedEncoding(encoding)) {
+                    storageService.saveBlob(id, exchange.getInputStream(), exchange.getRequestContentLength(), encoding.toLowerCase());
+                } else {
+                    exchange.setStatusCode(StatusCodes.UNSUPPORTED_MEDIA_TYPE);
+                    RequestUtils.sendResponse(exchange, "Unsupported Content-Encoding: " + encoding);
+                    return;
+                }
+                exchange.setStatusCode(StatusCodes.CREATED);
+            } catch (DuplicateBlobException e) {
+                handleDuplicateBlobException(exchange, e);
+            } catch (BlobTooLargeException e) {
+                handleBlobTooLargeException(exchange, e);
+            } catch (InvalidRequestException e) {
+                handleInvalidRequestException(exchange, e);
+            } catch (Exception e) {
+                handleException(exchange, e);
+            }
+        };
+    }
+
     /**
      * Endpoint for retrieving a blob.
      * Expects a GET request at path "/v1/blobs/{id}".
      * The 'id' path parameter should be the id of the blob to retrieve.
+     * If the request asks for "Accept: application/octet-stream" the raw bytes are streamed instead of the JSON document.
+     * Responses carry an ETag derived from the content hash: the raw bytes a strong one, the JSON document a weak one
+     * with a "-json" suffix. An "If-None-Match" that still matches is answered with 304 after a metadata-only lookup.
      *
      * @return HttpHandler for handling the get blob request.
      */
@@ -85,14 +193,84 @@ public class StorageController {
         return exchange -> {
             try {
                 String id = exchange.getQueryParameters().get("id").getFirst();
+                if (acceptsRawContent(exchange)) {
+                    sendBlobContent(exchange, id);
+                    return;
+                }
+                if (exchange.getRequestHeaders().contains(Headers.IF_NONE_MATCH)) {
+                    Blob metadata = storageService.getMetadata(id);
+                    if (isNotModified(exchange, metadata, toJsonETag(metadata))) {
+                        hotKeyTracker.record(id);
+                        return;
+                    }
+                }
                 Blob blob = storageService.getBlob(id);
+                hotKeyTracker.record(id);
+                applyCacheHeaders(exchange, blob, toJsonETag(blob));
+                exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, JSON);
+                sendBlobJson(exchange, blob);
+                logger.info("Retrieved blob with id {}", id);
+            } catch (BlobNotFoundException e) {
+                exchange.setStatusCode(StatusCodes.NOT_FOUND);
+                exchange.getResponseSender().send(e.getMessage());
+            }
+        };
+    }
 
-                blob.setData(FileUtils.encodeStringToBase64(blob.getData()));
-                // Convert blob to JSON
-                String blobJson = ParsingUtils.objectToJson(blob);
-                // send blob data in response
-                exchange.getResponseSender().send(blobJson);
-                logger.info("Retrieved blob with id {} and content {} ", id, blob.toString());
+    /**
+     * Endpoint for checking whether a blob exists and how big it is.
+     * Expects a HEAD request at path "/v1/blobs/{id}".
+     * Answered from the "metadata" collection alone: the size is sent as Content-Length, together with the ETag and
+     * Last-Modified headers, and the data backend is never touched.
+     *
+     * @return HttpHandler for handling the head blob request.
+     */
+    @ApiEndpoint(method = "HEAD", path = "/v1/blobs/{id}")
+    public HttpHandler headBlob() {
+        return exchange -> {
+            try {
+                String id = exchange.getQueryParameters().get("id").getFirst();
+                Blob metadata = storageService.getMetadata(id);
+                ETag etag = toContentETag(exchange, metadata);
+                if (isNotModified(exchange, metadata, etag)) {
+                    return;
+                }
+                // A GET that would decompress on the fly has no ETag, as neither the length nor the hash of the stored bytes applies.
+                applyCacheHeaders(exchange, metadata, etag);
+                exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, OCTET_STREAM);
+                String encoding = metadata.getEncoding();
+                if (encoding != null) {
+                    exchange.getResponseHeaders().put(Headers.VARY, Headers.ACCEPT_ENCODING_STRING);
+                }
+                if (encoding == null || RequestUtils.acceptsEncoding(exchange, encoding)) {
+                    if (encoding != null) {
+                        exchange.getResponseHeaders().put(Headers.CONTENT_ENCODING, encoding);
+                    }
+                    exchange.getResponseHeaders().put(Headers.ACCEPT_RANGES, "bytes");
+                    exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, metadata.getSize());
+                }
+                exchange.endExchange();
+            } catch (BlobNotFoundException e) {
+                exchange.setStatusCode(StatusCodes.NOT_FOUND);
+                exchange.endExchange();
+            }
+        };
+    }
+
+    /**
+     * Endpoint for downloading the raw bytes of a blob.
+     * Expects a GET request at path "/v1/blobs/{id}/content".
+     * Blobs on the local file system are sent with sendfile, other backends are streamed through a fixed-size buffer.
+     * A single "Range: bytes=..." header is honoured with 206 Partial Content, and the range is pushed down to the backend.
+     *
+     * @return HttpHandler for handling the raw download request.
+     */
+    @ApiEndpoint(method = "GET", path = "/v1/blobs/{id}/content")
+    public HttpHandler getBlobContent() {
+        return exchange -> {
+            try {
+                String id = exchange.getQueryParameters().get("id").getFirst();
+                sendBlobContent(exchange, id);
             } catch (BlobNotFoundException e) {
                 exchange.setStatusCode(StatusCodes.NOT_FOUND);
                 exchange.getResponseSender().send(e.getMessage());
@@ -100,6 +278,353 @@ public class StorageController {
         };
     }
 
+    /**
+     * Endpoint for retrieving several blobs in one request.
+     * Expects a POST request at path "/v1/blobs:batchGet" with a JSON body of the form {"ids": ["a", "b"]}.
+     * The backend is queried in parallel and every blob is written as one line of newline-delimited JSON as soon as
+     * it is available, so the order of the lines follows completion rather than the request.
+     * Each line carries the id and a status of "ok", "not_found" or "error", so a missing id never fails the batch.
+     *
+     * @return HttpHandler for handling the batch get request.
+     */
+    @ApiEndpoint(method = "POST", path = "/v1/blobs:batchGet")
+    public HttpHandler batchGetBlobs() {
+        return exchange -> {
+            try {
+                BatchGetRequest request = jsonCodec.read(exchange.getInputStream(), BatchGetRequest.class);
+                List<String> ids = validateBatchIds(request);
+
+                exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, NDJSON);
+                OutputStream out = exchange.getOutputStream();
+                ReentrantLock writeLock = new ReentrantLock();
+                storageService.getBlobs(ids, result -> {
+                    if (BatchItemResult.OK.equals(result.getStatus())) {
+                        hotKeyTracker.record(result.getId());
+                    }
+                    writeJsonLine(out, writeLock, result);
+                });
+                out.close();
+                logger.info("Retrieved a batch of {} blobs", ids.size());
+            } catch (InvalidRequestException | InvalidJsonException e) {
+                handleInvalidRequestException(exchange, e);
+            } catch (Exception e) {
+                handleException(exchange, e);
+            }
+        };
+    }
+
+    /**
+     * Endpoint for saving many blobs in one request.
+     * Expects a POST request at path "/v1/blobs:batch" with a newline-delimited JSON body, one {"id": ..., "data": ...}
+     * record per line with base64 encoded data, as for "/v1/blobs".
+     * Records are parsed one at a time and written in groups of {@link #BATCH_WRITE_SIZE}, so the body is never held in memory.
+     * Every record gets one NDJSON line in the response with a status of "created", "duplicate" or "error";
+     * a rejected record never aborts the rest of the batch, but a line that is not valid JSON or whose data is not
+     * valid base64 ends it, since the records after it cannot be located reliably.
+     * A backend failure that aborts a group ends the batch with a last "error" line without an id.
+     *
+     * @return HttpHandler for handling the bulk upload request.
+     */
+    @ApiEndpoint(method = "POST", path = "/v1/blobs:batch")
+    public HttpHandler batchSaveBlobs() {
+        return exchange -> {
+            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, NDJSON);
+            OutputStream out = exchange.getOutputStream();
+            ReentrantLock writeLock = new ReentrantLock();
+            Consumer<BatchItemResult> writer = result -> writeJsonLine(out, writeLock, result);
+            List<BlobDto> chunk = new ArrayList<>();
+            Set<String> chunkIds = new HashSet<>();
+            int total = 0;
+            try {
+                try (MappingIterator<BlobDto> records = jsonCodec.readValues(exchange.getInputStream(), BlobDto.class)) {
+                    while (records.hasNextValue()) {
+                        BlobDto blobDto = records.nextValue();
+                        total++;
+                        BatchItemResult rejected = prepareBatchItem(blobDto, chunkIds);
+                        if (rejected != null) {
+                            writer.accept(rejected);
+                            continue;
+                        }
+                        chunk.add(blobDto);
+                        if (chunk.size() >= BATCH_WRITE_SIZE) {
+                            storageService.saveBlobs(chunk, writer);
+                            chunk = new ArrayList<>();
+                            chunkIds.clear();
+                        }
+                    }
+                } catch (JsonProcessingException e) {
+                    // Records after a malformed line cannot be located reliably, so the batch ends here.
+                    writer.accept(BatchItemResult.failed(null, "Invalid JSON format: " + e.getOriginalMessage()));
+                    logger.error("Invalid JSON in batch upload after {} records", total, e);
+                }
+                if (!chunk.isEmpty()) {
+                    storageService.saveBlobs(chunk, writer);
+                }
+                logger.info("Processed a batch upload of {} blobs", total);
+            } catch (UncheckedIOException e) {
+                // The client is gone, so there is no one left to report to.
+                logger.error("Failed to send the results of a batch upload after {} records", total, e);
+            } catch (RuntimeException e) {
+                // The response is already streaming, so the failure can only be reported as a line of its own.
+                logger.error("Failed to process a batch upload after {} records", total, e);
+                try {
+                    writer.accept(BatchItemResult.failed(null, "Batch aborted: " + e.getMessage()));
+                } catch (UncheckedIOException writeFailure) {
+                    logger.error("Failed to report the aborted batch upload", writeFailure);
+                }
+            } finally {
+                out.close();
+            }
+        };
+    }
+
+    /**
+     * Validates a record of a bulk upload. Its data has already been base64 decoded by the parser.
+     *
+     * @param blobDto  The parsed record.
+     * @param chunkIds The ids already queued in the current group, to catch duplicates within the group.
+     * @return The result to report if the record is rejected, or null if it should be saved.
+     */
+    private BatchItemResult prepareBatchItem(BlobDto blobDto, Set<String> chunkIds) {
+        String id = blobDto.getId();
+        if (id == null || id.isBlank()) {
+            return BatchItemResult.failed(id, "id must not be empty");
+        }
+        if (blobDto.getData() == null) {
+            return BatchItemResult.failed(id, "data must not be empty");
+        }
+        if (!chunkIds.add(id)) {
+            return BatchItemResult.duplicate(id);
+        }
+        return null;
+    }
+
+    /**
+     * Writes one line of newline-delimited JSON and flushes it, so the client sees each result as soon as it is ready.
+     * Batch results are produced on several threads, so writes are serialised through the lock.
+     *
+     * @param out       The response stream.
+     * @param writeLock The lock guarding the response stream.
+     * @param value     The value to write.
+     */
+    private void writeJsonLine(OutputStream out, ReentrantLock writeLock, Object value) {
+        writeLock.lock();
+        try {
+            out.write(jsonCodec.writeAsBytes(value));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Checks the ids of a batch request and drops duplicates while keeping the order.
+     *
+     * @param request The parsed batch request.
+     * @return The distinct ids.
+     * @throws InvalidRequestException if the ids are missing, empty or above {@link #BATCH_MAX_IDS}.
+     */
+    private List<String> validateBatchIds(BatchGetRequest request) {
+        if (request == null || request.getIds() == null || request.getIds().isEmpty()) {
+            throw new InvalidRequestException("ids must not be empty", null);
+        }
+        if (request.getIds().contains(null)) {
+            throw new InvalidRequestException("ids must not contain null", null);
+        }
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(request.getIds()));
+        if (ids.size() > BATCH_MAX_IDS) {
+            throw new InvalidRequestException("A batch may contain at most " + BATCH_MAX_IDS + " ids", null);
+        }
+        return ids;
+    }
+
+    /**
+     * Opens the blob and streams its raw bytes to the client.
+     *
+     * @param exchange The HttpServerExchange.
+     * @param id       The id of the blob.
+     * @throws IOException If writing the response fails.
+     */
+    private void sendBlobContent(HttpServerExchange exchange, String id) throws IOException {
+        Blob metadata = storageService.getMetadata(id);
+        hotKeyTracker.record(id);
+        ETag etag = toContentETag(exchange, metadata);
+        if (isNotModified(exchange, metadata, etag)) {
+            return;
+        }
+        String encoding = metadata == null ? null : metadata.getEncoding();
+        if (encoding != null) {
+            exchange.getResponseHeaders().put(Headers.VARY, Headers.ACCEPT_ENCODING_STRING);
+            if (!RequestUtils.acceptsEncoding(exchange, encoding)) {
+                sendDecodedBlobContent(exchange, metadata, encoding);
+                return;
+            }
+        }
+        BlobRange range = RequestUtils.parseRange(exchange);
+        String ifRange = exchange.getRequestHeaders().getFirst(Headers.IF_RANGE);
+        if (ifRange != null && (etag == null || !ifRange.equals(etag.toString()))) {
+            // The client's copy is stale (or cannot be checked), so it gets the whole blob instead of a range.
+            range = BlobRange.full();
+        }
+        try (BlobContent content = range.isFull() ? storageService.openBlob(id) : storageService.openBlob(id, range)) {
+            applyCacheHeaders(exchange, metadata, etag);
+            if (encoding != null) {
+                // The stored bytes already are the compressed representation the client asked for.
+                exchange.getResponseHeaders().put(Headers.CONTENT_ENCODING, encoding);
+            }
+            RequestUtils.sendContent(exchange, content);
+            logger.info("Streamed blob with id {} ({} of {} bytes)", id, content.getLength(), content.getSize());
+        } catch (RangeNotSatisfiableException e) {
+            exchange.setStatusCode(StatusCodes.REQUEST_RANGE_NOT_SATISFIABLE);
+            if (e.getSize() >= 0) {
+                exchange.getResponseHeaders().put(Headers.CONTENT_RANGE, "bytes */" + e.getSize());
+            }
+            RequestUtils.sendResponse(exchange, e.getMessage());
+        }
+    }
+
+    /**
+     * Sends a blob that is stored compressed to a client that does not accept its coding.
+     * The blob is decompressed while it is streamed, so ranges are not honoured and the ETag of the stored bytes is not sent.
+     *
+     * @param exchange The HttpServerExchange.
+     * @param metadata The metadata of the blob.
+     * @param encoding The content coding the blob is stored with.
+     * @throws IOException If reading the blob or writing the response fails.
+     */
+    private void sendDecodedBlobContent(HttpServerExchange exchange, Blob metadata, String encoding) throws IOException {
+        try (BlobContent content = storageService.openBlob(metadata.getId())) {
+            applyCacheHeaders(exchange, metadata, null);
+            RequestUtils.sendDecodedContent(exchange, content, encoding);
+            logger.info("Streamed decoded blob with id {}", metadata.getId());
+        }
+    }
+
+    /**
+     * Writes the blob as a JSON document straight to the response.
+     * Data that is already in memory is encoded from there; otherwise it is streamed from the backend, so it is
+     * never loaded into the blob. The JSON document always carries the original bytes, so blobs stored compressed
+     * are decompressed on the way; the response as a whole is compressed by the server if the client allows it.
+     *
+     * @param exchange The HttpServerExchange.
+     * @param blob     The blob to send.
+     * @throws IOException If reading the blob or writing the response fails.
+     */
+    private void sendBlobJson(HttpServerExchange exchange, Blob blob) throws IOException {
+        OutputStream out = exchange.getOutputStream();
+        if (blob.getEncoding() == null && blob.isDataLoaded()) {
+            byte[] data = blob.getData() == null ? new byte[0] : blob.getData();
+            jsonCodec.writeBlob(out, blob, new ByteArrayInputStream(data), data.length);
+        } else {
+            try (BlobContent content = storageService.openBlob(blob.getId())) {
+                InputStream data = content.openStream();
+                long length = content.getLength();
+                if (blob.getEncoding() != null) {
+                    data = FileUtils.decodingStream(data, blob.getEncoding());
+                    length = -1;
+                }
+                jsonCodec.writeBlob(out, blob, data, length);
+            }
+        }
+        out.close();
+    }
+
+    /**
+     * Answers with 304 Not Modified if the "If-None-Match" header matches the ETag of the representation being requested.
+     * Blobs are immutable, so a matching ETag means the client's copy is current and the data backend is never touched.
+     * The comparison is weak, as RFC 9110 requires for If-None-Match.
+     *
+     * @param exchange The HttpServerExchange.
+     * @param metadata The metadata of the blob, may be null.
+     * @param etag     The ETag of the representation, or null if it has none.
+     * @return true if a 304 response was sent.
+     */
+    private boolean isNotModified(HttpServerExchange exchange, Blob metadata, ETag etag) {
+        if (etag == null) {
+            return false;
+        }
+        if (ETagUtils.handleIfNoneMatch(exchange, etag, true)) {
+            return false;
+        }
+        applyCacheHeaders(exchange, metadata, etag);
+        exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+        exchange.endExchange();
+        logger.info("Blob with id {} not modified", metadata.getId());
+        return true;
+    }
+
+    /**
+     * Sets the ETag and caching headers for a blob.
+     * Blobs can never be overwritten, so clients and proxies may cache them for as long as they like.
+     *
+     * @param exchange The HttpServerExchange.
+     * @param metadata The metadata of the blob, may be null.
+     * @param etag     The ETag of the representation being sent, or null to send none.
+     */
+    private void applyCacheHeaders(HttpServerExchange exchange, Blob metadata, ETag etag) {
+        if (metadata == null || metadata.getHash() == null) {
+            return;
+        }
+        if (etag != null) {
+            exchange.getResponseHeaders().put(Headers.ETAG, etag.toString());
+        }
+        exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL);
+        if (metadata.getCreatedAt() != null) {
+            exchange.getResponseHeaders().put(Headers.LAST_MODIFIED, DateUtils.toDateString(metadata.getCreatedAt()));
+        }
+    }
+
+    /**
+     * Builds the ETag of the raw bytes of a blob, as the content endpoint would send them to this client.
+     * Stored bytes are sent unchanged, so they get a strong ETag that ranges can be validated against; bytes stored
+     * with a content coding get the coding as a suffix, so they never match the ETag of the decoded bytes.
+     *
+     * @param exchange The HttpServerExchange.
+     * @param metadata The metadata of the blob, may be null.
+     * @return The ETag, or null if the blob has no hash or would be decompressed on the fly.
+     */
+    private ETag toContentETag(HttpServerExchange exchange, Blob metadata) {
+        if (metadata == null || metadata.getHash() == null) {
+            return null;
+        }
+        String encoding = metadata.getEncoding();
+        if (encoding == null) {
+            return new ETag(false, metadata.getHash());
+        }
+        if (!RequestUtils.acceptsEncoding(exchange, encoding)) {
+            return null;
+        }
+        return new ETag(false, metadata.getHash() + "-" + encoding);
+    }
+
+    /**
+     * Builds the ETag of the JSON document of a blob.
+     * The ETag is weak, as the server may compress the document for clients that allow it without changing the ETag.
+     *
+     * @param metadata The metadata of the blob, may be null.
+     * @return The ETag, or null if the blob has no hash.
+     */
+    private ETag toJsonETag(Blob metadata) {
+        if (metadata == null || metadata.getHash() == null) {
+            return null;
+        }
+        return new ETag(true, metadata.getHash() + "-json");
+    }
+
+    /**
+     * Checks whether the client asked for the raw bytes rather than the JSON document.
+     *
+     * @param exchange The HttpServerExchange.
+     * @return true if the Accept header names application/octet-stream.
+     */
+    private boolean acceptsRawContent(HttpServerExchange exchange) {
+        String accept = exchange.getRequestHeaders().getFirst(Headers.ACCEPT);
+        return accept != null && accept.contains(OCTET_STREAM);
+    }
+
 
     /**
      * Handles exceptions that occur during the execution of the save blob endpoint.
@@ -128,6 +653,18 @@ public class StorageController {
         logger.error("An error occurred: ", e);
     }
 
+    /**
+     * Handles BlobTooLargeException that occur during the execution of the save blob endpoint.
+     *
+     * @param exchange The HttpServerExchange.
+     * @param e        The BlobTooLargeException.
+     */
+    private void handleBlobTooLargeException(HttpServerExchange exchange, BlobTooLargeException e) {
+        exchange.setStatusCode(StatusCodes.REQUEST_ENTITY_TOO_LARGE);
+        RequestUtils.sendResponse(exchange, e.getMessage());
+        logger.error("An error occurred: ", e);
+    }
+
     /**
      * Handles general exceptions that occur during the execution of the save blob endpoint.
      *
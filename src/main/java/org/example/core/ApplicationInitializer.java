@@ -61,6 +61,33 @@ public class ApplicationInitializer {
         return injector.getInstance(MongoDBClient.class);
     }
 
+    /**
+     * Returns the executor that request handlers are dispatched to.
+     *
+     * @return The RequestExecutor.
+     */
+    public RequestExecutor getRequestExecutor() {
+        return injector.getInstance(RequestExecutor.class);
+    }
+
+    /**
+     * Returns the tracker of the most frequently read blobs.
+     *
+     * @return The HotKeyTracker.
+     */
+    public HotKeyTracker getHotKeyTracker() {
+        return injector.getInstance(HotKeyTracker.class);
+    }
+
+    /**
+     * Returns the warmer that fills the caches with the hot blobs of the previous run.
+     *
+     * @return The CacheWarmer.
+     */
+    public CacheWarmer getCacheWarmer() {
+        return injector.getInstance(CacheWarmer.class);
+    }
+
     /**
      * Loads environment variables from the .env file and sets them as system properties.
      */
@@ -0,0 +1,259 @@
+package org.example.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.inject.Singleton;
+import org.example.model.Blob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class is responsible for keeping recently read blobs in memory, bounded by their total size in bytes.
+ * It is a segmented LRU: a blob enters the probation segment and is promoted to the protected segment when it is read again,
+ * so a scan over many blobs that are each read once can only displace other one-hit blobs, never the hot set.
+ * The protected segment holds at most 80% of the budget; blobs demoted from it get another chance in probation.
+ * Blobs larger than "CACHE_MAX_ENTRY_BYTES" are never cached, so a single huge blob cannot flush the cache.
+ * Blobs are create-only, so entries never go stale and are kept until they are evicted.
+ * The cache is disabled when "CACHE_MAX_BYTES" is 0.
+ */
+@Singleton
+public class BlobCache {
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final Logger logger = LoggerFactory.getLogger(BlobCache.class);
+    // Rough heap cost of an entry besides its data: the Blob, its strings and the map nodes.
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final long protectedMaxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Blob> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Blob> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long probationBytes;
+    private long protectedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    /**
+     * Constructor for the BlobCache.
+     * Reads the budget from "CACHE_MAX_BYTES" (64 MiB by default) and the per-blob cap from "CACHE_MAX_ENTRY_BYTES" (1 MiB by default).
+     */
+    public BlobCache() {
+        this(Long.getLong("CACHE_MAX_BYTES", DEFAULT_MAX_BYTES), Long.getLong("CACHE_MAX_ENTRY_BYTES", 1024L * 1024));
+    }
+
+    /**
+     * Constructor for the BlobCache.
+     *
+     * @param maxBytes      The total number of bytes the cache may hold, or 0 to disable it.
+     * @param maxEntryBytes The size of the largest blob that is cached.
+     */
+    public BlobCache(long maxBytes, long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.protectedMaxBytes = maxBytes * 8 / 10;
+        logger.info("Blob cache {}: {} bytes, {} bytes per blob", isEnabled() ? "enabled" : "disabled", maxBytes, this.maxEntryBytes);
+    }
+
+    @JsonProperty("enabled")
+    public final boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Checks whether a blob of the given size would be admitted.
+     *
+     * @param size The size of the blob data in bytes.
+     * @return true if the blob is small enough to be cached.
+     */
+    public boolean accepts(long size) {
+        return isEnabled() && size <= maxEntryBytes;
+    }
+
+    /**
+     * Looks up a blob and records a hit or a miss. A hit in probation promotes the blob to the protected segment.
+     * The returned blob is shared and must not be modified.
+     *
+     * @param id The id of the blob.
+     * @return The cached blob with its data, or null if it is not cached.
+     */
+    public Blob get(String id) {
+        lock.lock();
+        try {
+            Blob blob = protectedSegment.get(id);
+            if (blob == null) {
+                blob = probation.remove(id);
+                if (blob != null) {
+                    probationBytes -= weigh(blob);
+                    protectedSegment.put(id, blob);
+                    protectedBytes += weigh(blob);
+                    demoteProtected();
+                }
+            }
+            if (blob == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+            return blob;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Looks up a blob without counting it as a read, so it is neither promoted nor recorded as a hit or a miss.
+     * Used for metadata lookups that precede the actual read of the same blob within one request.
+     *
+     * @param id The id of the blob.
+     * @return The cached blob, or null if it is not cached.
+     */
+    public Blob peek(String id) {
+        lock.lock();
+        try {
+            Blob blob = protectedSegment.get(id);
+            return blob != null ? blob : probation.get(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a blob to the probation segment, evicting the least recently used probation blobs if the budget is exceeded.
+     * Blobs over the per-blob cap and blobs that are already cached are ignored.
+     *
+     * @param blob The blob, with its data loaded. It must not be modified afterwards.
+     */
+    public void put(Blob blob) {
+        if (!isEnabled()) {
+            return;
+        }
+        long weight = weigh(blob);
+        lock.lock();
+        try {
+            if (blob.getData().length > maxEntryBytes) {
+                rejections++;
+                return;
+            }
+            if (probation.containsKey(blob.getId()) || protectedSegment.containsKey(blob.getId())) {
+                return;
+            }
+            probation.put(blob.getId(), blob);
+            probationBytes += weight;
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the least recently used protected blobs back to probation while the protected segment is over its share.
+     */
+    private void demoteProtected() {
+        Iterator<Map.Entry<String, Blob>> iterator = protectedSegment.entrySet().iterator();
+        while (protectedBytes > protectedMaxBytes && iterator.hasNext()) {
+            Blob blob = iterator.next().getValue();
+            iterator.remove();
+            protectedBytes -= weigh(blob);
+            probation.put(blob.getId(), blob);
+            probationBytes += weigh(blob);
+        }
+        evict();
+    }
+
+    /**
+     * Drops the least recently used probation blobs until the cache fits its budget.
+     * The protected segment never holds more than its share, so emptying probation is always enough.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Blob>> iterator = probation.entrySet().iterator();
+        while (probationBytes + protectedBytes > maxBytes && iterator.hasNext()) {
+            probationBytes -= weigh(iterator.next().getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private static long weigh(Blob blob) {
+        return blob.getData().length + ENTRY_OVERHEAD;
+    }
+
+    @JsonProperty("maxBytes")
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @JsonProperty("maxEntryBytes")
+    public long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    @JsonProperty("bytes")
+    public long getBytes() {
+        lock.lock();
+        try {
+            return probationBytes + protectedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @JsonProperty("entries")
+    public int getEntries() {
+        lock.lock();
+        try {
+            return probation.size() + protectedSegment.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @JsonProperty("hits")
+    public long getHits() {
+        lock.lock();
+        try {
+            return hits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @JsonProperty("misses")
+    public long getMisses() {
+        lock.lock();
+        try {
+            return misses;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @JsonProperty("evictions")
+    public long getEvictions() {
+        lock.lock();
+        try {
+            return evictions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of blobs that were not cached because they exceeded the per-blob cap.
+     */
+    @JsonProperty("rejections")
+    public long getRejections() {
+        lock.lock();
+        try {
+            return rejections;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.core;
+
+import com.google.inject.Inject;
+import org.example.exception.BlobNotFoundException;
+import org.example.services.StorageService;
+import org.example.utils.ParallelUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is responsible for filling the caches with the blobs that were hot before the last shutdown.
+ * The ids persisted by the {@link HotKeyTracker} are opened through the storage service, hottest first, which reads each one
+ * into the heap, off-heap or disk cache that accepts its size. Blobs that no cache tier would take are skipped after a
+ * metadata lookup, so they are never downloaded for nothing. At most "HOT_KEYS_PREWARM_CONCURRENCY" blobs (8 by default)
+ * are fetched at a time, so warming up does not flood the backend. Failures are logged and skipped.
+ */
+public class CacheWarmer {
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmer.class);
+    private static final int PREWARM_CONCURRENCY = Integer.getInteger("HOT_KEYS_PREWARM_CONCURRENCY", 8);
+
+    private final StorageService storageService;
+    private final HotKeyTracker hotKeyTracker;
+
+    /**
+     * Constructor for the CacheWarmer.
+     *
+     * @param storageService The storage service, with its caches.
+     * @param hotKeyTracker  The tracker holding the hot ids of the previous run.
+     */
+    @Inject
+    public CacheWarmer(StorageService storageService, HotKeyTracker hotKeyTracker) {
+        this.storageService = storageService;
+        this.hotKeyTracker = hotKeyTracker;
+    }
+
+    /**
+     * Reads the persisted hot blobs into the caches and returns once all of them have been fetched.
+     *
+     * @return The number of blobs that were fetched.
+     */
+    public int warm() {
+        List<String> ids = hotKeyTracker.loadPersisted();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        AtomicInteger warmed = new AtomicInteger();
+        ParallelUtils.forEachBounded(ids, PREWARM_CONCURRENCY, id -> {
+            try {
+                if (!storageService.isCacheable(storageService.getMetadata(id).getSize())) {
+                    logger.debug("Hot blob {} is too large for every cache", id);
+                    return;
+                }
+                storageService.openBlob(id).close();
+                warmed.incrementAndGet();
+            } catch (BlobNotFoundException e) {
+                logger.debug("Hot blob {} no longer exists", id);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to pre-warm blob {}", id, e);
+            }
+        });
+        logger.info("Pre-warmed {} of {} hot blobs in {} ms", warmed.get(), ids.size(), (System.nanoTime() - start) / 1_000_000);
+        return warmed.get();
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.core;
+
+import io.undertow.predicate.Predicate;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class decides whether a response is worth compressing.
+ * It is evaluated by the EncodingHandler when the response starts, so it sees the final status and headers.
+ * Small responses, already compressed content types, partial content and responses that already carry a
+ * Content-Encoding (blobs that are stored compressed at rest) are sent as they are.
+ */
+public class CompressionPredicate implements Predicate {
+    private static final String DEFAULT_EXCLUDED_TYPES = "image/,video/,audio/,application/zip,application/gzip,"
+            + "application/x-gzip,application/x-7z-compressed,application/x-bzip2,application/x-xz,application/zstd,"
+            + "application/octet-stream";
+
+    private final long minSize;
+    private final List<String> excludedTypes;
+
+    /**
+     * Constructor for the CompressionPredicate.
+     * Reads COMPRESSION_MIN_SIZE (bytes, default 1024) and COMPRESSION_EXCLUDED_TYPES (comma separated content type prefixes).
+     * Raw downloads (application/octet-stream) are excluded by default so they keep the zero-copy sendfile path.
+     */
+    public CompressionPredicate() {
+        this(Long.getLong("COMPRESSION_MIN_SIZE", 1024),
+                Arrays.asList(System.getProperty("COMPRESSION_EXCLUDED_TYPES", DEFAULT_EXCLUDED_TYPES).split(",")));
+    }
+
+    /**
+     * Constructor for the CompressionPredicate.
+     *
+     * @param minSize       The smallest response body, in bytes, that is compressed.
+     * @param excludedTypes Content type prefixes that are never compressed.
+     */
+    public CompressionPredicate(long minSize, List<String> excludedTypes) {
+        this.minSize = minSize;
+        this.excludedTypes = excludedTypes.stream().map(String::trim).filter(type -> !type.isEmpty()).toList();
+    }
+
+    /**
+     * Checks whether the response of the exchange should be compressed.
+     *
+     * @param exchange The HttpServerExchange.
+     * @return true if the response should be compressed.
+     */
+    @Override
+    public boolean resolve(HttpServerExchange exchange) {
+        if (exchange.getStatusCode() == StatusCodes.PARTIAL_CONTENT
+                || exchange.getResponseHeaders().contains(Headers.CONTENT_ENCODING)
+                || exchange.getResponseHeaders().contains(Headers.CONTENT_RANGE)) {
+            return false;
+        }
+        String length = exchange.getResponseHeaders().getFirst(Headers.CONTENT_LENGTH);
+        // Streamed responses have no length up front; they are usually large batches, so they are compressed.
+        if (length != null && Long.parseLong(length) < minSize) {
+            return false;
+        }
+        String contentType = exchange.getResponseHeaders().getFirst(Headers.CONTENT_TYPE);
+        if (contentType == null) {
+            return true;
+        }
+        for (String excluded : excludedTypes) {
+            if (contentType.startsWith(excluded)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
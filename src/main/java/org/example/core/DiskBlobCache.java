@@ -0,0 +1,483 @@
+package org.example.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.inject.Singleton;
+import org.example.utils.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * This class is responsible for keeping copies of remote blobs on the local disk, bounded by their total size in bytes.
+ * Every blob is one file in "DISK_CACHE_PATH" named after the SHA-256 of its id, so ids that are not valid file names,
+ * or that contain path separators or "..", can never reach outside the directory, and the index is rebuilt on restart
+ * from a single directory listing, oldest file first, without reading any content. Files are written under a temporary name and renamed into place
+ * once complete, so a crash never leaves a partial blob behind; leftover temporary files are deleted on startup.
+ * Eviction uses the clock algorithm: a read only sets a flag on the entry, and the hand gives flagged entries a second chance,
+ * so hits never take the lock. An evicted file that is still being sent keeps working, as an open channel outlives the unlink.
+ * The cache is disabled when "DISK_CACHE_MAX_BYTES" is 0, which is the default.
+ */
+@Singleton
+public class DiskBlobCache {
+    private static final Logger logger = LoggerFactory.getLogger(DiskBlobCache.class);
+    private static final String TEMP_PREFIX = ".fill-";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private final ArrayDeque<Entry> clock = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private long bytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder fills = new LongAdder();
+
+    /**
+     * Constructor for the DiskBlobCache.
+     * Reads the directory from "DISK_CACHE_PATH" ("disk-cache" by default), the budget from "DISK_CACHE_MAX_BYTES"
+     * (0, disabled, by default) and the per-blob cap from "DISK_CACHE_MAX_ENTRY_BYTES" (the budget by default).
+     */
+    public DiskBlobCache() {
+        this(Path.of(System.getProperty("DISK_CACHE_PATH", "disk-cache")), Long.getLong("DISK_CACHE_MAX_BYTES", 0),
+                Long.getLong("DISK_CACHE_MAX_ENTRY_BYTES", Long.MAX_VALUE));
+    }
+
+    /**
+     * Constructor for the DiskBlobCache.
+     * Creates the directory if needed and indexes the blobs already in it.
+     *
+     * @param directory     The directory holding the cached blobs.
+     * @param maxBytes      The total number of bytes the files may take, or 0 to disable the cache.
+     * @param maxEntryBytes The size of the largest blob that is cached.
+     */
+    public DiskBlobCache(Path directory, long maxBytes, long maxEntryBytes) {
+        this.directory = directory;
+        this.maxBytes = Math.max(maxBytes, 0);
+        this.maxEntryBytes = Math.min(maxEntryBytes, this.maxBytes);
+        if (isEnabled()) {
+            rebuild();
+        }
+        logger.info("Disk blob cache {}: {} bytes in {}", isEnabled() ? "enabled" : "disabled", maxBytes, directory);
+    }
+
+    /**
+     * Indexes the files left in the directory by a previous run, oldest first, and drops unfinished ones.
+     */
+    private void rebuild() {
+        long start = System.nanoTime();
+        List<Entry> entries = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String name = file.getFileName().toString();
+                    if (name.startsWith(TEMP_PREFIX)) {
+                        Files.deleteIfExists(file);
+                        continue;
+                    }
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        entries.add(new Entry(name, file, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to index disk cache directory {}", directory, e);
+            throw new RuntimeException(e);
+        }
+        entries.sort(Comparator.comparingLong(entry -> entry.modified));
+        List<Path> evicted;
+        long indexedBytes;
+        lock.lock();
+        try {
+            for (Entry entry : entries) {
+                index.put(entry.name, entry);
+                clock.add(entry);
+                bytes += entry.size;
+            }
+            evicted = evict();
+            indexedBytes = bytes;
+        } finally {
+            lock.unlock();
+        }
+        delete(evicted);
+        logger.info("Indexed {} cached blobs ({} bytes) in {} ms", index.size(), indexedBytes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @JsonProperty("enabled")
+    public final boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Checks whether a blob of the given size would be admitted.
+     *
+     * @param size The size of the blob data in bytes, or -1 if it is not known yet.
+     * @return true if the blob is small enough to be cached, or might be.
+     */
+    public boolean accepts(long size) {
+        return isEnabled() && size <= maxEntryBytes;
+    }
+
+    /**
+     * Checks whether a blob is cached without counting it as a read.
+     *
+     * @param id The id of the blob.
+     * @return true if the blob is cached.
+     */
+    public boolean contains(String id) {
+        return index.containsKey(fileName(id));
+    }
+
+    /**
+     * Records a read of a blob: a hit marks the entry as recently used for the clock hand.
+     *
+     * @param id The id of the blob.
+     * @return true if the blob is cached.
+     */
+    public boolean touch(String id) {
+        Entry entry = index.get(fileName(id));
+        if (entry == null) {
+            misses.increment();
+            return false;
+        }
+        entry.referenced = true;
+        hits.increment();
+        return true;
+    }
+
+    /**
+     * Opens the file of a cached blob without counting it as a read.
+     * The channel stays valid even if the blob is evicted while it is open.
+     *
+     * @param id The id of the blob.
+     * @return The open channel, or null if the blob is not cached.
+     */
+    public FileChannel peek(String id) {
+        Entry entry = index.get(fileName(id));
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return FileChannel.open(entry.path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            logger.warn("Cached blob {} disappeared from {}", id, directory);
+            remove(entry);
+            return null;
+        } catch (IOException e) {
+            logger.error("Failed to open cached blob {}", id, e);
+            return null;
+        }
+    }
+
+    /**
+     * Copies a whole blob into the cache.
+     *
+     * @param id   The id of the blob.
+     * @param data The blob data; it is read to the end.
+     * @param size The exact number of bytes in the stream.
+     * @return true if the blob was cached, false if it was too large or the stream ended early.
+     * @throws IOException If the stream cannot be read.
+     */
+    public boolean store(String id, InputStream data, long size) throws IOException {
+        Fill fill = begin(id, size);
+        if (fill == null) {
+            return false;
+        }
+        try (InputStream in = fill.tee(data)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException | RuntimeException e) {
+            fill.abort();
+            throw e;
+        }
+        return fill.commit(size);
+    }
+
+    /**
+     * Starts copying a blob into the cache while it is read by someone else, for example while it is uploaded to the backend.
+     *
+     * @param id   The id of the blob.
+     * @param size The number of bytes the blob will have, or -1 if it is not known up front.
+     * @return The fill, which must be committed or aborted, or null if the blob will not be cached.
+     */
+    public Fill begin(String id, long size) {
+        if (!accepts(size)) {
+            return null;
+        }
+        try {
+            Path temp = Files.createTempFile(directory, TEMP_PREFIX, ".tmp");
+            return new Fill(id, temp, Files.newOutputStream(temp));
+        } catch (IOException e) {
+            logger.error("Failed to create a fill file for blob {}", id, e);
+            return null;
+        }
+    }
+
+    /**
+     * Renames a complete file into place, indexes it and evicts older blobs if the budget is exceeded.
+     */
+    private void add(String id, Path temp, long size) throws IOException {
+        String name = fileName(id);
+        Path target = directory.resolve(name);
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Entry entry = new Entry(name, target, size, System.currentTimeMillis());
+        List<Path> evicted;
+        lock.lock();
+        try {
+            Entry previous = index.put(name, entry);
+            if (previous != null) {
+                clock.remove(previous);
+                bytes -= previous.size;
+            }
+            clock.add(entry);
+            bytes += size;
+            evicted = evict();
+        } finally {
+            lock.unlock();
+        }
+        fills.increment();
+        delete(evicted);
+    }
+
+    /**
+     * Moves the clock hand until the cache fits its budget: recently read blobs lose their flag and go round again,
+     * the others are dropped from the index. Must be called with the lock held.
+     *
+     * @return The files to delete once the lock is released.
+     */
+    private List<Path> evict() {
+        List<Path> evicted = new ArrayList<>();
+        while (bytes > maxBytes && !clock.isEmpty()) {
+            Entry entry = clock.poll();
+            if (entry.referenced) {
+                entry.referenced = false;
+                clock.add(entry);
+                continue;
+            }
+            index.remove(entry.name, entry);
+            bytes -= entry.size;
+            evicted.add(entry.path);
+            evictions.increment();
+        }
+        return evicted;
+    }
+
+    private void remove(Entry entry) {
+        lock.lock();
+        try {
+            if (index.remove(entry.name, entry)) {
+                clock.remove(entry);
+                bytes -= entry.size;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void delete(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Failed to delete evicted blob {}", file, e);
+            }
+        }
+    }
+
+    @JsonProperty("maxBytes")
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @JsonProperty("maxEntryBytes")
+    public long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    @JsonProperty("bytes")
+    public long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @JsonProperty("entries")
+    public int getEntries() {
+        return index.size();
+    }
+
+    @JsonProperty("hits")
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @JsonProperty("misses")
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @JsonProperty("evictions")
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of blobs written to the cache, by uploads and by reads that missed.
+     */
+    @JsonProperty("fills")
+    public long getFills() {
+        return fills.sum();
+    }
+
+    /**
+     * Returns the name of the file that holds a blob, which is also its key in the index.
+     */
+    private static String fileName(String id) {
+        return FileUtils.hash(id);
+    }
+
+    /**
+     * A cached blob, keyed by its file name. The flag is set by reads and cleared by the clock hand.
+     */
+    private static final class Entry {
+        private final String name;
+        private final Path path;
+        private final long size;
+        private final long modified;
+        private volatile boolean referenced;
+
+        private Entry(String name, Path path, long size, long modified) {
+            this.name = name;
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * A blob being copied into the cache from a stream read by someone else.
+     * Failing to write the copy never fails the read; the copy is simply discarded on commit.
+     */
+    public final class Fill {
+        private final String id;
+        private final Path temp;
+        private final OutputStream out;
+        private long written;
+        private boolean ended;
+        private boolean failed;
+
+        private Fill(String id, Path temp, OutputStream out) {
+            this.id = id;
+            this.temp = temp;
+            this.out = out;
+        }
+
+        /**
+         * Wraps a stream so that every byte read from it is also written to the cache file.
+         *
+         * @param in The blob data.
+         * @return The stream to read instead.
+         */
+        public InputStream tee(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b < 0) {
+                        ended = true;
+                    } else {
+                        write(new byte[]{(byte) b}, 0, 1);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n < 0) {
+                        ended = true;
+                    } else {
+                        write(b, off, n);
+                    }
+                    return n;
+                }
+            };
+        }
+
+        private void write(byte[] b, int off, int len) {
+            if (failed) {
+                return;
+            }
+            if (written + len > maxEntryBytes) {
+                failed = true;
+                return;
+            }
+            try {
+                out.write(b, off, len);
+                written += len;
+            } catch (IOException e) {
+                logger.warn("Failed to write blob {} to the disk cache", id, e);
+                failed = true;
+            }
+        }
+
+        /**
+         * Adds the copy to the cache if it is complete.
+         *
+         * @param size The number of bytes the blob has, or -1 if the copy is complete once the stream was read to its end.
+         * @return true if the blob was cached.
+         */
+        public boolean commit(long size) {
+            try {
+                out.close();
+                if (failed || (size >= 0 ? written != size : !ended)) {
+                    Files.deleteIfExists(temp);
+                    return false;
+                }
+                add(id, temp, written);
+                return true;
+            } catch (IOException e) {
+                logger.warn("Failed to add blob {} to the disk cache", id, e);
+                abort();
+                return false;
+            }
+        }
+
+        /**
+         * Discards the copy.
+         */
+        public void abort() {
+            try {
+                out.close();
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                logger.warn("Failed to discard the disk cache copy of blob {}", id, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.core;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+
+import java.util.concurrent.Executor;
+
+/**
+ * This class moves a request off the XNIO IO thread before the next handler runs.
+ * The exchange is dispatched to the provided executor and put into blocking mode,
+ * so handlers can call blocking storage backends and use the request and response streams directly.
+ */
+public class DispatchingHandler implements HttpHandler {
+    private final HttpHandler next;
+    private final Executor executor;
+
+    /**
+     * Constructor for the DispatchingHandler.
+     *
+     * @param next     The next HttpHandler in the chain.
+     * @param executor The executor the request is dispatched to.
+     */
+    public DispatchingHandler(HttpHandler next, Executor executor) {
+        this.next = next;
+        this.executor = executor;
+    }
+
+    /**
+     * Dispatches the exchange to the executor if it is still on an IO thread, otherwise runs the next handler in blocking mode.
+     *
+     * @param exchange The HttpServerExchange.
+     * @throws Exception If the next handler fails.
+     */
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (exchange.isInIoThread()) {
+            exchange.dispatch(executor, this);
+            return;
+        }
+        exchange.startBlocking();
+        next.handleRequest(exchange);
+    }
+}
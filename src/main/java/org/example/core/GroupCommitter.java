@@ -0,0 +1,188 @@
+package org.example.core;
+
+import org.example.utils.ParallelUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is responsible for making files and directories durable for many concurrent writers at once.
+ * A writer hands in the path it needs synced and waits. A single committer thread takes every path handed in while the
+ * previous batch was being synced, syncs each distinct path once, with up to {@code parallelism} syncs in flight, and then
+ * releases all writers of the batch, so writers that touch the same directory share one directory sync.
+ * Only a committer that was idle waits a short window for more paths before it starts, as a busy committer already
+ * collects the next batch while it syncs the current one.
+ * A batch that fails as a whole releases its writers with the failure and the committer carries on; if the committer thread
+ * is interrupted it fails every waiting writer and all later syncs.
+ */
+public class GroupCommitter {
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitter.class);
+
+    private final long windowMicros;
+    private final int parallelism;
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private volatile boolean stopped;
+
+    /**
+     * Constructor for the GroupCommitter.
+     * Starts the committer on a daemon thread.
+     *
+     * @param name         The name of the committer thread.
+     * @param windowMicros How long an idle committer keeps collecting paths after the first one of a batch arrives.
+     * @param parallelism  The maximum number of paths of a batch synced at the same time.
+     */
+    public GroupCommitter(String name, long windowMicros, int parallelism) {
+        this.windowMicros = windowMicros;
+        this.parallelism = Math.max(1, parallelism);
+        Thread.ofPlatform().daemon().name(name).start(this::run);
+    }
+
+    /**
+     * Syncs a file or directory to disk, together with the paths other writers hand in at about the same time.
+     *
+     * @param path The path to sync.
+     * @throws IOException If the path could not be synced, or the committer has stopped.
+     */
+    public void sync(Path path) throws IOException {
+        if (stopped) {
+            throw new IOException("Group committer has stopped, cannot sync " + path);
+        }
+        Request request = new Request(path);
+        queue.add(request);
+        if (stopped && queue.remove(request)) {
+            // The committer stopped after the check above and will not take this request any more.
+            throw new IOException("Group committer has stopped, cannot sync " + path);
+        }
+        try {
+            request.done.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Failed to sync " + path, e.getCause());
+        }
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+                if (queue.isEmpty() && windowMicros > 0) {
+                    // Nothing arrived during the previous batch, so give concurrent writers a moment to join this one.
+                    TimeUnit.MICROSECONDS.sleep(windowMicros);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopped = true;
+                queue.drainTo(batch);
+                fail(batch, new IOException("Group committer was interrupted"));
+                return;
+            }
+            queue.drainTo(batch);
+            try {
+                commit(batch);
+            } catch (RuntimeException | Error e) {
+                // The committer must outlive a failed batch, otherwise every later writer would wait forever.
+                logger.error("Failed to commit a batch of {} writers", batch.size(), e);
+                fail(batch, e);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Releases every writer of a batch that has not been released yet with the given failure.
+     */
+    private static void fail(List<Request> batch, Throwable failure) {
+        for (Request request : batch) {
+            request.done.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Syncs every distinct path of a batch once, in parallel, and releases the writers.
+     */
+    private void commit(List<Request> batch) {
+        Set<Path> paths = new LinkedHashSet<>();
+        for (Request request : batch) {
+            paths.add(request.path);
+        }
+        Map<Path, IOException> failures = new ConcurrentHashMap<>();
+        if (paths.size() == 1) {
+            forceInto(paths.iterator().next(), failures);
+        } else {
+            ParallelUtils.forEachBounded(paths, parallelism, path -> forceInto(path, failures));
+        }
+        batches.increment();
+        syncs.add(paths.size());
+        logger.debug("Synced {} paths for {} writers", paths.size(), batch.size());
+        for (Request request : batch) {
+            IOException failure = failures.get(request.path);
+            if (failure == null) {
+                request.done.complete(null);
+            } else {
+                request.done.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private static void forceInto(Path path, Map<Path, IOException> failures) {
+        IOException failure = force(path);
+        if (failure != null) {
+            failures.put(path, failure);
+        }
+    }
+
+    /**
+     * Syncs one path to disk.
+     *
+     * @return null on success, or the failure.
+     */
+    public static IOException force(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+            return null;
+        } catch (IOException e) {
+            logger.error("Failed to sync {}", path, e);
+            return e;
+        }
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getSyncs() {
+        return syncs.sum();
+    }
+
+    /**
+     * A path waiting to be synced, and the writer waiting for it.
+     */
+    private static final class Request {
+        private final Path path;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Request(Path path) {
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package org.example.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class is responsible for finding the most frequently read blobs.
+ * Every read is counted in a count-min sketch of "HOT_KEYS_SKETCH_WIDTH" counters per row, which estimates the frequency of
+ * any id in fixed memory, and the "HOT_KEYS_TOP_K" ids with the highest estimates are kept as the heavy hitters.
+ * Once the sketch has counted ten reads per counter, all counters are halved, so the estimates follow recent traffic
+ * instead of growing forever. A read only takes the lock when its id is about to enter the heavy hitters.
+ * The hot ids are written to "HOT_KEYS_FILE" every "HOT_KEYS_PERSIST_INTERVAL_SECONDS" seconds, from where the
+ * {@link CacheWarmer} reads them after a restart. Tracking is disabled when "HOT_KEYS_TOP_K" is 0.
+ */
+@Singleton
+public class HotKeyTracker {
+    private static final Logger logger = LoggerFactory.getLogger(HotKeyTracker.class);
+    private static final int DEPTH = 4;
+
+    private final int topK;
+    private final int mask;
+    private final AtomicIntegerArray counters;
+    private final AtomicLong samples = new AtomicLong();
+    private final long resetThreshold;
+    private final Map<String, Long> heavyHitters = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long minimum;
+    private final Path file;
+    private final long persistIntervalSeconds;
+
+    /**
+     * Constructor for the HotKeyTracker.
+     * Reads the number of hot ids from "HOT_KEYS_TOP_K" (100 by default), the sketch width from "HOT_KEYS_SKETCH_WIDTH"
+     * (8192 by default), the file from "HOT_KEYS_FILE" ("hot-keys.txt" by default) and how often it is written from
+     * "HOT_KEYS_PERSIST_INTERVAL_SECONDS" (60 by default).
+     */
+    public HotKeyTracker() {
+        this(Integer.getInteger("HOT_KEYS_TOP_K", 100), Integer.getInteger("HOT_KEYS_SKETCH_WIDTH", 8192),
+                Path.of(System.getProperty("HOT_KEYS_FILE", "hot-keys.txt")), Long.getLong("HOT_KEYS_PERSIST_INTERVAL_SECONDS", 60));
+    }
+
+    /**
+     * Constructor for the HotKeyTracker.
+     *
+     * @param topK                   The number of hot ids to keep, or 0 to disable tracking.
+     * @param sketchWidth            The number of counters per row of the sketch, rounded up to a power of two.
+     * @param file                   The file the hot ids are written to.
+     * @param persistIntervalSeconds How often the hot ids are written once {@link #startPersisting()} is called.
+     */
+    public HotKeyTracker(int topK, int sketchWidth, Path file, long persistIntervalSeconds) {
+        int width = Integer.highestOneBit(Math.max(sketchWidth - 1, 1)) << 1;
+        this.topK = Math.max(topK, 0);
+        this.mask = width - 1;
+        this.counters = new AtomicIntegerArray(this.topK > 0 ? DEPTH * width : 0);
+        this.resetThreshold = 10L * width;
+        this.file = file;
+        this.persistIntervalSeconds = persistIntervalSeconds;
+    }
+
+    @JsonProperty("enabled")
+    public boolean isEnabled() {
+        return topK > 0;
+    }
+
+    /**
+     * Counts a read of a blob.
+     *
+     * @param id The id of the blob.
+     */
+    public void record(String id) {
+        if (!isEnabled()) {
+            return;
+        }
+        long estimate = increment(id);
+        if (heavyHitters.replace(id, estimate) == null && (heavyHitters.size() < topK || estimate > minimum)) {
+            admit(id, estimate);
+        }
+        if (samples.incrementAndGet() >= resetThreshold) {
+            age();
+        }
+    }
+
+    /**
+     * Adds one to the counter of the id in every row.
+     *
+     * @return The new estimate: the smallest of the counters.
+     */
+    private long increment(String id) {
+        int hash = id.hashCode();
+        hash ^= hash >>> 16;
+        int step = Integer.reverse(hash * 0x9E3779B9) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = row * (mask + 1) + ((hash + row * step) & mask);
+            estimate = Math.min(estimate, counters.incrementAndGet(index));
+        }
+        return estimate;
+    }
+
+    /**
+     * Adds an id to the heavy hitters, pushing out the one with the lowest estimate if they are full.
+     */
+    private void admit(String id, long estimate) {
+        lock.lock();
+        try {
+            heavyHitters.put(id, estimate);
+            if (heavyHitters.size() > topK) {
+                heavyHitters.remove(coldest());
+            }
+            minimum = heavyHitters.size() < topK ? 0 : heavyHitters.get(coldest());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String coldest() {
+        String coldest = null;
+        long lowest = Long.MAX_VALUE;
+        for (Map.Entry<String, Long> entry : heavyHitters.entrySet()) {
+            if (entry.getValue() < lowest) {
+                lowest = entry.getValue();
+                coldest = entry.getKey();
+            }
+        }
+        return coldest;
+    }
+
+    /**
+     * Halves every counter and estimate, so ids that are no longer read fade out of the heavy hitters.
+     */
+    private void age() {
+        lock.lock();
+        try {
+            if (samples.get() < resetThreshold) {
+                return;
+            }
+            for (int i = 0; i < counters.length(); i++) {
+                counters.updateAndGet(i, count -> count >>> 1);
+            }
+            heavyHitters.replaceAll((id, estimate) -> estimate >>> 1);
+            minimum >>>= 1;
+            samples.set(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the hot ids with their estimated read counts, hottest first.
+     */
+    @JsonProperty("hotKeys")
+    public List<HotKey> getHotKeys() {
+        List<HotKey> hotKeys = new ArrayList<>(heavyHitters.size());
+        heavyHitters.forEach((id, estimate) -> hotKeys.add(new HotKey(id, estimate)));
+        hotKeys.sort((a, b) -> Long.compare(b.estimate, a.estimate));
+        return hotKeys;
+    }
+
+    /**
+     * Writes the hot ids to the file, one per line and hottest first. The file is replaced atomically.
+     */
+    public void persist() {
+        if (!isEnabled()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>();
+        for (HotKey hotKey : getHotKeys()) {
+            ids.add(hotKey.id);
+        }
+        try {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temp, ids);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            logger.debug("Persisted {} hot keys to {}", ids.size(), file);
+        } catch (IOException e) {
+            logger.warn("Failed to persist hot keys to {}", file, e);
+        }
+    }
+
+    /**
+     * Reads the hot ids written by a previous run.
+     *
+     * @return The ids, hottest first; empty if there is no file.
+     */
+    public List<String> loadPersisted() {
+        if (!isEnabled()) {
+            return List.of();
+        }
+        try {
+            return Files.readAllLines(file).stream().filter(line -> !line.isBlank()).toList();
+        } catch (NoSuchFileException e) {
+            return List.of();
+        } catch (IOException e) {
+            logger.warn("Failed to read hot keys from {}", file, e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Starts writing the hot ids to the file periodically on a daemon thread.
+     */
+    public void startPersisting() {
+        if (!isEnabled() || persistIntervalSeconds <= 0) {
+            return;
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hot-keys-persister");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::persist, persistIntervalSeconds, persistIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A hot id and its estimated read count.
+     */
+    public static final class HotKey {
+        private final String id;
+        private final long estimate;
+
+        private HotKey(String id, long estimate) {
+            this.id = id;
+            this.estimate = estimate;
+        }
+
+        @JsonProperty("id")
+        public String getId() {
+            return id;
+        }
+
+        @JsonProperty("estimate")
+        public long getEstimate() {
+            return estimate;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.example.core;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.inject.Singleton;
+import org.example.exception.InvalidRequestException;
+import org.example.model.Blob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is responsible for reading and writing JSON.
+ * It owns one configured ObjectMapper and caches an immutable ObjectReader and ObjectWriter per type,
+ * so requests never build mappers, serializer lookups are resolved once, and all instances are safe to share between threads.
+ * If the Jackson Blackbird module is on the classpath it is registered to replace reflection with generated accessors;
+ * set "JSON_BLACKBIRD" to false to turn it off.
+ */
+@Singleton
+public class JsonCodec {
+    private static final Logger logger = LoggerFactory.getLogger(JsonCodec.class);
+    private static final String BLACKBIRD_MODULE = "com.fasterxml.jackson.module.blackbird.BlackbirdModule";
+    private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+    private static final Base64Variant UPLOAD_BASE64 =
+            Base64Variants.MIME_NO_LINEFEEDS.withReadPadding(Base64Variant.PaddingReadBehaviour.PADDING_ALLOWED);
+
+    private final ObjectMapper mapper;
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for the JsonCodec.
+     * Builds the shared ObjectMapper. Dates are written as "yyyy-MM-dd'T'HH:mm:ss'Z'" strings;
+     * Jackson clones the date format for every serialization, so it does not need to be thread-safe itself.
+     */
+    public JsonCodec() {
+        this.mapper = new ObjectMapper();
+        mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+        mapper.setDateFormat(new SimpleDateFormat(DATE_FORMAT));
+        if (Boolean.parseBoolean(System.getProperty("JSON_BLACKBIRD", "true"))) {
+            registerBlackbird();
+        }
+    }
+
+    /**
+     * Registers the Blackbird module if it is available, without making it a compile time dependency.
+     */
+    private void registerBlackbird() {
+        try {
+            Class<?> moduleClass = Class.forName(BLACKBIRD_MODULE);
+            mapper.registerModule((Module) moduleClass.getDeclaredConstructor().newInstance());
+            logger.info("Jackson Blackbird module registered");
+        } catch (ClassNotFoundException e) {
+            logger.debug("Jackson Blackbird module not on the classpath, using reflection");
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warn("Failed to register the Jackson Blackbird module", e);
+        }
+    }
+
+    /**
+     * Returns the cached reader for a type.
+     *
+     * @param clazz The type to read.
+     * @return The ObjectReader.
+     */
+    public ObjectReader reader(Class<?> clazz) {
+        return readers.computeIfAbsent(clazz, mapper::readerFor);
+    }
+
+    /**
+     * Returns the cached writer for a type.
+     *
+     * @param clazz The type to write.
+     * @return The ObjectWriter.
+     */
+    public ObjectWriter writer(Class<?> clazz) {
+        return writers.computeIfAbsent(clazz, mapper::writerFor);
+    }
+
+    /**
+     * Reads one JSON value from the stream.
+     *
+     * @param in    The input stream.
+     * @param clazz The type of the value.
+     * @param <T>   The type of the value.
+     * @return The parsed value.
+     * @throws IOException If the stream cannot be read.
+     * @throws InvalidRequestException If the content is not valid JSON for the type.
+     */
+    public <T> T read(InputStream in, Class<T> clazz) throws IOException {
+        try {
+            return reader(clazz).readValue(in);
+        } catch (JsonProcessingException e) {
+            throw new InvalidRequestException("Invalid JSON format", e);
+        }
+    }
+
+    /**
+     * Parses a {"id": ..., "data": ...} upload incrementally and decodes the base64 data straight into the sink.
+     * The data is decoded chunk by chunk as it is read from the request, so neither the JSON document,
+     * the base64 text nor a decoded String is ever held in memory. The fields may come in any order.
+     *
+     * @param in   The request body.
+     * @param data Receives the decoded bytes of the "data" field.
+     * @return The id of the blob.
+     * @throws IOException If the stream cannot be read or written.
+     * @throws InvalidRequestException If the body is not valid JSON, has unknown fields, repeats the data field, misses a field
+     *                                 or the data is not base64.
+     */
+    public String readBlobUpload(InputStream in, OutputStream data) throws IOException {
+        String id = null;
+        boolean hasData = false;
+        try (JsonParser parser = mapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new InvalidRequestException("Expected a JSON object", null);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("id".equals(field)) {
+                    id = value == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+                } else if ("data".equals(field) && hasData) {
+                    // A second payload would be appended to the first in the sink.
+                    throw new InvalidRequestException("Duplicate field: data", null);
+                } else if ("data".equals(field) && value == JsonToken.VALUE_STRING) {
+                    parser.readBinaryValue(UPLOAD_BASE64, data);
+                    hasData = true;
+                } else if (!"data".equals(field) || value != JsonToken.VALUE_NULL) {
+                    throw new InvalidRequestException("Unexpected field: " + field, null);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new InvalidRequestException("Invalid JSON format", e);
+        }
+        if (id == null || !hasData) {
+            throw new InvalidRequestException("Both id and data are required", null);
+        }
+        return id;
+    }
+
+    /**
+     * Reads a stream of JSON values separated by whitespace, such as newline-delimited JSON, one value at a time.
+     *
+     * @param in    The input stream.
+     * @param clazz The type of every value.
+     * @param <T>   The type of the values.
+     * @return An iterator over the values; closing it closes the stream.
+     * @throws IOException If the stream cannot be read.
+     */
+    public <T> MappingIterator<T> readValues(InputStream in, Class<T> clazz) throws IOException {
+        return reader(clazz).readValues(in);
+    }
+
+    /**
+     * Writes a value as a JSON string.
+     *
+     * @param value The value to write.
+     * @return The JSON string.
+     * @throws InvalidRequestException If the value cannot be serialized.
+     */
+    public String writeAsString(Object value) {
+        try {
+            return writer(value.getClass()).writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new InvalidRequestException("Invalid JSON format", e);
+        }
+    }
+
+    /**
+     * Writes a value as UTF-8 encoded JSON.
+     *
+     * @param value The value to write.
+     * @return The JSON bytes.
+     * @throws InvalidRequestException If the value cannot be serialized.
+     */
+    public byte[] writeAsBytes(Object value) {
+        try {
+            return writer(value.getClass()).writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new InvalidRequestException("Invalid JSON format", e);
+        }
+    }
+
+    /**
+     * Writes a blob as a JSON document straight to the output stream.
+     * The data is read from the provided stream and base64 encoded by the generator through a fixed-size buffer,
+     * so neither the base64 text nor the JSON document is ever built in memory, whatever the size of the blob.
+     * The output stream is not closed.
+     *
+     * @param out    The stream to write to, usually the response stream.
+     * @param blob   The blob whose metadata is written; its data is ignored.
+     * @param data   The raw bytes of the blob.
+     * @param length The number of bytes in the data stream, or -1 if unknown.
+     * @throws IOException If reading the data or writing the document fails.
+     */
+    public void writeBlob(OutputStream out, Blob blob, InputStream data, long length) throws IOException {
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeStringField("id", blob.getId());
+            generator.writeNumberField("size", blob.getSize());
+            generator.writeObjectField("createdAt", blob.getCreatedAt());
+            generator.writeStringField("hash", blob.getHash());
+            generator.writeFieldName("data");
+            generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, data, length > Integer.MAX_VALUE ? -1 : (int) length);
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package org.example.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.inject.Singleton;
+import org.example.model.Blob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class is responsible for keeping blob data outside of the Java heap, so a cache of many gigabytes adds nothing to GC work.
+ * Memory is allocated in slabs of "OFFHEAP_CACHE_SLAB_BYTES" direct buffers, up to "OFFHEAP_CACHE_MAX_BYTES" in total
+ * (the JVM needs a matching -XX:MaxDirectMemorySize). Blobs are appended to the current slab; when it is full the oldest slab
+ * is recycled as a whole, which drops every blob in it at once and never fragments memory. Only the index of
+ * id to (slab, offset, length) and the metadata live on the heap.
+ * Reads hand out read-only views of the slab that can be written straight to a socket. A slab that is being read is not
+ * reused until every reader has released it; its entries are invalidated immediately, so no new reader can start on it.
+ * The tier is disabled when "OFFHEAP_CACHE_MAX_BYTES" is 0, which is the default.
+ */
+@Singleton
+public class OffHeapBlobCache {
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapBlobCache.class);
+
+    private final long maxBytes;
+    private final int slabBytes;
+    private final long maxEntryBytes;
+    private final Slab[] slabs;
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private final ReentrantLock allocationLock = new ReentrantLock();
+    private int current = -1;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Constructor for the OffHeapBlobCache.
+     * Reads the budget from "OFFHEAP_CACHE_MAX_BYTES" (0, disabled, by default), the slab size from "OFFHEAP_CACHE_SLAB_BYTES"
+     * (64 MiB by default) and the per-blob cap from "OFFHEAP_CACHE_MAX_ENTRY_BYTES" (the slab size by default).
+     */
+    public OffHeapBlobCache() {
+        this(Long.getLong("OFFHEAP_CACHE_MAX_BYTES", 0),
+                Integer.getInteger("OFFHEAP_CACHE_SLAB_BYTES", 64 * 1024 * 1024),
+                Long.getLong("OFFHEAP_CACHE_MAX_ENTRY_BYTES", Long.MAX_VALUE));
+    }
+
+    /**
+     * Constructor for the OffHeapBlobCache.
+     * Slabs are only allocated once they are first needed.
+     *
+     * @param maxBytes      The total number of bytes the slabs may hold, or 0 to disable the tier.
+     * @param slabBytes     The size of one slab.
+     * @param maxEntryBytes The size of the largest blob that is cached; never more than a slab.
+     */
+    public OffHeapBlobCache(long maxBytes, int slabBytes, long maxEntryBytes) {
+        int slabCount = maxBytes <= 0 ? 0 : (int) Math.max(1, maxBytes / slabBytes);
+        this.slabBytes = slabBytes;
+        this.maxBytes = (long) slabCount * slabBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, slabBytes);
+        this.slabs = new Slab[slabCount];
+        for (int i = 0; i < slabCount; i++) {
+            slabs[i] = new Slab();
+        }
+        logger.info("Off-heap blob cache {}: {} slabs of {} bytes", isEnabled() ? "enabled" : "disabled", slabCount, slabBytes);
+    }
+
+    @JsonProperty("enabled")
+    public final boolean isEnabled() {
+        return slabs.length > 0;
+    }
+
+    /**
+     * Checks whether a blob of the given size would be admitted.
+     *
+     * @param size The size of the blob data in bytes.
+     * @return true if the blob fits in a slab and under the per-blob cap.
+     */
+    public boolean accepts(long size) {
+        return isEnabled() && size >= 0 && size <= maxEntryBytes;
+    }
+
+    /**
+     * Looks up the metadata of a cached blob without reading it or counting it as a read.
+     *
+     * @param id The id of the blob.
+     * @return The cached metadata, which must not be modified, or null if the blob is not cached.
+     */
+    public Blob peek(String id) {
+        Entry entry = index.get(id);
+        if (entry == null || slabs[entry.slab].generation.get() != entry.generation) {
+            return null;
+        }
+        return entry.metadata;
+    }
+
+    /**
+     * Opens a cached blob for reading. The lease must be closed once its data has been sent,
+     * as the slab holding it cannot be recycled until then.
+     *
+     * @param id The id of the blob.
+     * @return The lease, or null if the blob is not cached.
+     */
+    public Lease acquire(String id) {
+        Entry entry = index.get(id);
+        if (entry != null) {
+            Slab slab = slabs[entry.slab];
+            slab.readers.incrementAndGet();
+            // The generation is checked after registering as a reader, so a recycler either sees the reader or has already
+            // moved the generation on, in which case the entry is stale and the read is abandoned.
+            if (slab.generation.get() == entry.generation) {
+                hits.increment();
+                return new Lease(entry.metadata, slab, view(slab, entry.offset, entry.length).asReadOnlyBuffer());
+            }
+            slab.readers.decrementAndGet();
+            index.remove(id, entry);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Copies a blob into a slab while it is read from the stream, and opens it for reading.
+     * Nothing is read from the stream if there is no room, for example because every slab is being read.
+     *
+     * @param metadata The metadata of the blob, which must not be modified afterwards.
+     * @param data     The blob data.
+     * @param length   The exact number of bytes in the stream.
+     * @return The lease on the cached copy, or null if the blob was not admitted.
+     * @throws IOException If the stream cannot be read or ends before the given length.
+     */
+    public Lease admit(Blob metadata, InputStream data, long length) throws IOException {
+        if (!accepts(length)) {
+            rejections.increment();
+            return null;
+        }
+        Slab slab;
+        int slabIndex;
+        int generation;
+        int offset;
+        allocationLock.lock();
+        try {
+            if (current < 0 || slabs[current].used + length > slabBytes) {
+                int next = recycle();
+                if (next < 0) {
+                    rejections.increment();
+                    return null;
+                }
+                current = next;
+            }
+            slabIndex = current;
+            slab = slabs[slabIndex];
+            generation = slab.generation.get();
+            offset = slab.used;
+            slab.used += (int) length;
+            // Pin the slab while it is filled outside of the lock.
+            slab.readers.incrementAndGet();
+        } finally {
+            allocationLock.unlock();
+        }
+        Lease lease = new Lease(metadata, slab, view(slab, offset, (int) length).asReadOnlyBuffer());
+        try {
+            ByteBuffer target = view(slab, offset, (int) length);
+            ReadableByteChannel channel = Channels.newChannel(data);
+            while (target.hasRemaining()) {
+                if (channel.read(target) < 0) {
+                    throw new IOException("Blob " + metadata.getId() + " ended before its size of " + length + " bytes");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+        Entry entry = new Entry(metadata, slabIndex, generation, offset, (int) length);
+        allocationLock.lock();
+        try {
+            if (slab.generation.get() == generation) {
+                index.put(metadata.getId(), entry);
+                slab.ids.add(metadata.getId());
+            }
+        } finally {
+            allocationLock.unlock();
+        }
+        // The pin taken for filling becomes the reader registration of the returned lease.
+        return lease;
+    }
+
+    /**
+     * Picks the next slab to fill: a slab that was never allocated, or else the oldest slab nobody is reading.
+     * Slabs on the way are invalidated even when they are still being read, so they can be reused once their readers are done.
+     * Must be called with the allocation lock held.
+     *
+     * @return The index of the slab, emptied, or -1 if every slab is still being read.
+     */
+    private int recycle() {
+        for (int i = 1; i <= slabs.length; i++) {
+            int candidate = Math.floorMod(current + i, slabs.length);
+            Slab slab = slabs[candidate];
+            if (slab.buffer == null) {
+                slab.buffer = ByteBuffer.allocateDirect(slabBytes);
+                return candidate;
+            }
+            // The generation moves on before the readers are checked; see acquire.
+            slab.generation.incrementAndGet();
+            for (String id : slab.ids) {
+                Entry entry = index.get(id);
+                if (entry != null && entry.slab == candidate) {
+                    index.remove(id, entry);
+                    evictions.increment();
+                }
+            }
+            slab.ids.clear();
+            if (slab.readers.get() == 0) {
+                slab.used = 0;
+                return candidate;
+            }
+        }
+        return -1;
+    }
+
+    private static ByteBuffer view(Slab slab, int offset, int length) {
+        return slab.buffer.duplicate().position(offset).limit(offset + length).slice();
+    }
+
+    @JsonProperty("maxBytes")
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @JsonProperty("slabBytes")
+    public int getSlabBytes() {
+        return slabBytes;
+    }
+
+    @JsonProperty("maxEntryBytes")
+    public long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    /**
+     * Returns the number of bytes of direct memory allocated for slabs so far.
+     */
+    @JsonProperty("allocatedBytes")
+    public long getAllocatedBytes() {
+        long allocated = 0;
+        for (Slab slab : slabs) {
+            if (slab.buffer != null) {
+                allocated += slabBytes;
+            }
+        }
+        return allocated;
+    }
+
+    @JsonProperty("entries")
+    public int getEntries() {
+        return index.size();
+    }
+
+    @JsonProperty("hits")
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @JsonProperty("misses")
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @JsonProperty("evictions")
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of blobs that were not cached because they were too large or no slab was free.
+     */
+    @JsonProperty("rejections")
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * A slab of direct memory, filled front to back and reused as a whole.
+     */
+    private static final class Slab {
+        private volatile ByteBuffer buffer;
+        private final AtomicInteger generation = new AtomicInteger();
+        private final AtomicInteger readers = new AtomicInteger();
+        private int used;
+        private final List<String> ids = new ArrayList<>();
+    }
+
+    /**
+     * The location of a cached blob. It is only valid while the slab is still in the generation it was written in.
+     */
+    private static final class Entry {
+        private final Blob metadata;
+        private final int slab;
+        private final int generation;
+        private final int offset;
+        private final int length;
+
+        private Entry(Blob metadata, int slab, int generation, int offset, int length) {
+            this.metadata = metadata;
+            this.slab = slab;
+            this.generation = generation;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A read of a cached blob. Its data stays valid until the lease is closed.
+     */
+    public static final class Lease implements Closeable {
+        private final Blob metadata;
+        private final Slab slab;
+        private final ByteBuffer data;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * Wraps a view of a slab the caller has already registered as a reader of.
+         */
+        private Lease(Blob metadata, Slab slab, ByteBuffer data) {
+            this.metadata = metadata;
+            this.slab = slab;
+            this.data = data;
+        }
+
+        /**
+         * Returns the metadata of the blob, which must not be modified.
+         */
+        public Blob getMetadata() {
+            return metadata;
+        }
+
+        /**
+         * Returns a read-only view of the blob data in direct memory, positioned at its first byte.
+         */
+        public ByteBuffer getData() {
+            return data;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                slab.readers.decrementAndGet();
+            }
+        }
+    }
+}
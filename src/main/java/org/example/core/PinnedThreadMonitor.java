@@ -0,0 +1,116 @@
+package org.example.core;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class watches for virtual threads that pin their carrier thread, which happens when a virtual thread blocks
+ * inside a synchronized block or a native frame.
+ * It listens to the JFR "jdk.VirtualThreadPinned" event and logs the frames that caused the pin,
+ * tagging pins that happen inside the FTP (commons-net) or MongoDB sync drivers so they can be told apart from our own code.
+ */
+public class PinnedThreadMonitor implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PinnedThreadMonitor.class);
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+
+    private final long thresholdMillis;
+    private final Map<String, LongAdder> pinsBySource = new ConcurrentHashMap<>();
+    private RecordingStream recordingStream;
+
+    /**
+     * Constructor for the PinnedThreadMonitor.
+     *
+     * @param thresholdMillis Pins shorter than this are ignored.
+     */
+    public PinnedThreadMonitor(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    /**
+     * Starts listening for pinned virtual threads in the background.
+     * If JFR is not available the monitor logs a warning and stays inactive.
+     */
+    public void start() {
+        try {
+            recordingStream = new RecordingStream();
+            recordingStream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMillis)).withStackTrace();
+            recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+            recordingStream.startAsync();
+            logger.info("Pinned virtual thread monitor started with a threshold of {} ms", thresholdMillis);
+        } catch (RuntimeException e) {
+            logger.warn("Could not start pinned virtual thread monitor: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Logs a pinned virtual thread event with the frames that caused it.
+     *
+     * @param event The JFR event.
+     */
+    private void onPinned(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        String source = classify(stackTrace);
+        pinsBySource.computeIfAbsent(source, key -> new LongAdder()).increment();
+
+        StringBuilder frames = new StringBuilder();
+        if (stackTrace != null) {
+            stackTrace.getFrames().stream().limit(LOGGED_FRAMES).forEach(frame -> frames.append("\n\tat ")
+                    .append(frame.getMethod().getType().getName()).append('.').append(frame.getMethod().getName())
+                    .append(':').append(frame.getLineNumber()));
+        }
+        logger.warn("Virtual thread pinned its carrier for {} ms in {} code{}", event.getDuration().toMillis(), source, frames);
+    }
+
+    /**
+     * Works out which driver, if any, the pinning frames belong to.
+     *
+     * @param stackTrace The stack trace of the event.
+     * @return "ftp", "mongo" or "application".
+     */
+    private String classify(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "application";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith("org.apache.commons.net.")) {
+                return "ftp";
+            }
+            if (type.startsWith("com.mongodb.")) {
+                return "mongo";
+            }
+        }
+        return "application";
+    }
+
+    /**
+     * Returns the number of pins seen so far, grouped by source.
+     *
+     * @return A map from source to pin count.
+     */
+    public Map<String, Long> getPinCounts() {
+        Map<String, Long> counts = new ConcurrentHashMap<>();
+        pinsBySource.forEach((source, count) -> counts.put(source, count.sum()));
+        return counts;
+    }
+
+    /**
+     * Stops the monitor.
+     */
+    @Override
+    public void close() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.core;
+
+import com.google.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class owns the executor that request handlers are dispatched to, so blocking storage calls never run on the XNIO IO threads.
+ * The mode is chosen with the "REQUEST_EXECUTOR" system property:
+ * "virtual" (default) starts one virtual thread per request, "platform" uses a bounded pool of platform threads
+ * sized by "REQUEST_EXECUTOR_THREADS" with a queue of "REQUEST_EXECUTOR_QUEUE_SIZE" requests.
+ * Requests rejected by a full platform pool are answered with 503 by Undertow.
+ */
+@Singleton
+public class RequestExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(RequestExecutor.class);
+    private static final String VIRTUAL = "virtual";
+    private static final String PLATFORM = "platform";
+
+    private final String mode;
+    private final ExecutorService executor;
+    private PinnedThreadMonitor pinnedThreadMonitor;
+
+    /**
+     * Constructor for the RequestExecutor.
+     * Creates the executor from the system properties, and starts pinned carrier monitoring in virtual thread mode.
+     */
+    public RequestExecutor() {
+        this.mode = System.getProperty("REQUEST_EXECUTOR", VIRTUAL);
+        switch (mode) {
+            case VIRTUAL:
+                this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("request-", 0).factory());
+                this.pinnedThreadMonitor = new PinnedThreadMonitor(Long.getLong("PINNED_THREAD_THRESHOLD_MS", 20));
+                pinnedThreadMonitor.start();
+                break;
+            case PLATFORM:
+                this.executor = createPlatformPool();
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid request executor: " + mode);
+        }
+        logger.info("Request executor initialized in {} mode", mode);
+    }
+
+    /**
+     * Creates a bounded pool of platform threads.
+     *
+     * @return The thread pool.
+     */
+    private ExecutorService createPlatformPool() {
+        int threads = Integer.getInteger("REQUEST_EXECUTOR_THREADS", Runtime.getRuntime().availableProcessors() * 8);
+        int queueSize = Integer.getInteger("REQUEST_EXECUTOR_QUEUE_SIZE", 1024);
+        AtomicInteger counter = new AtomicInteger();
+        logger.info("Creating platform request pool with {} threads and a queue of {}", threads, queueSize);
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                runnable -> new Thread(runnable, "request-" + counter.getAndIncrement()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Returns the executor that handlers are dispatched to.
+     *
+     * @return The executor.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Returns the configured mode, "virtual" or "platform".
+     *
+     * @return The mode.
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Stops accepting requests and waits briefly for the running ones to finish.
+     */
+    public void shutdown() {
+        logger.info("Shutting down request executor...");
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (pinnedThreadMonitor != null) {
+            pinnedThreadMonitor.close();
+        }
+    }
+}
@@ -17,21 +17,25 @@ public class RouteManager {
     private static final Logger logger = LoggerFactory.getLogger(RouteManager.class);
     private final RoutingHandler router = Handlers.routing();
     private final JwtKeyManager jwtKeyManager;
+    private final RequestExecutor requestExecutor;
 
     /**
      * Constructor for the RouteManager.
      * Initializes the rsaKeyProvider with the provided RsaKeyProvider.
      *
-     * @param jwtKeyManager The RsaKeyProvider.
+     * @param jwtKeyManager   The RsaKeyProvider.
+     * @param requestExecutor The executor that route handlers are dispatched to.
      */
     @Inject
-    public RouteManager(JwtKeyManager jwtKeyManager) {
+    public RouteManager(JwtKeyManager jwtKeyManager, RequestExecutor requestExecutor) {
         this.jwtKeyManager = jwtKeyManager;
+        this.requestExecutor = requestExecutor;
     }
 
     /**
      * Registers a route with the provided method, path, and handler.
      * If the path does not contain "auth", an AuthenticationHandler is added to the handler.
+     * Every route is dispatched to the request executor, so neither JWT validation nor storage calls run on an IO thread.
      *
      * @param method  The HTTP method of the route.
      * @param path    The path of the route.
@@ -41,6 +45,7 @@ public class RouteManager {
         if (!path.contains("auth")) {
             handler = new AuthenticationHandler(handler, jwtKeyManager);
         }
+        handler = new DispatchingHandler(handler, requestExecutor.getExecutor());
         router.add(method, path, handler);
         logger.info("New route added: {} {}", method, path);
     }
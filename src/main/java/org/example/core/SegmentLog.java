@@ -0,0 +1,739 @@
+package org.example.core;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.example.exception.BlobNotFoundException;
+import org.example.exception.BlobTooLargeException;
+import org.example.exception.DuplicateBlobException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * This class is responsible for storing blobs as records appended to a log of segment files in "SEGMENT_STORAGE_PATH".
+ * Every record holds a CRC32C, the id and the data, and an in-memory index maps each id to the segment, offset and length
+ * of its record, so a read is a single positional read of the whole record, whose checksum is verified before the data is
+ * returned. Millions of small blobs thus cost neither an inode nor an open and close each.
+ * Appends are serialized and go to the active segment, which is sealed once it would grow past "SEGMENT_MAX_BYTES".
+ * A sealed segment gets a hint file listing the location of every record in it, so on restart the index is rebuilt from
+ * the hint files and only the active segment is scanned; a torn record at its end is cut off.
+ * Removing a blob appends a tombstone record, so the removal survives a restart.
+ * Records that are no longer referenced by the index, and tombstones, are garbage. Every "SEGMENT_COMPACTION_INTERVAL_SECONDS" seconds
+ * the sealed segments in which at least "SEGMENT_COMPACTION_GARBAGE_PERCENT" percent of the bytes are garbage are
+ * compacted: their live records are appended to the active segment and the segment is deleted.
+ * Sealed segments are synced to disk, and so are the copies of a compaction before the old segment is deleted.
+ * When an append is acknowledged is set by "SEGMENT_DURABILITY": "none" (the default) leaves the active segment to the
+ * operating system, so the latest appends can be lost in a crash; "fsync" syncs the segment before every append returns,
+ * and "group" hands that sync to a {@link GroupCommitter}, so concurrent appends share one sync.
+ */
+@Singleton
+public class SegmentLog {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLog.class);
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String HINT_SUFFIX = ".hint";
+    /**
+     * CRC32C (4 bytes), id length (2 bytes) and data length (4 bytes).
+     */
+    private static final int HEADER_BYTES = 10;
+    /**
+     * The data length of a tombstone record, which has no data.
+     */
+    private static final int TOMBSTONE = -1;
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final long compactionIntervalSeconds;
+    private final int garbagePercent;
+    private final String durability;
+    private final GroupCommitter groupCommitter;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, FileChannel> segments = new ConcurrentSkipListMap<>();
+    private final Map<Integer, AtomicLong> liveBytes = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    /**
+     * The tombstones in each segment, mapped to the segment of the record they remove.
+     */
+    private final Map<Integer, Map<String, Integer>> tombstones = new ConcurrentHashMap<>();
+    private final List<String> activeIds = new ArrayList<>();
+    private int activeSegment;
+    private long activeBytes;
+    private final LongAdder compactions = new LongAdder();
+
+    /**
+     * Constructor for the SegmentLog.
+     * Reads the directory from "SEGMENT_STORAGE_PATH" ("segments" by default), the segment size from "SEGMENT_MAX_BYTES"
+     * (64 MiB by default), how often compaction runs from "SEGMENT_COMPACTION_INTERVAL_SECONDS" (300 by default) and the
+     * share of garbage that makes a segment worth compacting from "SEGMENT_COMPACTION_GARBAGE_PERCENT" (50 by default).
+     * Appends are made durable as "SEGMENT_DURABILITY" asks for ("none" by default).
+     */
+    public SegmentLog() {
+        this(Path.of(System.getProperty("SEGMENT_STORAGE_PATH", "segments")), Long.getLong("SEGMENT_MAX_BYTES", 64L * 1024 * 1024),
+                Long.getLong("SEGMENT_COMPACTION_INTERVAL_SECONDS", 300), Integer.getInteger("SEGMENT_COMPACTION_GARBAGE_PERCENT", 50),
+                System.getProperty("SEGMENT_DURABILITY", "none"));
+    }
+
+    /**
+     * Constructor for the SegmentLog whose appends are not synced to disk.
+     *
+     * @param directory                 The directory holding the segment and hint files.
+     * @param maxSegmentBytes           The size a segment is sealed at; also the size of the largest record.
+     * @param compactionIntervalSeconds How often compaction runs, or 0 to only compact on {@link #compact()}.
+     * @param garbagePercent            The share of garbage in percent that makes a sealed segment worth compacting.
+     */
+    public SegmentLog(Path directory, long maxSegmentBytes, long compactionIntervalSeconds, int garbagePercent) {
+        this(directory, maxSegmentBytes, compactionIntervalSeconds, garbagePercent, "none");
+    }
+
+    /**
+     * Constructor for the SegmentLog.
+     * Creates the directory if needed and rebuilds the index from the segments already in it.
+     * Compaction only runs on its own once {@link #startCompaction()} has been called.
+     *
+     * @param directory                 The directory holding the segment and hint files.
+     * @param maxSegmentBytes           The size a segment is sealed at; also the size of the largest record.
+     * @param compactionIntervalSeconds How often compaction runs, or 0 to only compact on {@link #compact()}.
+     * @param garbagePercent            The share of garbage in percent that makes a sealed segment worth compacting.
+     * @param durability                When an append returns: "none", "fsync" or "group".
+     */
+    public SegmentLog(Path directory, long maxSegmentBytes, long compactionIntervalSeconds, int garbagePercent, String durability) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.compactionIntervalSeconds = compactionIntervalSeconds;
+        this.garbagePercent = garbagePercent;
+        this.durability = durability;
+        switch (durability) {
+            case "none":
+            case "fsync":
+                groupCommitter = null;
+                break;
+            case "group":
+                groupCommitter = new GroupCommitter("segment-log-committer", Long.getLong("SEGMENT_GROUP_COMMIT_WINDOW_MICROS", 1000), 1);
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid segment log durability: " + durability);
+        }
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            logger.error("Failed to open segment log in {}", directory, e);
+            throw new RuntimeException(e);
+        }
+        logger.info("Segment log opened with {} blobs in {} segments in {}", index.size(), segments.size(), directory);
+    }
+
+    /**
+     * Schedules compaction at the interval the log was constructed with, unless it is 0.
+     * Guice calls it once the log is constructed, so the compaction thread never sees a partly constructed log.
+     */
+    @Inject
+    public void startCompaction() {
+        if (compactionIntervalSeconds > 0) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "segment-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::compact, compactionIntervalSeconds, compactionIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Returns true if there is a record for the id.
+     *
+     * @param id The id of the blob.
+     */
+    public boolean contains(String id) {
+        return index.containsKey(id);
+    }
+
+    /**
+     * Appends a blob to the active segment.
+     *
+     * @param id   The id of the blob.
+     * @param data The data of the blob.
+     * @throws DuplicateBlobException If there already is a record for the id.
+     * @throws BlobTooLargeException  If the record would not fit into a segment.
+     */
+    public void append(String id, byte[] data) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("The id of blob " + id + " is longer than " + 0xFFFF + " bytes");
+        }
+        if (HEADER_BYTES + (long) idBytes.length + data.length > maxSegmentBytes) {
+            throw new BlobTooLargeException(id, getMaxBlobBytes() - idBytes.length);
+        }
+        ByteBuffer record = encode(idBytes, data);
+        Location location;
+        writeLock.lock();
+        try {
+            if (index.containsKey(id)) {
+                throw new DuplicateBlobException(id);
+            }
+            location = write(id, record);
+            index.put(id, location);
+        } finally {
+            writeLock.unlock();
+        }
+        sync(id, location.segment);
+    }
+
+    /**
+     * Makes a record appended to a segment durable as "SEGMENT_DURABILITY" asks for.
+     * A segment that is gone by now was compacted, which syncs the copies of its records before deleting it.
+     */
+    private void sync(String id, int segment) {
+        if (durability.equals("none")) {
+            return;
+        }
+        IOException failure;
+        if (groupCommitter != null) {
+            try {
+                groupCommitter.sync(segmentPath(segment));
+                failure = null;
+            } catch (IOException e) {
+                failure = e;
+            }
+        } else {
+            failure = GroupCommitter.force(segmentPath(segment));
+        }
+        if (failure != null && !(failure instanceof NoSuchFileException)) {
+            logger.error("Failed to sync the record of blob {} in segment {}", id, segment, failure);
+            throw new RuntimeException(failure);
+        }
+    }
+
+    /**
+     * Encodes a record, or a tombstone if the data is null, with its checksum.
+     */
+    private static ByteBuffer encode(byte[] idBytes, byte[] data) {
+        int dataLength = data != null ? data.length : TOMBSTONE;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + idBytes.length + Math.max(dataLength, 0));
+        record.putInt(0).putShort((short) idBytes.length).putInt(dataLength).put(idBytes);
+        if (data != null) {
+            record.put(data);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 4, record.capacity() - 4);
+        record.putInt(0, (int) crc.getValue());
+        return record.flip();
+    }
+
+    /**
+     * Writes an encoded record at the end of the active segment, sealing it first if the record does not fit.
+     * Must be called with the write lock held.
+     *
+     * @return The location of the record.
+     */
+    private Location write(String id, ByteBuffer record) {
+        Location location = writeRecord(id, record);
+        activeIds.add(id);
+        liveBytes.get(activeSegment).addAndGet(location.length);
+        return location;
+    }
+
+    /**
+     * Writes a tombstone for an id at the end of the active segment. Must be called with the write lock held.
+     */
+    private void writeTombstone(String id, int removedSegment) {
+        writeRecord(id, encode(id.getBytes(StandardCharsets.UTF_8), null));
+        tombstones.computeIfAbsent(activeSegment, segment -> new LinkedHashMap<>()).put(id, removedSegment);
+    }
+
+    /**
+     * Puts the bytes of a record at the end of the active segment and moves the end past them.
+     * A channel closed by an interrupted reader or writer is reopened, so one interrupt does not fail every later append;
+     * the append of an interrupted writer still fails, as its next write would close the channel again.
+     * A record that was cut short is overwritten by the next one, as the end of the segment only moves once it is whole.
+     */
+    private Location writeRecord(String id, ByteBuffer record) {
+        int length = record.remaining();
+        for (int attempt = 0; ; attempt++) {
+            FileChannel channel = null;
+            try {
+                if (activeBytes + length > maxSegmentBytes && activeBytes > 0) {
+                    roll();
+                }
+                channel = segments.get(activeSegment);
+                long offset = activeBytes;
+                record.rewind();
+                while (record.hasRemaining()) {
+                    channel.write(record, offset + record.position());
+                }
+                activeBytes += length;
+                return new Location(activeSegment, offset, length);
+            } catch (ClosedChannelException e) {
+                reopen(activeSegment, channel != null ? channel : segments.get(activeSegment));
+                if (e instanceof ClosedByInterruptException || attempt >= 2) {
+                    logger.error("Failed to append blob {} to segment {}", id, activeSegment, e);
+                    throw new RuntimeException(e);
+                }
+            } catch (IOException e) {
+                logger.error("Failed to append blob {} to segment {}", id, activeSegment, e);
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Removes a blob, for instance because its metadata could not be saved, by appending a tombstone for it.
+     * The bytes of its record become garbage.
+     *
+     * @param id The id of the blob.
+     */
+    public void remove(String id) {
+        int segment;
+        writeLock.lock();
+        try {
+            Location location = index.get(id);
+            if (location == null) {
+                return;
+            }
+            writeTombstone(id, location.segment);
+            forget(id);
+            segment = activeSegment;
+        } finally {
+            writeLock.unlock();
+        }
+        sync(id, segment);
+    }
+
+    /**
+     * Drops an id from the index and counts the bytes of its record as garbage.
+     */
+    private Location forget(String id) {
+        Location location = index.remove(id);
+        AtomicLong live = location != null ? liveBytes.get(location.segment) : null;
+        if (live != null) {
+            live.addAndGet(-location.length);
+        }
+        return location;
+    }
+
+    /**
+     * Applies a recovered tombstone. It is only kept while it removes a record that is still on disk.
+     */
+    private void recoverTombstone(int segment, String id) {
+        Location removed = forget(id);
+        if (removed != null) {
+            tombstones.computeIfAbsent(segment, key -> new LinkedHashMap<>()).put(id, removed.segment);
+        }
+    }
+
+    /**
+     * Reads the data of a blob with one positional read of its record.
+     *
+     * @param id The id of the blob.
+     * @return A buffer holding the data of the blob, from its position to its limit.
+     * @throws BlobNotFoundException If there is no record for the id.
+     */
+    public ByteBuffer read(String id) {
+        for (int attempt = 0; ; attempt++) {
+            Location location = index.get(id);
+            if (location == null) {
+                throw new BlobNotFoundException(id);
+            }
+            FileChannel channel = segments.get(location.segment);
+            try {
+                if (channel == null) {
+                    throw new ClosedChannelException();
+                }
+                ByteBuffer record = ByteBuffer.allocate(location.length);
+                while (record.hasRemaining()) {
+                    if (channel.read(record, location.offset + record.position()) < 0) {
+                        throw new EOFException("Segment " + location.segment + " ends inside the record of blob " + id);
+                    }
+                }
+                return decode(id, record);
+            } catch (ClosedChannelException e) {
+                // The segment was compacted away, or its channel was closed by an interrupted reader.
+                if (attempt >= 2) {
+                    throw new RuntimeException(e);
+                }
+                reopen(location.segment, channel);
+            } catch (IOException e) {
+                logger.error("Failed to read blob {} from segment {}", id, location.segment, e);
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Verifies a record read from a segment and returns its data.
+     */
+    private static ByteBuffer decode(String id, ByteBuffer record) {
+        record.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 4, record.limit() - 4);
+        int idLength = Short.toUnsignedInt(record.getShort(4));
+        int dataLength = record.getInt(6);
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        if (record.getInt(0) != (int) crc.getValue() || HEADER_BYTES + idLength + dataLength != record.limit()
+                || !Arrays.equals(record.array(), HEADER_BYTES, HEADER_BYTES + idLength, idBytes, 0, idBytes.length)) {
+            throw new RuntimeException("Corrupt segment record for blob " + id);
+        }
+        return record.position(HEADER_BYTES + idLength).slice();
+    }
+
+    /**
+     * Replaces a closed channel of a segment that still exists.
+     */
+    private void reopen(int segment, FileChannel closed) {
+        if (closed == null) {
+            return;
+        }
+        segments.computeIfPresent(segment, (key, current) -> {
+            if (current != closed || current.isOpen()) {
+                return current;
+            }
+            try {
+                return FileChannel.open(segmentPath(segment), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                logger.error("Failed to reopen segment {}", segment, e);
+                return current;
+            }
+        });
+    }
+
+    /**
+     * Seals the active segment, writes its hint file and starts a new one. Must be called with the write lock held.
+     */
+    private void roll() throws IOException {
+        int sealed = activeSegment;
+        segments.get(sealed).force(true);
+        writeHint(sealed, activeIds, tombstones.getOrDefault(sealed, Map.of()));
+        openActive(sealed + 1);
+        activeBytes = 0;
+        activeIds.clear();
+    }
+
+    private void openActive(int segment) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments.put(segment, channel);
+        liveBytes.putIfAbsent(segment, new AtomicLong());
+        activeSegment = segment;
+    }
+
+    /**
+     * Writes the locations of the records of a sealed segment that are still live, and its tombstones, to its hint file.
+     * The file is replaced atomically.
+     */
+    private void writeHint(int segment, Iterable<String> ids, Map<String, Integer> removed) throws IOException {
+        Path temp = hintPath(segment).resolveSibling(hintPath(segment).getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            for (String id : ids) {
+                Location location = index.get(id);
+                if (location == null || location.segment != segment) {
+                    continue;
+                }
+                byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(idBytes.length);
+                out.write(idBytes);
+                out.writeLong(location.offset);
+                out.writeInt(location.length);
+            }
+            for (Map.Entry<String, Integer> tombstone : removed.entrySet()) {
+                byte[] idBytes = tombstone.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(idBytes.length);
+                out.write(idBytes);
+                out.writeLong(tombstone.getValue());
+                out.writeInt(TOMBSTONE);
+            }
+        }
+        Files.move(temp, hintPath(segment), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Rebuilds the index from the segments in the directory, oldest first, so the newest record of an id wins.
+     * Sealed segments are read from their hint file if they have one; the others are scanned, and get a hint file afterwards.
+     */
+    private void recover() throws IOException {
+        List<Integer> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    found.add(Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                } else if (name.endsWith(".tmp")) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        logger.warn("Failed to delete leftover file {}", file, e);
+                    }
+                }
+            });
+        }
+        found.sort(null);
+        if (found.isEmpty()) {
+            openActive(0);
+            return;
+        }
+        int last = found.get(found.size() - 1);
+        for (int segment : found) {
+            segments.put(segment, FileChannel.open(segmentPath(segment), StandardOpenOption.READ, StandardOpenOption.WRITE));
+            liveBytes.put(segment, new AtomicLong());
+            List<String> ids = segment != last && Files.exists(hintPath(segment)) ? loadHint(segment) : scan(segment, segment == last);
+            if (segment == last) {
+                activeIds.addAll(ids);
+            } else if (!Files.exists(hintPath(segment))) {
+                writeHint(segment, ids, tombstones.getOrDefault(segment, Map.of()));
+            }
+        }
+        activeSegment = last;
+        activeBytes = segments.get(last).size();
+    }
+
+    /**
+     * Reads the hint file of a sealed segment into the index.
+     *
+     * @return The ids listed in it.
+     */
+    private List<String> loadHint(int segment) throws IOException {
+        List<String> ids = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(hintPath(segment))))) {
+            while (true) {
+                int idLength;
+                try {
+                    idLength = in.readUnsignedShort();
+                } catch (EOFException e) {
+                    break;
+                }
+                String id = new String(in.readNBytes(idLength), StandardCharsets.UTF_8);
+                long offset = in.readLong();
+                int length = in.readInt();
+                if (length == TOMBSTONE) {
+                    recoverTombstone(segment, id);
+                } else {
+                    index(id, new Location(segment, offset, length));
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Reads every record of a segment into the index, verifying its checksum.
+     * The scan stops at the first record that is incomplete or corrupt; in the active segment everything from there on is
+     * cut off, as it can only be an append that was interrupted by a crash.
+     *
+     * @return The ids of the records that were read.
+     */
+    private List<String> scan(int segment, boolean active) throws IOException {
+        List<String> ids = new ArrayList<>();
+        FileChannel channel = segments.get(segment);
+        long end = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentPath(segment))))) {
+            while (true) {
+                byte[] header = in.readNBytes(HEADER_BYTES);
+                if (header.length < HEADER_BYTES) {
+                    break;
+                }
+                ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+                int idLength = Short.toUnsignedInt(headerBuffer.getShort(4));
+                int dataLength = headerBuffer.getInt(6);
+                if (dataLength < TOMBSTONE || HEADER_BYTES + (long) idLength + dataLength > maxSegmentBytes) {
+                    break;
+                }
+                int bodyLength = idLength + Math.max(dataLength, 0);
+                byte[] body = in.readNBytes(bodyLength);
+                if (body.length < bodyLength) {
+                    break;
+                }
+                CRC32C crc = new CRC32C();
+                crc.update(header, 4, HEADER_BYTES - 4);
+                crc.update(body);
+                if (headerBuffer.getInt(0) != (int) crc.getValue()) {
+                    break;
+                }
+                String id = new String(body, 0, idLength, StandardCharsets.UTF_8);
+                if (dataLength == TOMBSTONE) {
+                    recoverTombstone(segment, id);
+                } else {
+                    index(id, new Location(segment, end, HEADER_BYTES + bodyLength));
+                    ids.add(id);
+                }
+                end += HEADER_BYTES + bodyLength;
+            }
+        }
+        if (end < channel.size()) {
+            if (active) {
+                logger.warn("Cutting off {} bytes of an interrupted append at the end of segment {}", channel.size() - end, segment);
+                channel.truncate(end);
+            } else {
+                logger.error("Segment {} is corrupt after offset {}; the records after it are lost", segment, end);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Points the index at a recovered record, turning an older record of the same id into garbage.
+     */
+    private void index(String id, Location location) {
+        Location previous = index.put(id, location);
+        if (previous != null) {
+            liveBytes.get(previous.segment).addAndGet(-previous.length);
+        }
+        liveBytes.get(location.segment).addAndGet(location.length);
+    }
+
+    /**
+     * Compacts every sealed segment in which at least "SEGMENT_COMPACTION_GARBAGE_PERCENT" percent of the bytes are garbage.
+     * The live records are copied to the active segment as they are, the index is pointed at the copies and the segment is deleted.
+     * Its tombstones are copied as well while the segment holding the record they remove still exists.
+     * Reads of a record that is being moved keep working: they either find the old segment or retry at the new location.
+     *
+     * @return The number of segments that were compacted.
+     */
+    public int compact() {
+        if (!compactionLock.tryLock()) {
+            return 0;
+        }
+        try {
+            int compacted = 0;
+            for (int segment : List.copyOf(segments.keySet())) {
+                if (segment == activeSegment || !isWorthCompacting(segment)) {
+                    continue;
+                }
+                compact(segment);
+                compacted++;
+            }
+            return compacted;
+        } catch (IOException e) {
+            logger.error("Failed to compact the segment log", e);
+            return 0;
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    private boolean isWorthCompacting(int segment) throws IOException {
+        long total = segments.get(segment).size();
+        long garbage = total - liveBytes.get(segment).get();
+        return total > 0 && garbage * 100 >= (long) garbagePercent * total;
+    }
+
+    private void compact(int segment) throws IOException {
+        long start = System.nanoTime();
+        FileChannel channel = segments.get(segment);
+        int moved = 0;
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            if (location.segment != segment) {
+                continue;
+            }
+            ByteBuffer record = ByteBuffer.allocate(location.length);
+            while (record.hasRemaining()) {
+                if (channel.read(record, location.offset + record.position()) < 0) {
+                    throw new EOFException("Segment " + segment + " ends inside the record of blob " + entry.getKey());
+                }
+            }
+            record.flip();
+            writeLock.lock();
+            try {
+                if (index.get(entry.getKey()) == location) {
+                    index.put(entry.getKey(), write(entry.getKey(), record));
+                    liveBytes.get(segment).addAndGet(-location.length);
+                    moved++;
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        writeLock.lock();
+        try {
+            for (Map.Entry<String, Integer> tombstone : tombstones.getOrDefault(segment, Map.of()).entrySet()) {
+                if (segments.containsKey(tombstone.getValue()) && !index.containsKey(tombstone.getKey())) {
+                    writeTombstone(tombstone.getKey(), tombstone.getValue());
+                }
+            }
+            // The copies must be on disk before the only other copy of their records is deleted.
+            segments.get(activeSegment).force(true);
+        } finally {
+            writeLock.unlock();
+        }
+        tombstones.remove(segment);
+        segments.remove(segment);
+        liveBytes.remove(segment);
+        channel.close();
+        Files.deleteIfExists(hintPath(segment));
+        Files.deleteIfExists(segmentPath(segment));
+        compactions.increment();
+        logger.info("Compacted segment {}: moved {} live blobs in {} ms", segment, moved, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("%010d", segment) + SEGMENT_SUFFIX);
+    }
+
+    private Path hintPath(int segment) {
+        return directory.resolve(String.format("%010d", segment) + HINT_SUFFIX);
+    }
+
+    /**
+     * Returns the size of the largest blob a record can hold, not counting its id.
+     */
+    public long getMaxBlobBytes() {
+        return maxSegmentBytes - HEADER_BYTES;
+    }
+
+    public int getBlobs() {
+        return index.size();
+    }
+
+    public int getSegments() {
+        return segments.size();
+    }
+
+    public long getCompactions() {
+        return compactions.sum();
+    }
+
+    /**
+     * Where the record of a blob is: its segment, the offset of the record in it and the length of the whole record.
+     */
+    private static final class Location {
+        private final int segment;
+        private final long offset;
+        private final int length;
+
+        private Location(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.example.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.inject.Singleton;
+import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.Options;
+
+/**
+ * This class holds the Undertow tuning values the server is started with.
+ * A preset is chosen with the "SERVER_PROFILE" system property and every value can be overridden on its own:
+ * "default" keeps Undertow's own defaults, "small-blob" is tuned for many small requests per second
+ * (small buffers, HTTP/2, pipelining, a long accept backlog and a request size cap), and "large-blob" is tuned for
+ * bandwidth (large direct buffers, no size cap and long idle timeouts for slow transfers).
+ * The values are read once at startup.
+ */
+@Singleton
+public class ServerProfile {
+    private static final Logger logger = LoggerFactory.getLogger(ServerProfile.class);
+    private static final String DEFAULT = "default";
+    private static final String SMALL_BLOB = "small-blob";
+    private static final String LARGE_BLOB = "large-blob";
+    private static final int KIB = 1024;
+
+    private final String name;
+    private final int ioThreads;
+    private final int workerThreads;
+    private final int bufferSize;
+    private final boolean directBuffers;
+    private final int backlog;
+    private final boolean keepAlive;
+    private final int idleTimeoutMs;
+    private final long maxEntitySize;
+    private final boolean http2;
+    private final boolean bufferPipelinedData;
+
+    /**
+     * Constructor for the ServerProfile.
+     * Loads the preset named by "SERVER_PROFILE" and applies the individual "SERVER_*" overrides on top of it.
+     */
+    public ServerProfile() {
+        this.name = System.getProperty("SERVER_PROFILE", DEFAULT);
+        int cores = Math.max(2, Runtime.getRuntime().availableProcessors());
+        int presetIoThreads;
+        int presetWorkerThreads;
+        int presetBufferSize;
+        int presetBacklog;
+        int presetIdleTimeoutMs;
+        long presetMaxEntitySize;
+        boolean presetHttp2;
+        boolean presetPipelining;
+        switch (name) {
+            case DEFAULT:
+                presetIoThreads = cores;
+                presetWorkerThreads = cores * 8;
+                presetBufferSize = 16 * KIB;
+                presetBacklog = 1000;
+                presetIdleTimeoutMs = 60_000;
+                presetMaxEntitySize = -1;
+                presetHttp2 = false;
+                presetPipelining = false;
+                break;
+            case SMALL_BLOB:
+                presetIoThreads = cores * 2;
+                presetWorkerThreads = cores * 16;
+                presetBufferSize = 4 * KIB;
+                presetBacklog = 4096;
+                presetIdleTimeoutMs = 30_000;
+                presetMaxEntitySize = 64L * KIB * KIB;
+                presetHttp2 = true;
+                presetPipelining = true;
+                break;
+            case LARGE_BLOB:
+                presetIoThreads = cores;
+                presetWorkerThreads = cores * 8;
+                presetBufferSize = 64 * KIB;
+                presetBacklog = 1000;
+                presetIdleTimeoutMs = 300_000;
+                presetMaxEntitySize = -1;
+                presetHttp2 = false;
+                presetPipelining = false;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid server profile: " + name);
+        }
+        this.ioThreads = Integer.getInteger("SERVER_IO_THREADS", presetIoThreads);
+        this.workerThreads = Integer.getInteger("SERVER_WORKER_THREADS", presetWorkerThreads);
+        this.bufferSize = Integer.getInteger("SERVER_BUFFER_SIZE", presetBufferSize);
+        this.directBuffers = Boolean.parseBoolean(System.getProperty("SERVER_DIRECT_BUFFERS", "true"));
+        this.backlog = Integer.getInteger("SERVER_BACKLOG", presetBacklog);
+        this.keepAlive = Boolean.parseBoolean(System.getProperty("SERVER_KEEP_ALIVE", "true"));
+        this.idleTimeoutMs = Integer.getInteger("SERVER_IDLE_TIMEOUT_MS", presetIdleTimeoutMs);
+        this.maxEntitySize = Long.getLong("SERVER_MAX_ENTITY_SIZE", presetMaxEntitySize);
+        this.http2 = Boolean.parseBoolean(System.getProperty("SERVER_HTTP2", String.valueOf(presetHttp2)));
+        this.bufferPipelinedData = Boolean.parseBoolean(System.getProperty("SERVER_BUFFER_PIPELINED_DATA", String.valueOf(presetPipelining)));
+    }
+
+    /**
+     * Applies the profile to an Undertow builder.
+     * HTTP/2 is offered as h2c (prior knowledge or upgrade) on the plain HTTP listener.
+     *
+     * @param builder The builder the server is built with.
+     * @return The same builder.
+     */
+    public Undertow.Builder applyTo(Undertow.Builder builder) {
+        logger.info("Server profile {} applied: {}", name, this);
+        return builder
+                .setIoThreads(ioThreads)
+                .setWorkerThreads(workerThreads)
+                .setBufferSize(bufferSize)
+                .setDirectBuffers(directBuffers)
+                .setSocketOption(Options.BACKLOG, backlog)
+                .setSocketOption(Options.KEEP_ALIVE, keepAlive)
+                .setSocketOption(Options.TCP_NODELAY, true)
+                .setServerOption(UndertowOptions.ALWAYS_SET_KEEP_ALIVE, keepAlive)
+                .setServerOption(UndertowOptions.IDLE_TIMEOUT, idleTimeoutMs)
+                .setServerOption(UndertowOptions.MAX_ENTITY_SIZE, maxEntitySize)
+                .setServerOption(UndertowOptions.ENABLE_HTTP2, http2)
+                .setServerOption(UndertowOptions.BUFFER_PIPELINED_DATA, bufferPipelinedData);
+    }
+
+    @JsonProperty("name")
+    public String getName() {
+        return name;
+    }
+
+    @JsonProperty("ioThreads")
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    @JsonProperty("workerThreads")
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    @JsonProperty("bufferSize")
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    @JsonProperty("directBuffers")
+    public boolean isDirectBuffers() {
+        return directBuffers;
+    }
+
+    @JsonProperty("backlog")
+    public int getBacklog() {
+        return backlog;
+    }
+
+    @JsonProperty("keepAlive")
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    @JsonProperty("idleTimeoutMs")
+    public int getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    /**
+     * Returns the largest request body the server accepts, in bytes.
+     *
+     * @return The limit, or -1 for no limit.
+     */
+    @JsonProperty("maxEntitySize")
+    public long getMaxEntitySize() {
+        return maxEntitySize;
+    }
+
+    @JsonProperty("http2")
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    @JsonProperty("bufferPipelinedData")
+    public boolean isBufferPipelinedData() {
+        return bufferPipelinedData;
+    }
+
+    @Override
+    public String toString() {
+        return "ServerProfile{" +
+                "name='" + name + '\'' +
+                ", ioThreads=" + ioThreads +
+                ", workerThreads=" + workerThreads +
+                ", bufferSize=" + bufferSize +
+                ", directBuffers=" + directBuffers +
+                ", backlog=" + backlog +
+                ", keepAlive=" + keepAlive +
+                ", idleTimeoutMs=" + idleTimeoutMs +
+                ", maxEntitySize=" + maxEntitySize +
+                ", http2=" + http2 +
+                ", bufferPipelinedData=" + bufferPipelinedData +
+                '}';
+    }
+}
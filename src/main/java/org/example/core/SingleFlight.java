@@ -0,0 +1,96 @@
+package org.example.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.inject.Singleton;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * This class is responsible for coalescing concurrent reads of the same key into one.
+ * The first caller for a key runs the work on its own thread; callers that arrive while it is running wait for its result
+ * instead of repeating it, and receive the same value or the same exception. The key is released as soon as the work finishes,
+ * so results are never reused by later callers and a failure is not remembered.
+ * A waiting caller that is interrupted stops waiting without affecting the others; the work itself is never cancelled,
+ * since other callers may still be waiting for it.
+ */
+@Singleton
+public class SingleFlight {
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder flights = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Runs the work for a key, or waits for the run that is already in flight for it.
+     *
+     * @param key    The key identifying the work, for example "blob:" followed by the blob id.
+     * @param loader The work; it runs on the calling thread if no other caller is running it.
+     * @param <V>    The type of the result, which must be safe to share between callers.
+     * @return The result of the work.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(String key, Supplier<V> loader) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return (V) await(existing);
+        }
+        flights.increment();
+        try {
+            V value = loader.get();
+            inFlight.remove(key, flight);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for the run of another caller and rethrows its exception unchanged, so callers can handle it by type.
+     */
+    private static Object await(CompletableFuture<Object> flight) {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a coalesced read");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the number of times the work was actually run.
+     */
+    @JsonProperty("flights")
+    public long getFlights() {
+        return flights.sum();
+    }
+
+    /**
+     * Returns the number of callers that were given the result of another caller's run instead of running the work.
+     */
+    @JsonProperty("coalesced")
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    @JsonProperty("inFlight")
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
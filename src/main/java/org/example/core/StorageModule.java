@@ -1,6 +1,7 @@
 package org.example.core;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
 import org.example.services.*;
 import org.example.services.S3StorageService;
 
@@ -8,38 +9,57 @@ import org.example.services.S3StorageService;
  * This class is responsible for configuring the storage service of the application.
  * It extends the AbstractModule class from Google Guice, which allows for dependency injection.
  * The storage service is chosen based on the "STORAGE_BACKEND" system property.
+ * The backend is always wrapped in a CachingStorageService, which coalesces concurrent reads even when both blob caches
+ * are disabled, and stays available as @Named("backend").
+ * If the disk cache ("DISK_CACHE_MAX_BYTES") is enabled, the remote backends (S3 and FTP) are additionally fronted by a
+ * DiskCacheStorageService and stay available as @Named("remote").
  */
 public class StorageModule extends AbstractModule {
     /**
      * Configures the storage service of the application.
      * The storage service is chosen based on the "STORAGE_BACKEND" system property.
-     * The possible values for "STORAGE_BACKEND" are "s3", "database", "local", and "ftp".
+     * The possible values for "STORAGE_BACKEND" are "s3", "database", "local", "segment", and "ftp".
      * If the value of "STORAGE_BACKEND" is not one of these, an IllegalArgumentException is thrown.
      */
     @Override
     protected void configure() {
         String storageBackend = System.getProperty("STORAGE_BACKEND");
+        Class<? extends StorageService> backend;
 
         switch (storageBackend) {
             case "s3":
                 // If "STORAGE_BACKEND" is "s3", the S3StorageService is used.
-                bind(StorageService.class).to(S3StorageService.class);
+                backend = S3StorageService.class;
                 break;
             case "database":
                 // If "STORAGE_BACKEND" is "database", the DatabaseStorageService is used.
-                bind(StorageService.class).to(DatabaseStorageService.class);
+                backend = DatabaseStorageService.class;
                 break;
             case "local":
                 // If "STORAGE_BACKEND" is "local", the LocalFileStorageService is used.
-                bind(StorageService.class).to(LocalFileStorageService.class);
+                backend = LocalFileStorageService.class;
+                break;
+            case "segment":
+                // If "STORAGE_BACKEND" is "segment", the SegmentStorageService is used.
+                backend = SegmentStorageService.class;
                 break;
             case "ftp":
                 // If "STORAGE_BACKEND" is "ftp", the FtpStorageService is used.
-                bind(StorageService.class).to(FtpStorageService.class);
+                backend = FtpStorageService.class;
                 break;
             default:
                 // If "STORAGE_BACKEND" is not one of the expected values, an IllegalArgumentException is thrown.
                 throw new IllegalArgumentException("Invalid storage backend: " + storageBackend);
         }
+
+        if ((backend == S3StorageService.class || backend == FtpStorageService.class) && Long.getLong("DISK_CACHE_MAX_BYTES", 0) > 0) {
+            // Reads of remote blobs are served from the local disk once they have been downloaded or uploaded here.
+            bind(StorageService.class).annotatedWith(Names.named("remote")).to(backend);
+            backend = DiskCacheStorageService.class;
+        }
+
+        // Reads go through the blob cache and the SingleFlight, which delegate to the backend on a miss.
+        bind(StorageService.class).annotatedWith(Names.named("backend")).to(backend);
+        bind(StorageService.class).to(CachingStorageService.class);
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,11 @@
 package org.example.core;
 
 import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.handlers.encoding.ContentEncodingRepository;
+import io.undertow.server.handlers.encoding.DeflateEncodingProvider;
+import io.undertow.server.handlers.encoding.EncodingHandler;
+import io.undertow.server.handlers.encoding.GzipEncodingProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,8 +17,10 @@ public class WebServer {
     private static final Logger logger = LoggerFactory.getLogger(WebServer.class);
     private static final int PORT = System.getProperty("PORT") != null ? Integer.parseInt(System.getProperty("PORT")) : 8911;
     private static final String HOST = System.getProperty("HOST") != null ? System.getProperty("HOST") : "0.0.0.0";
+    private static final boolean COMPRESSION_ENABLED = Boolean.parseBoolean(System.getProperty("COMPRESSION_ENABLED", "true"));
 
     private final RouteManager routeManager = ApplicationInitializer.injector.getInstance(RouteManager.class);
+    private final ServerProfile serverProfile = ApplicationInitializer.injector.getInstance(ServerProfile.class);
     private Undertow server;
 
     /**
@@ -26,15 +33,34 @@ public class WebServer {
 
     /**
      * Initializes the server.
-     * The server is built with the port and host, and the router from the RouteManager.
+     * The server is built with the port and host, the router from the RouteManager and the tuning values of the ServerProfile.
      */
     private void initializeServer() {
-        this.server = Undertow.builder()
+        HttpHandler handler = routeManager.getRouter();
+        if (COMPRESSION_ENABLED) {
+            handler = withCompression(handler);
+        }
+        this.server = serverProfile.applyTo(Undertow.builder())
                 .addHttpListener(PORT, HOST)
-                .setHandler(routeManager.getRouter())
+                .setHandler(handler)
                 .build();
     }
 
+    /**
+     * Wraps the handler so responses are compressed according to the client's Accept-Encoding header.
+     * gzip is preferred over deflate; the CompressionPredicate skips small and already compressed responses.
+     *
+     * @param next The handler to wrap.
+     * @return The compressing handler.
+     */
+    private HttpHandler withCompression(HttpHandler next) {
+        CompressionPredicate predicate = new CompressionPredicate();
+        ContentEncodingRepository encodings = new ContentEncodingRepository()
+                .addEncodingHandler("gzip", new GzipEncodingProvider(), 100, predicate)
+                .addEncodingHandler("deflate", new DeflateEncodingProvider(), 50, predicate);
+        return new EncodingHandler(next, encodings);
+    }
+
     /**
      * Starts the server.
      * Logs a message indicating that the server has started successfully.
@@ -0,0 +1,252 @@
+package org.example.database;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.inject.Singleton;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class is responsible for keeping recently read "metadata" documents in memory, so most reads skip a round trip to MongoDB.
+ * Blobs are create-only, so a document that was found never goes stale and is kept until it is the least recently used of
+ * "METADATA_CACHE_SIZE" entries. Ids that were looked up and not found are remembered as well, for "METADATA_CACHE_NEGATIVE_TTL_MS"
+ * milliseconds (5 seconds by default), so clients asking for the same missing ids over and over do not reach MongoDB every time;
+ * the TTL bounds how long a blob written by another server stays invisible here. Misses get at most a quarter of the entries,
+ * so a flood of random ids cannot displace the documents that are actually read.
+ * The cache is disabled when "METADATA_CACHE_SIZE" is 0.
+ */
+@Singleton
+public class MetadataCache {
+    private static final Logger logger = LoggerFactory.getLogger(MetadataCache.class);
+
+    private final int maxEntries;
+    private final int maxMissingEntries;
+    private final long negativeTtlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Document> documents;
+    private final LinkedHashMap<String, Long> missing;
+    private long hits;
+    private long negativeHits;
+    private long misses;
+
+    /**
+     * Constructor for the MetadataCache.
+     * Reads the number of entries from "METADATA_CACHE_SIZE" (10000 by default) and the lifetime of misses
+     * from "METADATA_CACHE_NEGATIVE_TTL_MS" (5000 by default, 0 disables negative caching).
+     */
+    public MetadataCache() {
+        this(Integer.getInteger("METADATA_CACHE_SIZE", 10000), Long.getLong("METADATA_CACHE_NEGATIVE_TTL_MS", 5000));
+    }
+
+    /**
+     * Constructor for the MetadataCache.
+     *
+     * @param maxEntries    The number of documents kept, or 0 to disable the cache.
+     * @param negativeTtlMs How long an id that was not found is reported as missing, or 0 to not remember misses.
+     */
+    public MetadataCache(int maxEntries, long negativeTtlMs) {
+        this.maxEntries = Math.max(maxEntries, 0);
+        this.maxMissingEntries = negativeTtlMs > 0 ? Math.max(this.maxEntries / 4, 1) : 0;
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(negativeTtlMs, 0));
+        this.documents = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Document> eldest) {
+                return size() > MetadataCache.this.maxEntries;
+            }
+        };
+        this.missing = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxMissingEntries;
+            }
+        };
+        logger.info("Metadata cache {}: {} entries, misses kept for {} ms", isEnabled() ? "enabled" : "disabled", this.maxEntries, negativeTtlMs);
+    }
+
+    @JsonProperty("enabled")
+    public final boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Looks up the metadata document of a blob and records a hit or a miss.
+     *
+     * @param id The id of the blob.
+     * @return The cached document, which must not be modified, or null if it is not cached.
+     */
+    public Document get(String id) {
+        if (!isEnabled()) {
+            return null;
+        }
+        lock.lock();
+        try {
+            Document document = documents.get(id);
+            if (document != null) {
+                hits++;
+            } else if (!isMissingLocked(id)) {
+                misses++;
+            }
+            return document;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether a blob was recently looked up and not found. Called after {@link #get(String)} returned null.
+     *
+     * @param id The id of the blob.
+     * @return true if the blob is known not to exist and MongoDB need not be asked.
+     */
+    public boolean isMissing(String id) {
+        if (!isEnabled()) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (isMissingLocked(id)) {
+                negativeHits++;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isMissingLocked(String id) {
+        Long expiresAt = missing.get(id);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt - System.nanoTime() <= 0) {
+            missing.remove(id);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Caches the metadata document of a blob that was read or written, replacing any record of it being missing.
+     *
+     * @param id       The id of the blob.
+     * @param document The "metadata" document, which must not be modified afterwards.
+     */
+    public void put(String id, Document document) {
+        if (!isEnabled()) {
+            return;
+        }
+        lock.lock();
+        try {
+            missing.remove(id);
+            documents.put(id, document);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that a blob has no metadata document, for the negative TTL.
+     *
+     * @param id The id of the blob.
+     */
+    public void putMissing(String id) {
+        if (!isEnabled() || maxMissingEntries == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (!documents.containsKey(id)) {
+                missing.put(id, System.nanoTime() + negativeTtlNanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets everything known about a blob, so its next lookup goes to MongoDB.
+     *
+     * @param id The id of the blob.
+     */
+    public void invalidate(String id) {
+        if (!isEnabled()) {
+            return;
+        }
+        lock.lock();
+        try {
+            documents.remove(id);
+            missing.remove(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @JsonProperty("maxEntries")
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    @JsonProperty("negativeTtlMs")
+    public long getNegativeTtlMs() {
+        return TimeUnit.NANOSECONDS.toMillis(negativeTtlNanos);
+    }
+
+    @JsonProperty("entries")
+    public int getEntries() {
+        lock.lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @JsonProperty("missingEntries")
+    public int getMissingEntries() {
+        lock.lock();
+        try {
+            return missing.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @JsonProperty("hits")
+    public long getHits() {
+        lock.lock();
+        try {
+            return hits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of lookups answered as missing without asking MongoDB.
+     */
+    @JsonProperty("negativeHits")
+    public long getNegativeHits() {
+        lock.lock();
+        try {
+            return negativeHits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @JsonProperty("misses")
+    public long getMisses() {
+        lock.lock();
+        try {
+            return misses;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,33 +1,58 @@
 package org.example.database;
 
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoWriteException;
 import com.mongodb.client.*;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.GridFSDownloadStream;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
 import org.bson.Document;
 import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.example.exception.DuplicateBlobException;
 import org.example.model.Blob;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * This class is responsible for managing the MongoDB client.
  * It provides methods to initialize the client, build the connection string, insert documents, find documents, insert metadata, and close the client.
+ * Reads of the "metadata" collection go through a {@link MetadataCache}, which the metadata writes keep up to date.
  */
 @Singleton
 public class MongoDBClient {
     private static final Logger logger = LoggerFactory.getLogger(MongoClient.class);
+    private static final String BUCKET_NAME = "blobs";
 
     private final MongoClient mongoClient;
     private final MongoDatabase database;
+    private final MetadataCache metadataCache;
+    private volatile GridFSBucket bucket;
 
     /**
      * Constructor for the MongoDBClient.
      * Initializes the mongoClient and database, and migrates the database.
+     *
+     * @param metadataCache The cache in front of the "metadata" collection.
      */
-    public MongoDBClient() {
+    @Inject
+    public MongoDBClient(MetadataCache metadataCache) {
         logger.info("Initializing MongoDBClient...");
+        this.metadataCache = metadataCache;
         String connectionString = buildConnectionString();
         this.mongoClient = MongoClients.create(connectionString);
         String dbName = System.getProperty("DB_NAME");
@@ -45,6 +70,7 @@ public class MongoDBClient {
      */
     public MongoDBClient(MongoClient mongoClient) {
         this.mongoClient = mongoClient;
+        this.metadataCache = new MetadataCache();
         String dbName = "test_db";
         this.database = mongoClient.getDatabase(dbName);
     }
@@ -89,6 +115,49 @@ public class MongoDBClient {
         }
     }
 
+    /**
+     * Inserts several documents into the specified collection with one unordered "insertMany".
+     * The insert is unordered, so a duplicate id only rejects its own document and the rest of the batch is still written.
+     *
+     * @param collectionName The name of the collection.
+     * @param documents      The documents to insert.
+     * @return The write errors keyed by the index of the rejected document; empty if every document was inserted.
+     */
+    public Map<Integer, BulkWriteError> insertDocuments(String collectionName, List<Document> documents) {
+        Map<Integer, BulkWriteError> errors = new HashMap<>();
+        if (documents.isEmpty()) {
+            return errors;
+        }
+        logger.info("Inserting {} documents into collection: {}", documents.size(), collectionName);
+        MongoCollection<Document> collection = database.getCollection(collectionName);
+        try {
+            collection.insertMany(documents, new InsertManyOptions().ordered(false));
+            logger.info("Documents inserted successfully.");
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                errors.put(error.getIndex(), error);
+            }
+            logger.error("{} of {} documents were rejected by collection: {}", errors.size(), documents.size(), collectionName);
+        }
+        return errors;
+    }
+
+    /**
+     * Deletes the documents of the specified collection whose id is one of the given ids.
+     *
+     * @param collectionName The name of the collection.
+     * @param ids            The ids of the documents to delete.
+     * @return The number of deleted documents.
+     */
+    public long deleteDocuments(String collectionName, Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        logger.info("Deleting {} documents from collection: {}", ids.size(), collectionName);
+        MongoCollection<Document> collection = database.getCollection(collectionName);
+        return collection.deleteMany(Filters.in("id", ids)).getDeletedCount();
+    }
+
     /**
      * Finds a document in the specified collection with the provided filter.
      *
@@ -105,16 +174,193 @@ public class MongoDBClient {
     }
 
     /**
-     * Inserts metadata for the provided blob into the "metadata" collection.
+     * Inserts metadata for the provided blob into the "metadata" collection and caches it, so the first read needs no round trip.
+     * If the id already exists its cached entry is dropped, as the stored document is not the one that was just rejected.
      *
      * @param blob The blob for which to insert metadata.
      */
     public void insertMetadata(Blob blob) {
+        Document document = toMetadataDocument(blob);
+        try {
+            insertDocument("metadata", document);
+        } catch (RuntimeException e) {
+            metadataCache.invalidate(blob.getId());
+            throw e;
+        }
+        metadataCache.put(blob.getId(), document);
+    }
+
+    /**
+     * Inserts the metadata of several blobs into the "metadata" collection in one round trip.
+     * The inserted documents are cached; the cached entries of rejected ones are dropped.
+     *
+     * @param blobs The blobs for which to insert metadata.
+     * @return The write errors keyed by the index of the rejected blob; empty if all metadata was inserted.
+     */
+    public Map<Integer, BulkWriteError> insertAllMetadata(List<Blob> blobs) {
+        List<Document> documents = new ArrayList<>(blobs.size());
+        for (Blob blob : blobs) {
+            documents.add(toMetadataDocument(blob));
+        }
+        Map<Integer, BulkWriteError> errors = insertDocuments("metadata", documents);
+        for (int i = 0; i < blobs.size(); i++) {
+            if (errors.containsKey(i)) {
+                metadataCache.invalidate(blobs.get(i).getId());
+            } else {
+                metadataCache.put(blobs.get(i).getId(), documents.get(i));
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Maps a blob to its "metadata" document.
+     *
+     * @param blob The blob.
+     * @return The "metadata" document.
+     */
+    private Document toMetadataDocument(Blob blob) {
         Document document = new Document();
         document.append("id", blob.getId());
         document.append("size", blob.getSize());
         document.append("timestamp", blob.getCreatedAt());
-        insertDocument("metadata", document);
+        if (blob.getHash() != null) {
+            document.append("hash", blob.getHash());
+        }
+        if (blob.getEncoding() != null) {
+            document.append("encoding", blob.getEncoding());
+        }
+        if (blob.getCrc32c() != null) {
+            document.append("crc32c", blob.getCrc32c());
+        }
+        if (blob.getTreeHash() != null) {
+            document.append("treeHash", blob.getTreeHash());
+        }
+        return document;
+    }
+
+    /**
+     * Finds the metadata of a blob, without touching the blob data.
+     * The "metadata" collection is only queried if the cache neither holds the document nor recently saw it missing.
+     *
+     * @param id The id of the blob.
+     * @return A new blob holding only the metadata (size, timestamp and hash), or null if there is none.
+     */
+    public Blob findMetadata(String id) {
+        Document document = metadataCache.get(id);
+        if (document == null) {
+            if (metadataCache.isMissing(id)) {
+                return null;
+            }
+            FindIterable<Document> findIterable = findDocument("metadata", new Document("id", id));
+            document = findIterable == null ? null : findIterable.first();
+            if (document == null) {
+                metadataCache.putMissing(id);
+                return null;
+            }
+            metadataCache.put(id, document);
+        }
+        return toMetadata(document);
+    }
+
+    /**
+     * Finds the metadata of several blobs, querying the "metadata" collection with a single "$in" for the ids the cache cannot answer.
+     *
+     * @param ids The ids of the blobs.
+     * @return The metadata keyed by blob id; ids without metadata are absent.
+     */
+    public Map<String, Blob> findMetadata(Collection<String> ids) {
+        Map<String, Blob> metadata = new HashMap<>();
+        List<String> uncached = new ArrayList<>();
+        for (String id : ids) {
+            Document document = metadataCache.get(id);
+            if (document != null) {
+                metadata.put(id, toMetadata(document));
+            } else if (!metadataCache.isMissing(id)) {
+                uncached.add(id);
+            }
+        }
+        if (uncached.isEmpty()) {
+            return metadata;
+        }
+        FindIterable<Document> findIterable = findDocument("metadata", Filters.in("id", uncached));
+        if (findIterable == null) {
+            return metadata;
+        }
+        for (Document document : findIterable) {
+            String id = document.getString("id");
+            metadataCache.put(id, document);
+            metadata.put(id, toMetadata(document));
+        }
+        for (String id : uncached) {
+            if (!metadata.containsKey(id)) {
+                metadataCache.putMissing(id);
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Maps a "metadata" document to a blob without data.
+     *
+     * @param document The "metadata" document.
+     * @return A blob holding only the metadata.
+     */
+    private Blob toMetadata(Document document) {
+        Blob blob = new Blob(document.getString("id"), null);
+        blob.setSize(document.getInteger("size"));
+        blob.setCreatedAt(new Timestamp(document.getDate("timestamp").getTime()));
+        blob.setHash(document.getString("hash"));
+        blob.setEncoding(document.getString("encoding"));
+        blob.setCrc32c(document.getString("crc32c"));
+        blob.setTreeHash(document.getString("treeHash"));
+        return blob;
+    }
+
+    /**
+     * Streams the provided data into the GridFS bucket in fixed-size chunks.
+     *
+     * @param filename The filename to record in the bucket, usually the blob id.
+     * @param data     The data to upload.
+     * @return The id of the stored GridFS file.
+     */
+    public ObjectId uploadToBucket(String filename, InputStream data) {
+        logger.info("Uploading {} to bucket: {}", filename, BUCKET_NAME);
+        ObjectId fileId = getBucket().uploadFromStream(filename, data);
+        logger.info("Upload to bucket finished with file id {}", fileId);
+        return fileId;
+    }
+
+    /**
+     * Opens a stream over a file stored in the GridFS bucket.
+     *
+     * @param fileId The id of the GridFS file.
+     * @return A stream that fetches the file chunk by chunk.
+     */
+    public GridFSDownloadStream openBucketStream(ObjectId fileId) {
+        return getBucket().openDownloadStream(fileId);
+    }
+
+    /**
+     * Deletes a file and its chunks from the GridFS bucket.
+     *
+     * @param fileId The id of the GridFS file.
+     */
+    public void deleteFromBucket(ObjectId fileId) {
+        logger.info("Deleting file {} from bucket: {}", fileId, BUCKET_NAME);
+        getBucket().delete(fileId);
+    }
+
+    /**
+     * Returns the GridFS bucket used for streamed blobs, creating it on first use.
+     *
+     * @return The GridFS bucket.
+     */
+    private GridFSBucket getBucket() {
+        if (bucket == null) {
+            bucket = GridFSBuckets.create(database, BUCKET_NAME);
+        }
+        return bucket;
     }
 
     /**
@@ -135,6 +381,15 @@ public class MongoDBClient {
         return mongoClient;
     }
 
+    /**
+     * Returns the cache in front of the "metadata" collection.
+     *
+     * @return The metadata cache.
+     */
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
     /**
      * Returns the database.
      *
@@ -0,0 +1,13 @@
+package org.example.exception;
+
+public class BlobTooLargeException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public BlobTooLargeException(String id, long limit) {
+        super("Blob " + id + " is larger than the limit of " + limit + " bytes");
+    }
+
+    public BlobTooLargeException(long limit) {
+        super("Blob is larger than the limit of " + limit + " bytes");
+    }
+}
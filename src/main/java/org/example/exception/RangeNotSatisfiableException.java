@@ -0,0 +1,15 @@
+package org.example.exception;
+
+public class RangeNotSatisfiableException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final long size;
+
+    public RangeNotSatisfiableException(String id, long size) {
+        super("Requested range is outside of blob " + id + " (" + size + " bytes)");
+        this.size = size;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
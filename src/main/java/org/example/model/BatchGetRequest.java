@@ -0,0 +1,25 @@
+package org.example.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class BatchGetRequest {
+    @JsonProperty("ids")
+    private List<String> ids;
+
+    public BatchGetRequest() {
+    }
+
+    public BatchGetRequest(List<String> ids) {
+        this.ids = ids;
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<String> ids) {
+        this.ids = ids;
+    }
+}
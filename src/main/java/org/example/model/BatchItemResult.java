@@ -0,0 +1,72 @@
+package org.example.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The outcome for a single id of a batch request.
+ * Batches report every item on its own, so one missing or failing id never fails the whole batch.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+    public static final String OK = "ok";
+    public static final String NOT_FOUND = "not_found";
+    public static final String ERROR = "error";
+    public static final String CREATED = "created";
+    public static final String DUPLICATE = "duplicate";
+
+    @JsonProperty("id")
+    private String id;
+    @JsonProperty("status")
+    private String status;
+    @JsonProperty("blob")
+    private Blob blob;
+    @JsonProperty("error")
+    private String error;
+
+    public BatchItemResult() {
+    }
+
+    public BatchItemResult(String id, String status, Blob blob, String error) {
+        this.id = id;
+        this.status = status;
+        this.blob = blob;
+        this.error = error;
+    }
+
+    public static BatchItemResult found(Blob blob) {
+        return new BatchItemResult(blob.getId(), OK, blob, null);
+    }
+
+    public static BatchItemResult notFound(String id) {
+        return new BatchItemResult(id, NOT_FOUND, null, null);
+    }
+
+    public static BatchItemResult created(String id) {
+        return new BatchItemResult(id, CREATED, null, null);
+    }
+
+    public static BatchItemResult duplicate(String id) {
+        return new BatchItemResult(id, DUPLICATE, null, "A blob with id: " + id + " already exists.");
+    }
+
+    public static BatchItemResult failed(String id, String error) {
+        return new BatchItemResult(id, ERROR, null, error);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public Blob getBlob() {
+        return blob;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
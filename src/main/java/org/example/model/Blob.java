@@ -1,43 +1,85 @@
 package org.example.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.example.utils.FileUtils;
 
 import java.sql.Timestamp;
 import java.util.Base64;
+import java.util.function.Supplier;
 
 public class Blob {
     @JsonProperty("id")
     private String id;
     @JsonProperty("data")
-    private String data;
+    private byte[] data;
     @JsonProperty("size")
     private int size;
     @JsonProperty("createdAt")
     private Timestamp createdAt;
+    @JsonProperty("hash")
+    private String hash;
+    @JsonProperty("encoding")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String encoding;
+    @JsonProperty("crc32c")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String crc32c;
+    @JsonProperty("treeHash")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String treeHash;
+    @JsonIgnore
+    private Supplier<byte[]> dataLoader;
 
     // Add a default constructor
     public Blob() {
     }
 
-    public Blob(String id, String data, int size) {
+    public Blob(String id, byte[] data, int size) {
         this.id = id;
         this.data = data;
         this.size = size;
         this.createdAt = new Timestamp(System.currentTimeMillis());
     }
 
-    public Blob(String id, String data) {
+    public Blob(String id, byte[] data) {
         this.id = id;
         this.data = data;
     }
 
-    public String getData() {
+    /**
+     * Returns the raw bytes of the blob, fetching them from the backend on first use if they were loaded lazily.
+     * In JSON the bytes are written and read as base64.
+     */
+    public synchronized byte[] getData() {
+        if (dataLoader != null) {
+            data = dataLoader.get();
+            dataLoader = null;
+        }
         return data;
     }
 
-    public void setData(String data) {
+    public synchronized void setData(byte[] data) {
         this.data = data;
+        this.dataLoader = null;
+    }
+
+    /**
+     * Defers reading the data until {@link #getData()} is first called, so callers that only look at the metadata
+     * never touch the backend.
+     */
+    @JsonIgnore
+    public synchronized void setDataLoader(Supplier<byte[]> dataLoader) {
+        this.dataLoader = dataLoader;
+    }
+
+    /**
+     * Returns true if the data is in memory, false if it would still be fetched on access.
+     */
+    @JsonIgnore
+    public synchronized boolean isDataLoaded() {
+        return dataLoader == null;
     }
 
     public void setSize(int size) {
@@ -66,14 +108,63 @@ public class Blob {
         this.createdAt = createdAt;
     }
 
+    /**
+     * Returns the hex encoded SHA-256 of the blob content, computed when the blob was written.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    /**
+     * Returns the content coding the blob is stored with at rest (e.g. "gzip"), or null if it is stored as sent.
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * Returns the hex encoded CRC32C of the blob content, or null if it was written without "HASH_CRC32C".
+     */
+    public String getCrc32c() {
+        return crc32c;
+    }
+
+    public void setCrc32c(String crc32c) {
+        this.crc32c = crc32c;
+    }
+
+    /**
+     * Returns the hex encoded root of the SHA-256 tree over "TREE_HASH_CHUNK_SIZE" chunks of the blob content,
+     * or null if it was written without "TREE_HASH".
+     */
+    public String getTreeHash() {
+        return treeHash;
+    }
+
+    public void setTreeHash(String treeHash) {
+        this.treeHash = treeHash;
+    }
+
 
     @Override
     public String toString() {
         return "Blob{" +
                 "id='" + id + '\'' +
-                ", data='" + data + '\'' +
+                ", data=" + (isDataLoaded() ? (data == null ? "null" : data.length + " bytes") : "<not loaded>") +
                 ", size=" + size +
                 ", createdAt=" + createdAt +
+                ", hash='" + hash + '\'' +
+                ", encoding='" + encoding + '\'' +
+                ", crc32c='" + crc32c + '\'' +
+                ", treeHash='" + treeHash + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,198 @@
+package org.example.model;
+
+import org.example.utils.BoundedInputStream;
+import org.example.utils.ByteBufferInputStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/**
+ * An open handle on the raw bytes of a blob, or of a byte range of it.
+ * Backends that keep blobs in local files expose a FileChannel so the web server can hand it to sendfile,
+ * every other backend exposes an InputStream that is copied to the client through a fixed-size buffer.
+ * Blobs cached in direct memory expose a ByteBuffer that is written to the socket as it is.
+ * A stream is already positioned at the offset and ends after the length, a channel is read positionally.
+ * The handle must be closed once the response has been written.
+ */
+public class BlobContent implements Closeable {
+    private final String id;
+    private final long size;
+    private final long offset;
+    private final long length;
+    private final FileChannel channel;
+    private final InputStream stream;
+    private final ByteBuffer buffer;
+    private final Closeable release;
+
+    private BlobContent(String id, long size, long offset, long length, FileChannel channel, InputStream stream) {
+        this(id, size, offset, length, channel, stream, null, null);
+    }
+
+    private BlobContent(String id, long size, long offset, long length, FileChannel channel, InputStream stream,
+                        ByteBuffer buffer, Closeable release) {
+        this.id = id;
+        this.size = size;
+        this.offset = offset;
+        this.length = length;
+        this.channel = channel;
+        this.stream = stream;
+        this.buffer = buffer;
+        this.release = release;
+    }
+
+    /**
+     * Creates a handle on a blob, or a byte range of it, held in a buffer.
+     *
+     * @param id      The id of the blob.
+     * @param buffer  The bytes to send, from its position to its limit.
+     * @param size    The size of the whole blob in bytes.
+     * @param offset  The offset of the first byte in the buffer.
+     * @param release Called when the content is closed, to release the memory behind the buffer; may be null.
+     * @return The blob content.
+     */
+    public static BlobContent ofBuffer(String id, ByteBuffer buffer, long size, long offset, Closeable release) {
+        return new BlobContent(id, size, offset, buffer.remaining(), null, null, buffer, release);
+    }
+
+    /**
+     * Creates a handle on a whole blob backed by a file channel.
+     *
+     * @param id      The id of the blob.
+     * @param channel The open file channel.
+     * @param size    The size of the blob in bytes.
+     * @return The blob content.
+     */
+    public static BlobContent ofChannel(String id, FileChannel channel, long size) {
+        return new BlobContent(id, size, 0, size, channel, null);
+    }
+
+    /**
+     * Creates a handle on a byte range of a blob backed by a file channel.
+     *
+     * @param id      The id of the blob.
+     * @param channel The open file channel.
+     * @param size    The size of the blob in bytes.
+     * @param offset  The offset of the first byte to send.
+     * @param length  The number of bytes to send.
+     * @return The blob content.
+     */
+    public static BlobContent ofChannel(String id, FileChannel channel, long size, long offset, long length) {
+        return new BlobContent(id, size, offset, length, channel, null);
+    }
+
+    /**
+     * Creates a handle on a whole blob backed by an input stream.
+     *
+     * @param id     The id of the blob.
+     * @param stream The open input stream.
+     * @param size   The size of the blob in bytes, or -1 if unknown.
+     * @return The blob content.
+     */
+    public static BlobContent ofStream(String id, InputStream stream, long size) {
+        return new BlobContent(id, size, 0, size, null, stream);
+    }
+
+    /**
+     * Creates a handle on a byte range of a blob backed by an input stream.
+     *
+     * @param id     The id of the blob.
+     * @param stream The open input stream, positioned at the offset and ending after the length.
+     * @param size   The size of the blob in bytes.
+     * @param offset The offset of the first byte in the stream.
+     * @param length The number of bytes in the stream.
+     * @return The blob content.
+     */
+    public static BlobContent ofStream(String id, InputStream stream, long size, long offset, long length) {
+        return new BlobContent(id, size, offset, length, null, stream);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the size of the whole blob, which is not the number of bytes sent for a range.
+     *
+     * @return The size in bytes, or -1 if unknown.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the number of bytes to send.
+     *
+     * @return The length in bytes, or -1 if unknown.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Checks whether the content covers only part of the blob.
+     *
+     * @return true for a byte range that is smaller than the blob.
+     */
+    public boolean isPartial() {
+        return size >= 0 && (offset > 0 || length < size);
+    }
+
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    public InputStream getStream() {
+        return stream;
+    }
+
+    public boolean hasChannel() {
+        return channel != null;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public boolean hasBuffer() {
+        return buffer != null;
+    }
+
+    /**
+     * Returns the content as a stream, whichever way it is backed.
+     * A channel is wrapped so that the stream starts at the offset and ends after the length.
+     * Closing the content still closes the underlying channel.
+     *
+     * @return A stream over the bytes to send.
+     * @throws IOException If the channel cannot be positioned.
+     */
+    public InputStream openStream() throws IOException {
+        if (stream != null) {
+            return stream;
+        }
+        if (buffer != null) {
+            return new ByteBufferInputStream(buffer);
+        }
+        return new BoundedInputStream(Channels.newInputStream(channel.position(offset)), length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        if (stream != null) {
+            stream.close();
+        }
+        if (release != null) {
+            release.close();
+        }
+    }
+}
@@ -6,13 +6,16 @@ public class BlobDto {
     @JsonProperty("id")
     private String id;
 
+    /**
+     * The raw bytes of the blob; base64 encoded in JSON.
+     */
     @JsonProperty("data")
-    private String data;
+    private byte[] data;
 
     public BlobDto() {
     }
 
-    public BlobDto(String id, String data) {
+    public BlobDto(String id, byte[] data) {
         this.id = id;
         this.data = data;
     }
@@ -26,11 +29,11 @@ public class BlobDto {
         this.id = id;
     }
 
-    public String getData() {
+    public byte[] getData() {
         return data;
     }
 
-    public void setData(String data) {
+    public void setData(byte[] data) {
         this.data = data;
     }
 }
\ No newline at end of file
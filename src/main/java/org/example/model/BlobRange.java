@@ -0,0 +1,106 @@
+package org.example.model;
+
+/**
+ * A single byte range requested by a client, following the HTTP Range semantics.
+ * The range is kept as requested ("bytes=start-end", "bytes=start-" or "bytes=-suffix")
+ * and resolved against the blob size by the backend, which is usually the first to know that size.
+ */
+public class BlobRange {
+    private static final BlobRange FULL = new BlobRange(0, -1);
+
+    private final long start;
+    private final long end;
+
+    /**
+     * Creates a range.
+     *
+     * @param start The first byte, or -1 for a suffix range.
+     * @param end   The last byte (inclusive), the suffix length for a suffix range, or -1 for an open-ended range.
+     */
+    private BlobRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Creates a range from the start and end values of a parsed Range header.
+     *
+     * @param start The first byte, or -1 for a suffix range.
+     * @param end   The last byte (inclusive), the suffix length for a suffix range, or -1 for an open-ended range.
+     * @return The range.
+     */
+    public static BlobRange of(long start, long end) {
+        return new BlobRange(start, end);
+    }
+
+    /**
+     * Returns the range covering the whole blob.
+     *
+     * @return The full range.
+     */
+    public static BlobRange full() {
+        return FULL;
+    }
+
+    public boolean isFull() {
+        return start == 0 && end == -1;
+    }
+
+    /**
+     * Checks whether the range overlaps a blob of the given size.
+     *
+     * @param totalSize The size of the blob.
+     * @return true if at least one byte of the blob is covered.
+     */
+    public boolean isSatisfiable(long totalSize) {
+        if (isFull()) {
+            return true;
+        }
+        if (start == -1) {
+            return end > 0 && totalSize > 0;
+        }
+        return start < totalSize;
+    }
+
+    /**
+     * Returns the offset of the first byte covered by the range.
+     *
+     * @param totalSize The size of the blob.
+     * @return The offset.
+     */
+    public long getOffset(long totalSize) {
+        if (start == -1) {
+            return Math.max(0, totalSize - end);
+        }
+        return start;
+    }
+
+    /**
+     * Returns the number of bytes covered by the range.
+     *
+     * @param totalSize The size of the blob.
+     * @return The length.
+     */
+    public long getLength(long totalSize) {
+        long offset = getOffset(totalSize);
+        long last = start == -1 || end == -1 || end >= totalSize ? totalSize - 1 : end;
+        return Math.max(0, last - offset + 1);
+    }
+
+    /**
+     * Formats the range as the value of an HTTP Range request header.
+     *
+     * @return The header value, e.g. "bytes=0-1023".
+     */
+    public String toHeaderValue() {
+        if (start == -1) {
+            return "bytes=-" + end;
+        }
+        return "bytes=" + start + "-" + (end == -1 ? "" : end);
+    }
+
+    @Override
+    public String toString() {
+        return toHeaderValue();
+    }
+}
@@ -0,0 +1,399 @@
+package org.example.services;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import org.example.core.BlobCache;
+import org.example.core.OffHeapBlobCache;
+import org.example.core.SingleFlight;
+import org.example.exception.RangeNotSatisfiableException;
+import org.example.model.BatchItemResult;
+import org.example.model.Blob;
+import org.example.model.BlobContent;
+import org.example.model.BlobDto;
+import org.example.model.BlobRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * This class provides a read-through cache in front of the configured storage backend.
+ * Reads of blobs small enough for the {@link BlobCache} are answered from the heap once they have been read,
+ * and larger blobs that are downloaded are kept in the {@link OffHeapBlobCache} if it is enabled, from where they are
+ * written to the client without being copied onto the heap. Every other call is passed to the backend unchanged.
+ * Writes are never cached, since a blob is only worth its memory once it is read.
+ * Blobs that the backend serves from a local file channel are not copied into either cache by raw downloads,
+ * as sendfile already serves them without touching the heap.
+ * Concurrent misses for the same blob are coalesced by a {@link SingleFlight}: one request reads it from the backend
+ * and fills the cache while the others wait and share the result, so a sudden burst of requests for a popular blob
+ * costs a single backend read.
+ */
+@Singleton
+public class CachingStorageService implements StorageService {
+    private static final Logger logger = LoggerFactory.getLogger(CachingStorageService.class);
+    private final StorageService backend;
+    private final BlobCache cache;
+    private final OffHeapBlobCache offHeapCache;
+    private final SingleFlight singleFlight;
+
+    /**
+     * Constructor for the CachingStorageService without an off-heap tier.
+     *
+     * @param backend The storage backend.
+     * @param cache   The blob cache.
+     */
+    public CachingStorageService(StorageService backend, BlobCache cache) {
+        this(backend, cache, new OffHeapBlobCache(0, 0, 0));
+    }
+
+    /**
+     * Constructor for the CachingStorageService with its own SingleFlight.
+     *
+     * @param backend      The storage backend.
+     * @param cache        The blob cache.
+     * @param offHeapCache The off-heap cache.
+     */
+    public CachingStorageService(StorageService backend, BlobCache cache, OffHeapBlobCache offHeapCache) {
+        this(backend, cache, offHeapCache, new SingleFlight());
+    }
+
+    /**
+     * Constructor for the CachingStorageService.
+     *
+     * @param backend      The storage backend selected by "STORAGE_BACKEND".
+     * @param cache        The shared blob cache.
+     * @param offHeapCache The shared off-heap cache for blobs too large for the heap cache.
+     * @param singleFlight The shared SingleFlight that coalesces concurrent misses.
+     */
+    @Inject
+    public CachingStorageService(@Named("backend") StorageService backend, BlobCache cache, OffHeapBlobCache offHeapCache,
+                                 SingleFlight singleFlight) {
+        this.backend = backend;
+        this.cache = cache;
+        this.offHeapCache = offHeapCache;
+        this.singleFlight = singleFlight;
+    }
+
+    @Override
+    public void saveBlob(BlobDto blobDto) {
+        backend.saveBlob(blobDto);
+    }
+
+    @Override
+    public void saveBlob(String id, InputStream data, long size, String encoding) {
+        backend.saveBlob(id, data, size, encoding);
+    }
+
+    @Override
+    public void saveBlobs(List<BlobDto> blobs, Consumer<BatchItemResult> consumer) {
+        backend.saveBlobs(blobs, consumer);
+    }
+
+    /**
+     * Retrieves a blob from the cache, or from the backend and caches it if it is small enough.
+     * Concurrent misses share one backend read; data that the backend loads lazily is then also loaded only once.
+     *
+     * @param id The id of the blob.
+     * @return A copy of the blob, which the caller may modify.
+     */
+    @Override
+    public Blob getBlob(String id) {
+        Blob cached = cache.get(id);
+        if (cached != null) {
+            return copyOf(cached, true);
+        }
+        Blob offHeap = offHeapCache.peek(id);
+        if (offHeap != null) {
+            return copyOfOffHeap(offHeap);
+        }
+        Blob shared = singleFlight.execute("blob:" + id, () -> {
+            Blob blob = backend.getBlob(id);
+            admit(blob);
+            return blob;
+        });
+        if (shared.isDataLoaded()) {
+            return copyOf(shared, true);
+        }
+        Blob copy = copyOf(shared, false);
+        copy.setDataLoader(shared::getData);
+        return copy;
+    }
+
+    /**
+     * Retrieves the metadata of a blob, from the cache if the blob is cached.
+     *
+     * @param id The id of the blob.
+     * @return A blob holding the metadata, without data.
+     */
+    @Override
+    public Blob getMetadata(String id) {
+        Blob cached = cache.peek(id);
+        if (cached == null) {
+            cached = offHeapCache.peek(id);
+        }
+        if (cached != null) {
+            return copyOf(cached, false);
+        }
+        return backend.getMetadata(id);
+    }
+
+    @Override
+    public BlobContent openBlob(String id) {
+        return openBlob(id, BlobRange.full());
+    }
+
+    @Override
+    public boolean isCacheable(long size) {
+        return cache.accepts(size) || offHeapCache.accepts(size) || backend.isCacheable(size);
+    }
+
+    /**
+     * Opens a blob from either cache if it is cached. Otherwise the backend opens it, and a blob streamed from the backend
+     * is read into the cache that accepts its size, so the next download is served from memory.
+     * Concurrent downloads of a blob that is not cached wait for the first one to fill the cache and are served from it.
+     *
+     * @param id    The id of the blob.
+     * @param range The requested byte range.
+     * @return The open blob content covering the range.
+     */
+    @Override
+    public BlobContent openBlob(String id, BlobRange range) {
+        Blob cached = cache.get(id);
+        if (cached != null) {
+            return slice(cached.getData(), id, range);
+        }
+        OffHeapBlobCache.Lease lease = offHeapCache.acquire(id);
+        if (lease != null) {
+            return slice(lease, id, range);
+        }
+        if (!range.isFull()) {
+            return backend.openBlob(id, range);
+        }
+        Fill fill = singleFlight.execute("content:" + id, () -> fill(id));
+        if (fill.data != null) {
+            return slice(fill.data, id, range);
+        }
+        BlobContent content = fill.claim();
+        if (content != null) {
+            return content;
+        }
+        // The content opened by the leading request is only ever consumed by it; the blob may have been admitted off-heap,
+        // else this request opens it again.
+        lease = offHeapCache.acquire(id);
+        return lease != null ? slice(lease, id, range) : backend.openBlob(id);
+    }
+
+    /**
+     * Opens a blob on the backend and reads it into the cache that accepts its size.
+     *
+     * @param id The id of the blob.
+     * @return The data if it was read onto the heap, which every waiting request can share, or else the content for one request.
+     */
+    private Fill fill(String id) {
+        BlobContent content = backend.openBlob(id);
+        if (content.hasChannel() || content.getSize() < 0) {
+            return new Fill(null, content);
+        }
+        if (!cache.accepts(content.getSize())) {
+            return new Fill(null, offHeapCache.accepts(content.getSize()) ? admitOffHeap(id, content) : content);
+        }
+        byte[] data;
+        try (content) {
+            data = content.openStream().readAllBytes();
+        } catch (IOException e) {
+            logger.error("Failed to read blob {} into the cache", id, e);
+            throw new RuntimeException(e);
+        }
+        try {
+            Blob metadata = backend.getMetadata(id);
+            metadata.setData(data);
+            cache.put(metadata);
+        } catch (RuntimeException e) {
+            logger.warn("Not caching blob {} without metadata", id, e);
+        }
+        return new Fill(data, null);
+    }
+
+    /**
+     * Copies a downloaded blob into the off-heap cache while it is read from the backend and serves it from there.
+     *
+     * @param id      The id of the blob.
+     * @param content The content opened by the backend, covering the whole blob.
+     * @return The cached content, or the backend content if the blob was not admitted.
+     */
+    private BlobContent admitOffHeap(String id, BlobContent content) {
+        Blob metadata;
+        try {
+            metadata = backend.getMetadata(id);
+        } catch (RuntimeException e) {
+            logger.warn("Not caching blob {} without metadata", id, e);
+            return content;
+        }
+        OffHeapBlobCache.Lease lease;
+        try {
+            lease = offHeapCache.admit(copyOf(metadata, false), content.openStream(), content.getSize());
+        } catch (IOException e) {
+            closeQuietly(content);
+            logger.error("Failed to read blob {} into the off-heap cache", id, e);
+            throw new RuntimeException(e);
+        }
+        if (lease == null) {
+            return content;
+        }
+        closeQuietly(content);
+        return slice(lease, id, BlobRange.full());
+    }
+
+    /**
+     * Serves cached hits from memory and fetches the rest from the backend in one batch, caching what it returns.
+     *
+     * @param ids      The ids of the blobs.
+     * @param consumer Receives one result per id.
+     */
+    @Override
+    public void getBlobs(List<String> ids, Consumer<BatchItemResult> consumer) {
+        List<String> missing = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Blob cached = cache.get(id);
+            Blob offHeap = cached == null ? offHeapCache.peek(id) : null;
+            if (cached != null) {
+                consumer.accept(BatchItemResult.found(copyOf(cached, true)));
+            } else if (offHeap != null) {
+                consumer.accept(BatchItemResult.found(copyOfOffHeap(offHeap)));
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            backend.getBlobs(missing, result -> {
+                if (result.getBlob() != null) {
+                    admit(result.getBlob());
+                }
+                consumer.accept(result);
+            });
+        }
+    }
+
+    /**
+     * Caches a copy of a blob read from the backend if it is small enough, loading its data if that was deferred.
+     *
+     * @param blob The blob returned by the backend.
+     */
+    private void admit(Blob blob) {
+        if (!cache.accepts(blob.getSize())) {
+            return;
+        }
+        Blob copy = copyOf(blob, true);
+        if (copy.getData() != null) {
+            cache.put(copy);
+        }
+    }
+
+    /**
+     * Copies a blob so that neither the cached instance nor the caller's instance can change the other.
+     * The data array itself is shared, since blobs are never modified in place.
+     */
+    private static Blob copyOf(Blob blob, boolean withData) {
+        Blob copy = new Blob(blob.getId(), withData ? blob.getData() : null);
+        copy.setSize(blob.getSize());
+        copy.setCreatedAt(blob.getCreatedAt());
+        copy.setHash(blob.getHash());
+        copy.setEncoding(blob.getEncoding());
+        copy.setCrc32c(blob.getCrc32c());
+        copy.setTreeHash(blob.getTreeHash());
+        return copy;
+    }
+
+    /**
+     * Copies the metadata of a blob cached off-heap. Its data is only copied onto the heap if it is actually read,
+     * falling back to the backend if the blob has been evicted in the meantime.
+     */
+    private Blob copyOfOffHeap(Blob metadata) {
+        Blob copy = copyOf(metadata, false);
+        String id = metadata.getId();
+        copy.setDataLoader(() -> {
+            try (OffHeapBlobCache.Lease lease = offHeapCache.acquire(id)) {
+                if (lease != null) {
+                    byte[] data = new byte[lease.getData().remaining()];
+                    lease.getData().get(data);
+                    return data;
+                }
+            }
+            return backend.getBlob(id).getData();
+        });
+        return copy;
+    }
+
+    /**
+     * The outcome of filling the cache from the backend. Heap data is shared by every request that waited for the fill,
+     * while open content belongs to the request that opened it: backends may tie resources such as a connection to the
+     * content until it is closed, so it must not be read or closed by a request on another thread.
+     */
+    private static final class Fill {
+        private final byte[] data;
+        private final BlobContent content;
+        private final Thread owner = Thread.currentThread();
+
+        private Fill(byte[] data, BlobContent content) {
+            this.data = data;
+            this.content = content;
+        }
+
+        /**
+         * Hands the open content to the request that opened it.
+         *
+         * @return The content, or null if the calling request only waited for the fill.
+         */
+        private BlobContent claim() {
+            return Thread.currentThread() == owner ? content : null;
+        }
+    }
+
+    private static void closeQuietly(BlobContent content) {
+        try {
+            content.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close blob content {}", content.getId(), e);
+        }
+    }
+
+    /**
+     * Opens a byte range of data cached off-heap. The lease is released when the content is closed.
+     */
+    private static BlobContent slice(OffHeapBlobCache.Lease lease, String id, BlobRange range) {
+        ByteBuffer data = lease.getData();
+        int size = data.remaining();
+        if (range.isFull()) {
+            return BlobContent.ofBuffer(id, data, size, 0, lease);
+        }
+        if (!range.isSatisfiable(size)) {
+            lease.close();
+            throw new RangeNotSatisfiableException(id, size);
+        }
+        int offset = (int) range.getOffset(size);
+        int length = (int) range.getLength(size);
+        return BlobContent.ofBuffer(id, data.slice(offset, length), size, offset, lease);
+    }
+
+    /**
+     * Opens a byte range of cached data.
+     */
+    private static BlobContent slice(byte[] data, String id, BlobRange range) {
+        if (range.isFull()) {
+            return BlobContent.ofStream(id, new ByteArrayInputStream(data), data.length);
+        }
+        if (!range.isSatisfiable(data.length)) {
+            throw new RangeNotSatisfiableException(id, data.length);
+        }
+        int offset = (int) range.getOffset(data.length);
+        int length = (int) range.getLength(data.length);
+        return BlobContent.ofStream(id, new ByteArrayInputStream(data, offset, length), data.length, offset, length);
+    }
+}
@@ -1,17 +1,41 @@
 package org.example.services;
 
 import com.google.inject.Inject;
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.FindIterable;
+import com.mongodb.client.gridfs.GridFSDownloadStream;
+import com.mongodb.client.model.Filters;
 import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
 import org.example.database.MongoDBClient;
 import org.example.exception.BlobNotFoundException;
+import org.example.exception.BlobTooLargeException;
+import org.example.exception.DuplicateBlobException;
+import org.example.exception.RangeNotSatisfiableException;
+import org.example.model.BatchItemResult;
 import org.example.model.Blob;
+import org.example.model.BlobContent;
+import org.example.model.BlobRange;
 import org.example.model.BlobDto;
+import org.example.utils.BoundedInputStream;
 import org.example.utils.FileUtils;
+import org.example.utils.HashingInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.Timestamp;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * This class provides an implementation of the StorageService interface.
@@ -42,6 +66,7 @@ public class DatabaseStorageService implements StorageService {
         logger.info("Saving blob with id: {}", blobDto.getId());
         Document document = new Document();
         Blob blob = new Blob(blobDto.getId(), blobDto.getData(), FileUtils.getBlobSize(blobDto.getData()));
+        FileUtils.applyHashes(blob, blobDto.getData());
         document.append("id", blob.getId());
         document.append("data", blob.getData());
         mongoClient.insertDocument("blobs", document);
@@ -49,8 +74,119 @@ public class DatabaseStorageService implements StorageService {
         logger.info("Blob with id: {} saved successfully.", blobDto.getId());
     }
 
+    /**
+     * Saves several blobs with one unordered "insertMany" on the "blobs" collection and one on the "metadata" collection.
+     * A duplicate id only rejects its own document; metadata is written for the blobs that were accepted.
+     * Blobs whose metadata could not be written are removed from the "blobs" collection again and reported as failed,
+     * so no blob is left without metadata.
+     *
+     * @param blobs    the blobs to be saved
+     * @param consumer receives one result per blob
+     */
+    @Override
+    public void saveBlobs(List<BlobDto> blobs, Consumer<BatchItemResult> consumer) {
+        logger.info("Saving {} blobs in one batch", blobs.size());
+        List<Document> documents = new ArrayList<>(blobs.size());
+        for (BlobDto blobDto : blobs) {
+            documents.add(new Document("id", blobDto.getId()).append("data", blobDto.getData()));
+        }
+        Map<Integer, BulkWriteError> errors;
+        try {
+            errors = mongoClient.insertDocuments("blobs", documents);
+        } catch (RuntimeException e) {
+            logger.error("Failed to save batch of {} blobs", blobs.size(), e);
+            blobs.forEach(blobDto -> consumer.accept(BatchItemResult.failed(blobDto.getId(), e.getMessage())));
+            return;
+        }
+        List<Blob> saved = new ArrayList<>(blobs.size());
+        for (int i = 0; i < blobs.size(); i++) {
+            if (!errors.containsKey(i)) {
+                BlobDto blobDto = blobs.get(i);
+                Blob blob = new Blob(blobDto.getId(), blobDto.getData(), FileUtils.getBlobSize(blobDto.getData()));
+                FileUtils.applyHashes(blob, blobDto.getData());
+                saved.add(blob);
+            }
+        }
+        Map<String, String> metadataFailures = insertAllMetadata(saved);
+        for (int i = 0; i < blobs.size(); i++) {
+            String id = blobs.get(i).getId();
+            BulkWriteError error = errors.get(i);
+            if (error == null && metadataFailures.containsKey(id)) {
+                consumer.accept(BatchItemResult.failed(id, metadataFailures.get(id)));
+            } else if (error == null) {
+                consumer.accept(BatchItemResult.created(id));
+            } else if (ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY) {
+                consumer.accept(BatchItemResult.duplicate(id));
+            } else {
+                consumer.accept(BatchItemResult.failed(id, error.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Writes the metadata of a batch of saved blobs and removes the blob documents of those whose metadata was rejected.
+     *
+     * @param saved The blobs whose documents were inserted.
+     * @return The reason of the failure keyed by the id of each blob whose metadata was not written.
+     */
+    private Map<String, String> insertAllMetadata(List<Blob> saved) {
+        Map<String, String> failures = new HashMap<>();
+        try {
+            Map<Integer, BulkWriteError> errors = mongoClient.insertAllMetadata(saved);
+            for (Map.Entry<Integer, BulkWriteError> error : errors.entrySet()) {
+                failures.put(saved.get(error.getKey()).getId(), error.getValue().getMessage());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to save metadata of batch of {} blobs", saved.size(), e);
+            saved.forEach(blob -> failures.put(blob.getId(), e.getMessage()));
+        }
+        if (!failures.isEmpty()) {
+            try {
+                mongoClient.deleteDocuments("blobs", failures.keySet());
+            } catch (RuntimeException e) {
+                logger.error("Failed to remove {} blobs without metadata", failures.size(), e);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Streams a blob into the GridFS bucket and records it in the "blobs" collection.
+     * The "blobs" document only references the GridFS file, so its unique index on id still guards against duplicates.
+     * If the id is taken, the uploaded chunks are removed again.
+     *
+     * @param id       The id of the blob.
+     * @param data     The raw bytes of the blob.
+     * @param size     The number of bytes in the stream, or -1 if unknown.
+     * @param encoding The content coding the bytes are already compressed with, or null if they are stored as sent.
+     */
+    @Override
+    public void saveBlob(String id, InputStream data, long size, String encoding) {
+        logger.info("Streaming blob with id: {}", id);
+        FileUtils.checkBlobSize(id, size);
+        HashingInputStream hashingStream = new HashingInputStream(data);
+        ObjectId fileId = mongoClient.uploadToBucket(id, hashingStream);
+        if (hashingStream.isLimitExceeded()) {
+            mongoClient.deleteFromBucket(fileId);
+            throw new BlobTooLargeException(id, FileUtils.MAX_BLOB_SIZE);
+        }
+        try {
+            mongoClient.insertDocument("blobs", new Document("id", id).append("fileId", fileId));
+        } catch (DuplicateBlobException e) {
+            mongoClient.deleteFromBucket(fileId);
+            throw e;
+        }
+        Blob blob = new Blob(id, null, Math.toIntExact(hashingStream.getCount()));
+        hashingStream.applyTo(blob);
+        blob.setEncoding(encoding);
+        mongoClient.insertMetadata(blob);
+        logger.info("Blob with id: {} saved successfully.", id);
+    }
+
     /**
      * Retrieves a blob from the database.
+     * The metadata is looked up first, usually in the metadata cache, so an id that does not exist never reaches the "blobs" collection.
+     * Data kept in the GridFS bucket is only downloaded once it is first accessed.
      *
      * @param id the id of the blob to be retrieved
      * @return the retrieved blob
@@ -59,19 +195,166 @@ public class DatabaseStorageService implements StorageService {
     @Override
     public Blob getBlob(String id) {
         logger.info("Retrieving blob with id: {}", id);
-        FindIterable<Document> findIterable = mongoClient.findDocument("blobs", new Document("id", id));
+        Blob blob = mongoClient.findMetadata(id);
+        FindIterable<Document> findIterable = blob == null ? null : mongoClient.findDocument("blobs", new Document("id", id));
         if (findIterable == null || findIterable.first() == null) {
             logger.error("No blob found with id: {}", id);
             throw new BlobNotFoundException(id);
         }
         Document document = findIterable.first();
-        Blob blob = new Blob(document.getString("id"), document.getString("data"));
-        Document metadataDocument = mongoClient.findDocument("metadata", new Document("id", id)).first();
-        if (metadataDocument != null) {
-            blob.setSize(metadataDocument.getInteger("size"));
-            blob.setCreatedAt(new Timestamp(metadataDocument.getDate("timestamp").getTime()));
-        }
+        blob.setDataLoader(() -> readData(document));
         logger.info("Blob with id: {} retrieved successfully.", id);
         return blob;
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves several blobs with one "$in" query on the "blobs" collection and one on the "metadata" collection,
+     * instead of two round trips per id.
+     *
+     * @param ids      the ids of the blobs to be retrieved
+     * @param consumer receives one result per id
+     */
+    @Override
+    public void getBlobs(List<String> ids, Consumer<BatchItemResult> consumer) {
+        logger.info("Retrieving {} blobs in one batch", ids.size());
+        Map<String, Blob> metadata = mongoClient.findMetadata(ids);
+        Set<String> remaining = new HashSet<>(ids);
+        FindIterable<Document> findIterable = mongoClient.findDocument("blobs", Filters.in("id", ids));
+        if (findIterable != null) {
+            for (Document document : findIterable) {
+                String id = document.getString("id");
+                if (!remaining.remove(id)) {
+                    continue;
+                }
+                BatchItemResult result;
+                try {
+                    Blob blob = new Blob(id, readData(document));
+                    Blob blobMetadata = metadata.get(id);
+                    if (blobMetadata != null) {
+                        blob.setSize(blobMetadata.getSize());
+                        blob.setCreatedAt(blobMetadata.getCreatedAt());
+                        blob.setHash(blobMetadata.getHash());
+                        blob.setEncoding(blobMetadata.getEncoding());
+                        blob.setCrc32c(blobMetadata.getCrc32c());
+                        blob.setTreeHash(blobMetadata.getTreeHash());
+                    }
+                    result = BatchItemResult.found(blob);
+                } catch (RuntimeException e) {
+                    logger.error("Failed to read blob with id: {}", id, e);
+                    result = BatchItemResult.failed(id, e.getMessage());
+                }
+                consumer.accept(result);
+            }
+        }
+        for (String id : ids) {
+            if (remaining.remove(id)) {
+                consumer.accept(BatchItemResult.notFound(id));
+            }
+        }
+    }
+
+    /**
+     * Retrieves the metadata of a blob from the "metadata" collection without fetching its data.
+     *
+     * @param id The id of the blob.
+     * @return A blob holding only the metadata.
+     */
+    @Override
+    public Blob getMetadata(String id) {
+        Blob metadata = mongoClient.findMetadata(id);
+        if (metadata == null) {
+            throw new BlobNotFoundException(id);
+        }
+        return metadata;
+    }
+
+    /**
+     * Opens the blob for streaming.
+     *
+     * @param id the id of the blob to be opened
+     * @return the open blob content
+     * @throws BlobNotFoundException if no blob with the given id is found
+     */
+    @Override
+    public BlobContent openBlob(String id) {
+        return openBlob(id, BlobRange.full());
+    }
+
+    /**
+     * Opens a byte range of the blob for streaming.
+     * Blobs uploaded through the streaming path live in the GridFS bucket; skipping to the offset there is chunk-aware,
+     * so the chunks before the range are never fetched.
+     * Blobs stored inline in the "blobs" document are already in memory and are sliced as they are.
+     *
+     * @param id    the id of the blob to be opened
+     * @param range the requested byte range
+     * @return the open blob content covering the range
+     * @throws BlobNotFoundException if no blob with the given id is found
+     */
+    @Override
+    public BlobContent openBlob(String id, BlobRange range) {
+        FindIterable<Document> findIterable = mongoClient.findDocument("blobs", new Document("id", id));
+        Document document = findIterable == null ? null : findIterable.first();
+        if (document == null) {
+            logger.error("No blob found with id: {}", id);
+            throw new BlobNotFoundException(id);
+        }
+        ObjectId fileId = document.getObjectId("fileId");
+        if (fileId == null) {
+            byte[] data = readInlineData(document);
+            if (!range.isSatisfiable(data.length)) {
+                throw new RangeNotSatisfiableException(id, data.length);
+            }
+            int offset = (int) range.getOffset(data.length);
+            int length = (int) range.getLength(data.length);
+            return BlobContent.ofStream(id, new ByteArrayInputStream(data, offset, length), data.length, offset, length);
+        }
+        GridFSDownloadStream stream = mongoClient.openBucketStream(fileId);
+        long size = stream.getGridFSFile().getLength();
+        if (!range.isSatisfiable(size)) {
+            stream.close();
+            throw new RangeNotSatisfiableException(id, size);
+        }
+        long offset = range.getOffset(size);
+        long length = range.getLength(size);
+        stream.skip(offset);
+        return BlobContent.ofStream(id, new BoundedInputStream(stream, length), size, offset, length);
+    }
+
+    /**
+     * Reads the data of a "blobs" document, following the GridFS reference for streamed blobs.
+     *
+     * @param document The "blobs" document.
+     * @return The blob data.
+     */
+    private byte[] readData(Document document) {
+        ObjectId fileId = document.getObjectId("fileId");
+        if (fileId == null) {
+            return readInlineData(document);
+        }
+        try (GridFSDownloadStream stream = mongoClient.openBucketStream(fileId)) {
+            return stream.readAllBytes();
+        } catch (IOException e) {
+            logger.error("Failed to read blob data from bucket", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the data stored inline in a "blobs" document.
+     * Data is stored as BSON binary; documents written before that hold it as a string and are read as its UTF-8 bytes.
+     *
+     * @param document the document of the blob
+     * @return the raw bytes of the blob
+     */
+    private byte[] readInlineData(Document document) {
+        Object data = document.get("data");
+        if (data instanceof Binary binary) {
+            return binary.getData();
+        }
+        if (data instanceof byte[] bytes) {
+            return bytes;
+        }
+        return data == null ? new byte[0] : data.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,231 @@
+package org.example.services;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import org.example.core.DiskBlobCache;
+import org.example.core.SingleFlight;
+import org.example.exception.RangeNotSatisfiableException;
+import org.example.model.BatchItemResult;
+import org.example.model.Blob;
+import org.example.model.BlobContent;
+import org.example.model.BlobDto;
+import org.example.model.BlobRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * This class provides a local disk tier in front of a remote storage backend (S3 or FTP), which stays the source of truth.
+ * Blobs are written to the {@link DiskBlobCache} while they are uploaded, and a blob that is read but not on disk is downloaded
+ * into it once, coalescing concurrent misses, so later reads are served at local disk latency without a request to the remote.
+ * Blobs on disk are opened as file channels, which are sent to the client with sendfile.
+ * Metadata always comes from the backend, which answers it from the "metadata" collection without touching the remote.
+ */
+@Singleton
+public class DiskCacheStorageService implements StorageService {
+    private static final Logger logger = LoggerFactory.getLogger(DiskCacheStorageService.class);
+    private final StorageService backend;
+    private final DiskBlobCache diskCache;
+    private final SingleFlight singleFlight;
+
+    /**
+     * Constructor for the DiskCacheStorageService.
+     *
+     * @param backend      The remote storage backend selected by "STORAGE_BACKEND".
+     * @param diskCache    The shared disk cache.
+     * @param singleFlight The shared SingleFlight that coalesces concurrent downloads.
+     */
+    @Inject
+    public DiskCacheStorageService(@Named("remote") StorageService backend, DiskBlobCache diskCache, SingleFlight singleFlight) {
+        this.backend = backend;
+        this.diskCache = diskCache;
+        this.singleFlight = singleFlight;
+    }
+
+    /**
+     * Saves a blob to the backend, then writes it to the disk cache.
+     *
+     * @param blobDto The blob data transfer object containing the blob id and data.
+     */
+    @Override
+    public void saveBlob(BlobDto blobDto) {
+        backend.saveBlob(blobDto);
+        store(blobDto);
+    }
+
+    /**
+     * Streams a blob to the backend and writes the same bytes to the disk cache as they pass through.
+     * The copy is only kept if the backend accepted the blob.
+     *
+     * @param id       The id of the blob.
+     * @param data     The raw bytes of the blob.
+     * @param size     The number of bytes in the stream, or -1 if unknown.
+     * @param encoding The content coding the bytes are already compressed with, or null if they are stored as sent.
+     */
+    @Override
+    public void saveBlob(String id, InputStream data, long size, String encoding) {
+        DiskBlobCache.Fill fill = diskCache.begin(id, size);
+        if (fill == null) {
+            backend.saveBlob(id, data, size, encoding);
+            return;
+        }
+        try {
+            backend.saveBlob(id, fill.tee(data), size, encoding);
+        } catch (RuntimeException e) {
+            fill.abort();
+            throw e;
+        }
+        fill.commit(size);
+    }
+
+    /**
+     * Saves several blobs to the backend and writes each one that was created to the disk cache.
+     *
+     * @param blobs    The blobs to save, with their data already decoded.
+     * @param consumer Receives one result per blob.
+     */
+    @Override
+    public void saveBlobs(List<BlobDto> blobs, Consumer<BatchItemResult> consumer) {
+        Map<String, BlobDto> byId = new HashMap<>();
+        for (BlobDto blobDto : blobs) {
+            byId.put(blobDto.getId(), blobDto);
+        }
+        backend.saveBlobs(blobs, result -> {
+            if (BatchItemResult.CREATED.equals(result.getStatus())) {
+                store(byId.get(result.getId()));
+            }
+            consumer.accept(result);
+        });
+    }
+
+    /**
+     * Writes a saved blob to the disk cache. A failure is logged and never fails the save, which the backend already holds.
+     */
+    private void store(BlobDto blobDto) {
+        if (blobDto == null || !diskCache.accepts(blobDto.getData().length)) {
+            return;
+        }
+        try {
+            diskCache.store(blobDto.getId(), new ByteArrayInputStream(blobDto.getData()), blobDto.getData().length);
+        } catch (IOException e) {
+            logger.warn("Failed to write blob {} to the disk cache", blobDto.getId(), e);
+        }
+    }
+
+    /**
+     * Retrieves a blob, downloading it to disk first if it is small enough and not there yet.
+     * The data is read from disk once it is first accessed, or from the backend if the blob was evicted in the meantime.
+     *
+     * @param id The id of the blob.
+     * @return The retrieved blob.
+     */
+    @Override
+    public Blob getBlob(String id) {
+        if (!diskCache.touch(id) && !fill(id)) {
+            return backend.getBlob(id);
+        }
+        Blob blob = backend.getMetadata(id);
+        blob.setDataLoader(() -> readCached(id));
+        return blob;
+    }
+
+    /**
+     * Reads a whole blob from disk.
+     */
+    private byte[] readCached(String id) {
+        try (FileChannel channel = diskCache.peek(id)) {
+            if (channel == null) {
+                return backend.getBlob(id).getData();
+            }
+            ByteBuffer data = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+            while (data.hasRemaining()) {
+                if (channel.read(data) < 0) {
+                    break;
+                }
+            }
+            return data.array();
+        } catch (IOException e) {
+            logger.error("Failed to read cached blob {}", id, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Blob getMetadata(String id) {
+        return backend.getMetadata(id);
+    }
+
+    @Override
+    public BlobContent openBlob(String id) {
+        return openBlob(id, BlobRange.full());
+    }
+
+    @Override
+    public boolean isCacheable(long size) {
+        return diskCache.accepts(size) || backend.isCacheable(size);
+    }
+
+    /**
+     * Opens a byte range of a blob from disk, downloading the whole blob first if it is small enough and not there yet.
+     * Blobs the disk cache does not take are opened on the backend.
+     *
+     * @param id    The id of the blob.
+     * @param range The requested byte range.
+     * @return The open blob content covering the range.
+     */
+    @Override
+    public BlobContent openBlob(String id, BlobRange range) {
+        FileChannel channel = diskCache.touch(id) || fill(id) ? diskCache.peek(id) : null;
+        if (channel == null) {
+            return backend.openBlob(id, range);
+        }
+        try {
+            long size = channel.size();
+            if (!range.isSatisfiable(size)) {
+                channel.close();
+                throw new RangeNotSatisfiableException(id, size);
+            }
+            return BlobContent.ofChannel(id, channel, size, range.getOffset(size), range.getLength(size));
+        } catch (IOException e) {
+            logger.error("Failed to read cached blob size", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Downloads a blob from the backend to disk. Concurrent calls for the same blob share one download.
+     *
+     * @param id The id of the blob.
+     * @return true if the blob is on disk afterwards, false if the disk cache does not take it.
+     */
+    private boolean fill(String id) {
+        if (!diskCache.isEnabled()) {
+            return false;
+        }
+        return singleFlight.execute("disk:" + id, () -> {
+            if (diskCache.contains(id)) {
+                return true;
+            }
+            long size = backend.getMetadata(id).getSize();
+            if (!diskCache.accepts(size)) {
+                return false;
+            }
+            try (BlobContent content = backend.openBlob(id)) {
+                return diskCache.store(id, content.openStream(), size);
+            } catch (IOException e) {
+                logger.error("Failed to download blob {} to the disk cache", id, e);
+                throw new RuntimeException(e);
+            }
+        });
+    }
+}
@@ -3,18 +3,27 @@ package org.example.services;
 import com.google.inject.Inject;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPReply;
-import org.bson.Document;
 import org.example.database.MongoDBClient;
+import org.example.exception.BlobNotFoundException;
+import org.example.exception.BlobTooLargeException;
+import org.example.exception.DuplicateBlobException;
+import org.example.exception.RangeNotSatisfiableException;
 import org.example.model.Blob;
+import org.example.model.BlobContent;
+import org.example.model.BlobRange;
 import org.example.model.BlobDto;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.sql.Timestamp;
+import java.util.concurrent.Semaphore;
 
 import org.apache.commons.net.ftp.FTP;
 import org.example.model.FTPServer;
+import org.example.utils.BoundedInputStream;
+import org.example.utils.HashingInputStream;
+import org.example.utils.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +34,12 @@ import org.slf4j.LoggerFactory;
 public class FtpStorageService implements StorageService {
     private static final Logger log = LoggerFactory.getLogger(FtpStorageService.class);
     private FTPClient ftpClient;
+    /**
+     * FTPClient holds a single control connection and is not thread-safe, so requests take turns on it.
+     * A Semaphore is used rather than a lock because a download holds the connection until its content is closed,
+     * which may happen on another thread than the one that opened it; waiting virtual threads do not pin their carrier.
+     */
+    private final Semaphore ftpLock = new Semaphore(1);
     private final MongoDBClient mongoDBClient;
 
     /**
@@ -56,51 +71,191 @@ public class FtpStorageService implements StorageService {
      * Saves a blob to the FTP server and inserts its metadata into the "metadata" collection.
      *
      * @param blobDto The blob to save.
+     * @throws RuntimeException If the upload fails or the server refuses the file.
      */
     @Override
     public void saveBlob(BlobDto blobDto) {
         String fileName = blobDto.getId();
-        String data = blobDto.getData();
+        byte[] data = blobDto.getData();
 
-        try (InputStream inputStream = new ByteArrayInputStream(data.getBytes())) {
+        ftpLock.acquireUninterruptibly();
+        try (InputStream inputStream = new ByteArrayInputStream(data)) {
             boolean done = ftpClient.storeFile(fileName, inputStream);
             if (done) {
-                Blob blob = new Blob(blobDto.getId(), blobDto.getData(), blobDto.getData().length());
+                Blob blob = new Blob(blobDto.getId(), data, data.length);
+                FileUtils.applyHashes(blob, data);
                 mongoDBClient.insertMetadata(blob);
                 log.info("File is uploaded successfully.");
 
             } else {
                 log.error("Failed to upload file.");
+                throw new IOException("Server refused file " + fileName + ": " + ftpClient.getReplyString());
             }
         } catch (IOException ex) {
             throw new RuntimeException("Error uploading file to the FTP Server", ex);
+        } finally {
+            ftpLock.release();
+        }
+    }
+
+    /**
+     * Streams a blob straight to the FTP server and inserts its metadata into the "metadata" collection.
+     * Blobs never change once stored, so an id that already has metadata is rejected before the file is written;
+     * saves take turns on the connection, so no other save can claim the id in between.
+     *
+     * @param id       The id of the blob.
+     * @param data     The raw bytes of the blob.
+     * @param size     The number of bytes in the stream, or -1 if unknown.
+     * @param encoding The content coding the bytes are already compressed with, or null if they are stored as sent.
+     * @throws DuplicateBlobException If a blob with the same id already exists.
+     * @throws RuntimeException If the upload fails or the server refuses the file.
+     */
+    @Override
+    public void saveBlob(String id, InputStream data, long size, String encoding) {
+        FileUtils.checkBlobSize(id, size);
+        HashingInputStream hashingStream = new HashingInputStream(data);
+        ftpLock.acquireUninterruptibly();
+        try {
+            // Checked before anything is sent, so an existing file is never replaced by a duplicate upload.
+            if (mongoDBClient.findMetadata(id) != null) {
+                throw new DuplicateBlobException(id);
+            }
+            boolean done = ftpClient.storeFile(id, hashingStream);
+            if (done && hashingStream.isLimitExceeded()) {
+                ftpClient.deleteFile(id);
+                throw new BlobTooLargeException(id, FileUtils.MAX_BLOB_SIZE);
+            }
+            if (done) {
+                Blob blob = new Blob(id, null, Math.toIntExact(hashingStream.getCount()));
+                hashingStream.applyTo(blob);
+                blob.setEncoding(encoding);
+                mongoDBClient.insertMetadata(blob);
+                log.info("File is uploaded successfully ({} bytes).", hashingStream.getCount());
+            } else {
+                log.error("Failed to upload file.");
+                throw new IOException("Server refused file " + id + ": " + ftpClient.getReplyString());
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Error uploading file to the FTP Server", ex);
+        } finally {
+            ftpLock.release();
         }
     }
 
     /**
      * Retrieves a blob from the FTP server and its metadata from the "metadata" collection.
+     * Metadata is written after the file, so a blob without metadata does not exist yet and is reported as not found
+     * without opening a data connection.
      *
      * @param id The id of the blob to retrieve.
      * @return The retrieved blob.
+     * @throws BlobNotFoundException If the blob has no metadata.
      */
     @Override
     public Blob getBlob(String id) {
+        Blob blob = mongoDBClient.findMetadata(id);
+        if (blob == null) {
+            throw new BlobNotFoundException(id);
+        }
+        ftpLock.acquireUninterruptibly();
         try (InputStream inputStream = ftpClient.retrieveFileStream(id)) {
             if (inputStream == null) {
                 throw new RuntimeException("File not found on the server.");
             }
-            String data = new String(inputStream.readAllBytes());
+            blob.setData(inputStream.readAllBytes());
             ftpClient.completePendingCommand();
-            Document metadataDocument = mongoDBClient.findDocument("metadata", new Document("id", id)).first();
-            Blob blob = new Blob(id, data);
+            return blob;
+        } catch (IOException ex) {
+            throw new RuntimeException("Error retrieving file from the FTP Server", ex);
+        } finally {
+            ftpLock.release();
+        }
+    }
 
-            if (metadataDocument != null) {
-                blob.setSize(metadataDocument.getInteger("size"));
-                blob.setCreatedAt(new Timestamp(metadataDocument.getDate("timestamp").getTime()));
+    /**
+     * Retrieves the metadata of a blob from the "metadata" collection without fetching its data.
+     *
+     * @param id The id of the blob.
+     * @return A blob holding only the metadata.
+     */
+    @Override
+    public Blob getMetadata(String id) {
+        Blob metadata = mongoDBClient.findMetadata(id);
+        if (metadata == null) {
+            throw new BlobNotFoundException(id);
+        }
+        return metadata;
+    }
+
+    /**
+     * Opens a data connection for the blob so it can be streamed to the client.
+     *
+     * @param id The id of the blob.
+     * @return The open blob content.
+     */
+    @Override
+    public BlobContent openBlob(String id) {
+        return openBlob(id, BlobRange.full());
+    }
+
+    /**
+     * Opens a data connection for a byte range of the blob.
+     * The offset is sent to the server with REST, so the transfer starts at the first requested byte,
+     * and the data connection is closed as soon as the range has been read.
+     * The blob size comes from the "metadata" collection; a blob without metadata is reported as not found.
+     * The FTP connection stays taken until the returned content is closed, from any thread, which also completes the pending transfer.
+     *
+     * @param id    The id of the blob.
+     * @param range The requested byte range.
+     * @return The open blob content covering the range.
+     */
+    @Override
+    public BlobContent openBlob(String id, BlobRange range) {
+        Blob metadata = mongoDBClient.findMetadata(id);
+        if (metadata == null) {
+            throw new BlobNotFoundException(id);
+        }
+        long size = metadata.getSize();
+        if (!range.isSatisfiable(size)) {
+            throw new RangeNotSatisfiableException(id, size);
+        }
+        long offset = range.getOffset(size);
+        long length = range.getLength(size);
+
+        ftpLock.acquireUninterruptibly();
+        try {
+            ftpClient.setRestartOffset(offset);
+            InputStream inputStream = ftpClient.retrieveFileStream(id);
+            if (inputStream == null) {
+                throw new BlobNotFoundException(id);
             }
-            return blob;
+            if (length >= 0) {
+                inputStream = new BoundedInputStream(inputStream, length);
+            }
+            return BlobContent.ofStream(id, new FilterInputStream(inputStream) {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                    try {
+                        super.close();
+                        // Closing the data connection early aborts the transfer, so the reply may be negative.
+                        ftpClient.completePendingCommand();
+                    } finally {
+                        ftpLock.release();
+                    }
+                }
+            }, size, offset, length);
         } catch (IOException ex) {
+            ftpLock.release();
             throw new RuntimeException("Error retrieving file from the FTP Server", ex);
+        } catch (RuntimeException ex) {
+            ftpLock.release();
+            throw ex;
         }
     }
 
@@ -1,34 +1,70 @@
 package org.example.services;
 
 import com.google.inject.Inject;
-import com.mongodb.client.FindIterable;
-import org.bson.Document;
+import org.example.core.GroupCommitter;
 import org.example.database.MongoDBClient;
 import org.example.exception.BlobNotFoundException;
+import org.example.exception.BlobTooLargeException;
 import org.example.exception.FileAlreadyExistsException;
+import org.example.exception.InvalidRequestException;
+import org.example.exception.RangeNotSatisfiableException;
 import org.example.model.Blob;
+import org.example.model.BlobContent;
+import org.example.model.BlobRange;
 import org.example.model.BlobDto;
 import org.example.utils.FileUtils;
+import org.example.utils.HashingInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.sql.Timestamp;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
 
 /**
  * This class is responsible for managing the local file storage service.
  * It provides methods to save blobs, get blobs, and create the storage directory.
+ * By default every blob is a file named after its id directly in "LOCAL_STORAGE_PATH". With "LOCAL_STORAGE_SHARD_LEVELS"
+ * above 0, blobs are spread over nested directories named after the leading hex digits of the SHA-256 of their id,
+ * "LOCAL_STORAGE_SHARD_WIDTH" digits per level (2 by default, 256 directories per level), so no directory grows
+ * to millions of entries. Files left in the flat layout are moved into the sharded one by a background migration
+ * at startup; until it has finished, reads look in both layouts.
+ * A blob is first written to a new file in the ".tmp" directory and then linked under its id, which fails if the id is
+ * already taken, so concurrent writers of the same id never overwrite each other and a reader never sees a partial file.
+ Ids that are not plain file names, such as ".tmp" or ids with a path separator, are rejected.
+ * "LOCAL_STORAGE_DURABILITY" decides when a write is acknowledged: "none" (the default) leaves flushing to the OS,
+ * "fsync" syncs the file and its directory before every acknowledgement, and "group" hands both syncs to a
+ * {@link GroupCommitter} that batches the syncs of concurrent writers within "LOCAL_STORAGE_GROUP_COMMIT_WINDOW_MICROS"
+ * (1000 by default).
  */
 public class LocalFileStorageService implements StorageService {
     private static final Logger logger = LoggerFactory.getLogger(LocalFileStorageService.class);
+    // The number of hex digits of the SHA-256 id hash the shard directories are taken from.
+    private static final int SHARD_HASH_LENGTH = 64;
+    private static final String TEMP_DIRECTORY = ".tmp";
     private final Path path;
     private final MongoDBClient mongoClient;
+    private final int shardLevels;
+    private final int shardWidth;
+    private volatile boolean migrating;
+    private final Path tempDirectory;
+    private final String durability;
+    private final GroupCommitter groupCommitter;
 
     /**
      * Constructor for the LocalFileStorageService.
      * Initializes the mongoClient with the provided MongoDBClient, and creates the storage directory.
+     * With a sharded layout reads look in both layouts until {@link #startMigration()} has moved every flat file.
      *
      * @param mongoDBClient The MongoDBClient.
      */
@@ -36,8 +72,41 @@ public class LocalFileStorageService implements StorageService {
     public LocalFileStorageService(MongoDBClient mongoDBClient) {
         String blobPath = System.getProperty("LOCAL_STORAGE_PATH");
         this.path = Path.of(blobPath);
+        this.shardLevels = Integer.getInteger("LOCAL_STORAGE_SHARD_LEVELS", 0);
+        this.shardWidth = Integer.getInteger("LOCAL_STORAGE_SHARD_WIDTH", 2);
+        if (shardLevels < 0 || shardLevels > 0 && (shardWidth < 1 || (long) shardLevels * shardWidth > SHARD_HASH_LENGTH)) {
+            throw new IllegalArgumentException("Invalid local storage sharding: " + shardLevels + " levels of " + shardWidth
+                    + " hex digits, the levels must be at least 1 digit wide and take at most the " + SHARD_HASH_LENGTH
+                    + " digits of the id hash together");
+        }
+        this.tempDirectory = path.resolve(TEMP_DIRECTORY);
+        this.durability = System.getProperty("LOCAL_STORAGE_DURABILITY", "none");
+        switch (durability) {
+            case "none":
+            case "fsync":
+                groupCommitter = null;
+                break;
+            case "group":
+                groupCommitter = new GroupCommitter("local-storage-committer", Long.getLong("LOCAL_STORAGE_GROUP_COMMIT_WINDOW_MICROS", 1000),
+                        Integer.getInteger("LOCAL_STORAGE_GROUP_COMMIT_PARALLELISM", 16));
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid local storage durability: " + durability);
+        }
         createStorageDirectory();
         this.mongoClient = mongoDBClient;
+        this.migrating = shardLevels > 0;
+    }
+
+    /**
+     * Starts the migration of flat files into the sharded layout on a background thread, if the layout is sharded.
+     * Guice calls it once the service is constructed, so the thread never sees a partly constructed service.
+     */
+    @Inject
+    public void startMigration() {
+        if (shardLevels > 0) {
+            Thread.ofPlatform().daemon().name("local-storage-migration").start(this::migrate);
+        }
     }
 
     /**
@@ -50,11 +119,55 @@ public class LocalFileStorageService implements StorageService {
         logger.info("Saving blob with id {}", blobDto.getId());
 
         Blob blob = new Blob(blobDto.getId(), blobDto.getData(), FileUtils.getBlobSize(blobDto.getData()));
+        FileUtils.applyHashes(blob, blobDto.getData());
         logger.info("Blob size: {}", blob.getSize());
         createFile(blob);
         mongoClient.insertMetadata(blob);
     }
 
+    /**
+     * Streams the blob bytes straight into a new file and inserts its metadata into the "metadata" collection.
+     * If a file with the same id already exists, a FileAlreadyExistsException is thrown.
+     *
+     * @param id       The id of the blob.
+     * @param data     The raw bytes of the blob.
+     * @param size     The number of bytes in the stream, or -1 if unknown.
+     * @param encoding The content coding the bytes are already compressed with, or null if they are stored as sent.
+     */
+    @Override
+    public void saveBlob(String id, InputStream data, long size, String encoding) {
+        logger.info("Streaming blob with id {}", id);
+        FileUtils.checkBlobSize(id, size);
+        HashingInputStream hashingStream = new HashingInputStream(data);
+        long written = writeFile(id, tempPath -> {
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long copied = hashingStream.transferTo(Channels.newOutputStream(channel));
+                if (hashingStream.isLimitExceeded()) {
+                    // The temporary file is deleted before it is linked under the id.
+                    throw new BlobTooLargeException(id, FileUtils.MAX_BLOB_SIZE);
+                }
+                return copied;
+            }
+        });
+        Blob blob = new Blob(id, null, Math.toIntExact(written));
+        hashingStream.applyTo(blob);
+        blob.setEncoding(encoding);
+        mongoClient.insertMetadata(blob);
+    }
+
+    /**
+     * Removes a temporary file once it has been linked into place, or after the upload failed.
+     *
+     * @param filePath The path of the temporary file.
+     */
+    private void deletePartialFile(Path filePath) {
+        try {
+            Files.deleteIfExists(filePath);
+        } catch (IOException e) {
+            logger.warn("Failed to delete partial file {}", filePath, e);
+        }
+    }
+
     /**
      * Creates a file from the blob data.
      * If a file with the same id already exists, a FileAlreadyExistsException is thrown.
@@ -62,54 +175,321 @@ public class LocalFileStorageService implements StorageService {
      * @param blob The blob object containing the blob id and data.
      */
     private void createFile(Blob blob) {
-        Path filePath = path.resolve(blob.getId());
-        if (Files.exists(filePath)) {
-            throw new FileAlreadyExistsException(blob.getId());
+        byte[] data = blob.getData();
+        writeFile(blob.getId(), tempPath -> {
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            return data.length;
+        });
+    }
+
+    /**
+     * Writes a new temporary file, makes it as durable as "LOCAL_STORAGE_DURABILITY" asks for and links it under the id.
+     * If a file with the same id already exists, a FileAlreadyExistsException is thrown; a concurrent writer of the same id
+     * loses at the link, which is atomic.
+     *
+     * @param id     The id of the blob.
+     * @param writer Creates the temporary file with the bytes of the blob.
+     * @return The number of bytes written.
+     */
+    private long writeFile(String id, TempFileWriter writer) {
+        if (!isFileName(id)) {
+            throw new InvalidRequestException("The id " + id + " cannot be used as a file name in local storage", null);
+        }
+        if (locate(id) != null) {
+            throw new FileAlreadyExistsException(id);
         }
+        Path filePath = createParentDirectories(id);
+        Path tempPath = tempDirectory.resolve(UUID.randomUUID().toString());
         try {
-            Files.write(filePath, blob.getData().getBytes());
-            logger.info("Created file at {}", filePath);
+            long written = writer.write(tempPath);
+            sync(tempPath);
+            link(tempPath, filePath);
+            sync(filePath.getParent());
+            logger.info("Created file at {} ({} bytes)", filePath, written);
+            return written;
+        } catch (java.nio.file.FileAlreadyExistsException e) {
+            throw new FileAlreadyExistsException(id);
         } catch (IOException e) {
             logger.error("Failed to create file", e);
             throw new RuntimeException(e);
+        } finally {
+            deletePartialFile(tempPath);
+        }
+    }
+
+    /**
+     * Makes the file under the id a second name of the temporary file. Falls back to a move that does not replace
+     * an existing file where the file system has no hard links.
+     */
+    private void link(Path tempPath, Path filePath) throws IOException {
+        try {
+            Files.createLink(filePath, tempPath);
+        } catch (UnsupportedOperationException e) {
+            Files.move(tempPath, filePath);
+        }
+    }
+
+    /**
+     * Syncs a file or directory to disk unless the durability mode is "none", through the group committer in "group" mode.
+     */
+    private void sync(Path target) throws IOException {
+        if (durability.equals("none")) {
+            return;
+        }
+        if (groupCommitter != null) {
+            groupCommitter.sync(target);
+            return;
+        }
+        IOException failure = GroupCommitter.force(target);
+        if (failure != null) {
+            throw failure;
         }
     }
 
     /**
      * Retrieves a blob from a file and its metadata from the "metadata" collection.
      * If a file with the same id does not exist, a BlobNotFoundException is thrown.
+     * The file content is only read once the data is first accessed.
      *
      * @param id The id of the blob.
      * @return The retrieved blob.
      */
     @Override
     public Blob getBlob(String id) {
-        Path filePath = path.resolve(id);
-        if (!Files.exists(filePath)) {
+        if (locate(id) == null) {
             throw new BlobNotFoundException(id);
         }
-        try {
-            byte[] data = Files.readAllBytes(filePath);
-            FindIterable<Document> findIterable = mongoClient.findDocument("metadata", new Document("id", id));
-            if (findIterable == null) {
-                throw new BlobNotFoundException("No document found with the provided id " + id);
+        Blob metadata = mongoClient.findMetadata(id);
+        Blob blob = metadata != null ? metadata : new Blob(id, null);
+        blob.setDataLoader(() -> readFile(id));
+        return blob;
+    }
+
+    /**
+     * Reads the whole file of a blob into memory, wherever the migration has put it by now.
+     *
+     * @param id The id of the blob.
+     * @return The content of the file.
+     */
+    private byte[] readFile(String id) {
+        for (Path candidate : candidates(id)) {
+            try {
+                return Files.readAllBytes(candidate);
+            } catch (NoSuchFileException e) {
+                // Not in this layout (any more), try the next one.
+            } catch (IOException e) {
+                logger.error("Failed to read file", e);
+                throw new RuntimeException(e);
             }
-            Document metadataDocument = findIterable.first();
-            Blob blob = new Blob(id, new String(data));
+        }
+        throw new BlobNotFoundException(id);
+    }
 
-            if (metadataDocument != null) {
-                blob.setSize(metadataDocument.getInteger("size"));
-                blob.setCreatedAt(new Timestamp(metadataDocument.getDate("timestamp").getTime()));
+    /**
+     * Retrieves the metadata of a blob from the "metadata" collection without fetching its data.
+     *
+     * @param id The id of the blob.
+     * @return A blob holding only the metadata.
+     */
+    @Override
+    public Blob getMetadata(String id) {
+        Blob metadata = mongoClient.findMetadata(id);
+        if (metadata == null) {
+            throw new BlobNotFoundException(id);
+        }
+        return metadata;
+    }
+
+    /**
+     * Opens the blob file as a FileChannel so it can be transferred to the client with sendfile.
+     * If a file with the same id does not exist, a BlobNotFoundException is thrown.
+     *
+     * @param id The id of the blob.
+     * @return The open blob content.
+     */
+    @Override
+    public BlobContent openBlob(String id) {
+        return openBlob(id, BlobRange.full());
+    }
+
+    /**
+     * Opens a byte range of the blob file.
+     * The channel is read positionally from the range offset, so seeking into a large file costs no extra I/O.
+     *
+     * @param id    The id of the blob.
+     * @param range The requested byte range.
+     * @return The open blob content covering the range.
+     */
+    @Override
+    public BlobContent openBlob(String id, BlobRange range) {
+        FileChannel channel = openChannel(id);
+        try {
+            long size = channel.size();
+            if (!range.isSatisfiable(size)) {
+                channel.close();
+                throw new RangeNotSatisfiableException(id, size);
             }
-            return blob;
+            return BlobContent.ofChannel(id, channel, size, range.getOffset(size), range.getLength(size));
         } catch (IOException e) {
-            logger.error("Failed to read file", e);
+            logger.error("Failed to read file size", e);
             throw new RuntimeException(e);
         }
     }
 
     /**
-     * Creates the storage directory if it does not exist.
+     * Opens the file of a blob, wherever the migration has put it by now.
+     *
+     * @param id The id of the blob.
+     * @return The open channel.
+     * @throws BlobNotFoundException If there is no file for the id.
+     */
+    private FileChannel openChannel(String id) {
+        for (Path candidate : candidates(id)) {
+            try {
+                return FileChannel.open(candidate, StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                // Not in this layout (any more), try the next one.
+            } catch (IOException e) {
+                logger.error("Failed to open file", e);
+                throw new RuntimeException(e);
+            }
+        }
+        throw new BlobNotFoundException(id);
+    }
+
+    /**
+     * Finds the file of a blob in either layout.
+     *
+     * @param id The id of the blob.
+     * @return The path of the file, or null if there is none.
+     */
+    private Path locate(String id) {
+        for (Path candidate : candidates(id)) {
+            if (Files.exists(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lists the places the file of a blob may be, in the order they are checked.
+     * During the migration a file only ever moves from the flat path to the sharded one, so checking the sharded path again
+     * after the flat one finds a file that was moved in between.
+     *
+     * @param id The id of the blob.
+     * @return The candidate paths.
+     */
+    private List<Path> candidates(String id) {
+        if (!isFileName(id)) {
+            return List.of();
+        }
+        if (shardLevels == 0) {
+            return List.of(path.resolve(id));
+        }
+        Path sharded = shardedPath(id);
+        return migrating ? List.of(sharded, path.resolve(id), sharded) : List.of(sharded);
+    }
+
+    /**
+     * Checks that an id names a file of its own directly in its directory: an empty id, "." or "..", an id with a path
+     * separator, or the name of the temporary directory would resolve to some other place in the flat layout.
+     *
+     * @param id The id of the blob.
+     * @return true if the id can be used as the name of the file of the blob.
+     */
+    private static boolean isFileName(String id) {
+        return !id.isEmpty() && !id.equals(".") && !id.equals("..") && !id.equals(TEMP_DIRECTORY)
+                && id.indexOf('/') < 0 && id.indexOf('\\') < 0;
+    }
+
+    /**
+     * Returns the path of a blob in the current layout.
+     *
+     * @param id The id of the blob.
+     * @return The path, under one directory per shard level.
+     */
+    private Path shardedPath(String id) {
+        if (shardLevels == 0) {
+            return path.resolve(id);
+        }
+        String hash = FileUtils.hash(id);
+        Path directory = path;
+        for (int level = 0; level < shardLevels; level++) {
+            directory = directory.resolve(hash.substring(level * shardWidth, (level + 1) * shardWidth));
+        }
+        return directory.resolve(id);
+    }
+
+    /**
+     * Returns the path a new blob is written to, creating its shard directories if needed.
+     *
+     * @param id The id of the blob.
+     * @return The path of the file.
+     */
+    private Path createParentDirectories(String id) {
+        Path filePath = shardedPath(id);
+        if (shardLevels > 0) {
+            try {
+                Files.createDirectories(filePath.getParent());
+            } catch (IOException e) {
+                logger.error("Failed to create shard directory", e);
+                throw new RuntimeException(e);
+            }
+        }
+        return filePath;
+    }
+
+    /**
+     * Moves every blob file still in the flat layout to its sharded path with an atomic rename, so it is readable
+     * at all times. Reads stop looking at the flat layout once every file has been moved.
+     * Runs on a background thread at startup; a file that is moved or deleted by someone else meanwhile is skipped.
+     *
+     * @return The number of files moved.
+     */
+    public int migrate() {
+        if (shardLevels == 0) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        int moved = 0;
+        int remaining = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path, Files::isRegularFile)) {
+            for (Path file : files) {
+                String id = file.getFileName().toString();
+                try {
+                    Path target = createParentDirectories(id);
+                    Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+                    moved++;
+                    if (moved % 10000 == 0) {
+                        logger.info("Moved {} blobs into the sharded layout", moved);
+                    }
+                } catch (NoSuchFileException e) {
+                    // Moved by a concurrent migration.
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Failed to move blob {} into the sharded layout", id, e);
+                    remaining++;
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to migrate {} into the sharded layout", path, e);
+            return moved;
+        }
+        if (remaining == 0) {
+            migrating = false;
+        }
+        logger.info("Moved {} blobs into the sharded layout in {} ms, {} left in the flat layout", moved,
+                (System.nanoTime() - start) / 1_000_000, remaining);
+        return moved;
+    }
+
+    /**
+     * Creates the storage directory if it does not exist, and removes temporary files left behind by interrupted writes.
      */
     private void createStorageDirectory() {
         if (!Files.exists(path)) {
@@ -121,5 +501,27 @@ public class LocalFileStorageService implements StorageService {
                 throw new RuntimeException(e);
             }
         }
+        try {
+            Files.createDirectories(tempDirectory);
+            try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(tempDirectory)) {
+                for (Path leftover : leftovers) {
+                    deletePartialFile(leftover);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to prepare temporary directory", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates a temporary file holding the bytes of a blob.
+     */
+    private interface TempFileWriter {
+        /**
+         * @param tempPath The path of the file, which does not exist yet.
+         * @return The number of bytes written.
+         */
+        long write(Path tempPath) throws IOException;
     }
-}
\ No newline at end of file
+}
@@ -1,15 +1,31 @@
 package org.example.services;
 
 import com.google.inject.Inject;
-import org.bson.Document;
 import org.example.aws.S3Client;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpStatus;
 import org.example.database.MongoDBClient;
+import org.example.exception.BlobNotFoundException;
+import org.example.exception.BlobTooLargeException;
+import org.example.exception.DuplicateBlobException;
+import org.example.exception.RangeNotSatisfiableException;
 import org.example.model.Blob;
+import org.example.model.BlobContent;
+import org.example.model.BlobRange;
 import org.example.model.BlobDto;
+import org.example.utils.FileUtils;
+import org.example.utils.HashingInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.Timestamp;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 /**
  * This class is responsible for managing the S3 storage service.
@@ -33,33 +49,194 @@ public class S3StorageService implements StorageService {
 
     /**
      * Saves a blob to the S3 bucket and inserts its metadata into the "metadata" collection.
+     * The content is hashed once; the same SHA-256 signs the upload and is stored as the hash of the blob.
      *
      * @param blobDto The blob data transfer object containing the blob id and data.
      */
     @Override
     public void saveBlob(BlobDto blobDto) {
+        Blob blob = new Blob(blobDto.getId(), blobDto.getData(), blobDto.getData().length);
+        FileUtils.applyHashes(blob, blobDto.getData());
         S3Client s3Client = new S3Client();
-        s3Client.putObjectToS3(blobDto.getId(), blobDto.getData());
-        Blob blob = new Blob(blobDto.getId(), blobDto.getData(), blobDto.getData().length());
+        s3Client.putObjectToS3(blobDto.getId(), blobDto.getData(), blob.getHash());
         mongoClient.insertMetadata(blob);
     }
 
+    /**
+     * Streams a blob to the S3 bucket and inserts its metadata into the "metadata" collection.
+     * S3 needs the content length before the upload starts, so a stream of unknown size is first spooled to a temporary file.
+     * A spooled upload is hashed while it is spooled, so it is sent signed with its SHA-256; a stream of known size
+     * is hashed while it is sent, and sent as UNSIGNED-PAYLOAD. Metadata is only written once S3 has accepted the object,
+     * and records the number of bytes actually sent. Blobs never change once stored, so an id that already has metadata
+     * is rejected before the upload starts.
+     *
+     * @param id       The id of the blob.
+     * @param data     The raw bytes of the blob.
+     * @param size     The number of bytes in the stream, or -1 if unknown.
+     * @param encoding The content coding the bytes are already compressed with, or null if they are stored as sent.
+     * @throws DuplicateBlobException If a blob with the same id already exists.
+     */
+    @Override
+    public void saveBlob(String id, InputStream data, long size, String encoding) {
+        FileUtils.checkBlobSize(id, size);
+        // Checked before anything is sent, so an existing object is never replaced by a duplicate upload.
+        if (mongoClient.findMetadata(id) != null) {
+            throw new DuplicateBlobException(id);
+        }
+        S3Client s3Client = new S3Client();
+        HashingInputStream hashingStream = new HashingInputStream(data);
+        if (size >= 0) {
+            s3Client.putObjectToS3(id, hashingStream, size);
+        } else {
+            Path spoolFile = null;
+            try {
+                spoolFile = Files.createTempFile("s3-upload-", ".tmp");
+                Files.copy(hashingStream, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+                if (hashingStream.isLimitExceeded()) {
+                    // Nothing has been sent to S3 yet; the spool file is deleted below.
+                    throw new BlobTooLargeException(id, FileUtils.MAX_BLOB_SIZE);
+                }
+                size = Files.size(spoolFile);
+                try (InputStream spooled = Files.newInputStream(spoolFile)) {
+                    s3Client.putObjectToS3(id, spooled, size, hashingStream.getSha256());
+                }
+            } catch (IOException e) {
+                logger.error("Failed to spool upload for blob {}", id, e);
+                throw new RuntimeException(e);
+            } finally {
+                deleteSpoolFile(spoolFile);
+            }
+        }
+        Blob blob = new Blob(id, null, Math.toIntExact(hashingStream.getCount()));
+        hashingStream.applyTo(blob);
+        blob.setEncoding(encoding);
+        mongoClient.insertMetadata(blob);
+    }
+
+    /**
+     * Deletes the temporary file used to spool an upload of unknown size.
+     *
+     * @param spoolFile The spool file, or null if none was created.
+     */
+    private void deleteSpoolFile(Path spoolFile) {
+        if (spoolFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(spoolFile);
+        } catch (IOException e) {
+            logger.warn("Failed to delete spool file {}", spoolFile, e);
+        }
+    }
+
     /**
      * Retrieves a blob from the S3 bucket and its metadata from the "metadata" collection.
+     * The object is only downloaded once the data is first read. Metadata is written after the object,
+     * so a blob without metadata does not exist yet and is reported as not found without asking S3.
      *
      * @param id The id of the blob.
      * @return The retrieved blob.
+     * @throws BlobNotFoundException If the blob has no metadata.
      */
     @Override
     public Blob getBlob(String id) {
+        Blob metadata = mongoClient.findMetadata(id);
+        if (metadata == null) {
+            throw new BlobNotFoundException(id);
+        }
+        metadata.setDataLoader(() -> new S3Client().getObjectFromS3(id));
+        return metadata;
+    }
+
+    /**
+     * Retrieves the metadata of a blob from the "metadata" collection without fetching its data.
+     *
+     * @param id The id of the blob.
+     * @return A blob holding only the metadata.
+     */
+    @Override
+    public Blob getMetadata(String id) {
+        Blob metadata = mongoClient.findMetadata(id);
+        if (metadata == null) {
+            throw new BlobNotFoundException(id);
+        }
+        return metadata;
+    }
+
+    /**
+     * Opens a streaming GET for the blob so it can be copied to the client through a fixed-size buffer.
+     *
+     * @param id The id of the blob.
+     * @return The open blob content.
+     */
+    @Override
+    public BlobContent openBlob(String id) {
+        return openBlob(id, BlobRange.full());
+    }
+
+    /**
+     * Opens a ranged GET for the blob, so S3 only sends the requested bytes.
+     * The HTTP response is released when the returned content is closed.
+     *
+     * @param id    The id of the blob.
+     * @param range The requested byte range.
+     * @return The open blob content covering the range.
+     */
+    @Override
+    public BlobContent openBlob(String id, BlobRange range) {
         S3Client s3Client = new S3Client();
-        String data = s3Client.getObjectFromS3(id);
-        Document metadataDocument = mongoClient.findDocument("metadata", new Document("id", id)).first();
-        Blob blob = new Blob(id, data);
-        if (metadataDocument != null) {
-            blob.setSize(metadataDocument.getInteger("size"));
-            blob.setCreatedAt(new Timestamp(metadataDocument.getDate("timestamp").getTime()));
+        CloseableHttpResponse response = s3Client.openObjectFromS3(id, range);
+        if (response == null) {
+            throw new RuntimeException("Error retrieving object " + id + " from S3");
+        }
+        try {
+            if (response.getCode() == HttpStatus.SC_NOT_FOUND) {
+                response.close();
+                throw new BlobNotFoundException(id);
+            }
+            if (response.getCode() == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                long size = parseContentRangeSize(response.getFirstHeader("Content-Range"));
+                response.close();
+                throw new RangeNotSatisfiableException(id, size);
+            }
+            if (response.getCode() < HttpStatus.SC_SUCCESS || response.getCode() >= HttpStatus.SC_REDIRECTION) {
+                int status = response.getCode();
+                response.close();
+                throw new RuntimeException("Error retrieving object " + id + " from S3: status " + status);
+            }
+            HttpEntity entity = response.getEntity();
+            InputStream stream = new FilterInputStream(entity.getContent()) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    response.close();
+                }
+            };
+            if (response.getCode() == HttpStatus.SC_PARTIAL_CONTENT) {
+                Header contentRange = response.getFirstHeader("Content-Range");
+                long size = parseContentRangeSize(contentRange);
+                long offset = Long.parseLong(contentRange.getValue().substring("bytes ".length(), contentRange.getValue().indexOf('-')));
+                return BlobContent.ofStream(id, stream, size, offset, entity.getContentLength());
+            }
+            return BlobContent.ofStream(id, stream, entity.getContentLength());
+        } catch (IOException e) {
+            logger.error("Failed to open object {} from S3", id, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the total object size from a "Content-Range: bytes first-last/size" or "bytes *&#47;size" header.
+     *
+     * @param contentRange The Content-Range header.
+     * @return The object size, or -1 if the header is missing or the size is unknown.
+     */
+    private long parseContentRangeSize(Header contentRange) {
+        if (contentRange == null) {
+            return -1;
         }
-        return blob;
+        String value = contentRange.getValue();
+        String size = value.substring(value.lastIndexOf('/') + 1).trim();
+        return "*".equals(size) ? -1 : Long.parseLong(size);
     }
-}
\ No newline at end of file
+}
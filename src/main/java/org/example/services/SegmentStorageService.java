@@ -0,0 +1,165 @@
+package org.example.services;
+
+import com.google.inject.Inject;
+import org.example.core.SegmentLog;
+import org.example.database.MongoDBClient;
+import org.example.exception.BlobNotFoundException;
+import org.example.exception.BlobTooLargeException;
+import org.example.exception.RangeNotSatisfiableException;
+import org.example.model.Blob;
+import org.example.model.BlobContent;
+import org.example.model.BlobDto;
+import org.example.model.BlobRange;
+import org.example.utils.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * This class provides an implementation of the StorageService interface for workloads of many small blobs.
+ * The data of every blob is a record in the append-only {@link SegmentLog} instead of a file of its own, and is read back
+ * with a single positional read; the metadata is kept in the "metadata" collection like with every other backend.
+ * Blobs are limited to the size of a segment ("SEGMENT_MAX_BYTES").
+ */
+public class SegmentStorageService implements StorageService {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentStorageService.class);
+    private final MongoDBClient mongoClient;
+    private final SegmentLog segmentLog;
+
+    /**
+     * Constructor for the SegmentStorageService.
+     *
+     * @param mongoDBClient The MongoDBClient.
+     * @param segmentLog    The segment log holding the data of the blobs.
+     */
+    @Inject
+    public SegmentStorageService(MongoDBClient mongoDBClient, SegmentLog segmentLog) {
+        this.mongoClient = mongoDBClient;
+        this.segmentLog = segmentLog;
+    }
+
+    /**
+     * Appends a blob to the segment log and inserts its metadata into the "metadata" collection.
+     * If a blob with the same id already exists, a DuplicateBlobException is thrown.
+     *
+     * @param blobDto The blob data transfer object containing the blob id and data.
+     */
+    @Override
+    public void saveBlob(BlobDto blobDto) {
+        logger.info("Saving blob with id {}", blobDto.getId());
+        Blob blob = new Blob(blobDto.getId(), blobDto.getData(), FileUtils.getBlobSize(blobDto.getData()));
+        FileUtils.applyHashes(blob, blobDto.getData());
+        save(blob, blobDto.getData());
+    }
+
+    /**
+     * Reads the streamed blob into memory and appends it to the segment log.
+     * A record has to be written in one piece while the log is locked, so a blob is never streamed into a segment;
+     * blobs larger than a segment are rejected with a BlobTooLargeException before they are read completely.
+     *
+     * @param id       The id of the blob.
+     * @param data     The raw bytes of the blob.
+     * @param size     The number of bytes in the stream, or -1 if unknown.
+     * @param encoding The content coding the bytes are already compressed with, or null if they are stored as sent.
+     */
+    @Override
+    public void saveBlob(String id, InputStream data, long size, String encoding) {
+        logger.info("Streaming blob with id {}", id);
+        long limit = segmentLog.getMaxBlobBytes();
+        if (size > limit) {
+            throw new BlobTooLargeException(id, limit);
+        }
+        byte[] bytes;
+        try {
+            bytes = data.readNBytes(Math.toIntExact(Math.min(limit + 1, Integer.MAX_VALUE - 8)));
+        } catch (IOException e) {
+            logger.error("Failed to read blob {}", id, e);
+            throw new RuntimeException(e);
+        }
+        if (bytes.length > limit) {
+            throw new BlobTooLargeException(id, limit);
+        }
+        Blob blob = new Blob(id, bytes, bytes.length);
+        FileUtils.applyHashes(blob, bytes);
+        blob.setEncoding(encoding);
+        save(blob, bytes);
+    }
+
+    /**
+     * Appends the data, then inserts the metadata. If the metadata cannot be saved, the record is dropped again.
+     */
+    private void save(Blob blob, byte[] data) {
+        segmentLog.append(blob.getId(), data);
+        try {
+            mongoClient.insertMetadata(blob);
+        } catch (RuntimeException e) {
+            segmentLog.remove(blob.getId());
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieves a blob from the segment log and its metadata from the "metadata" collection.
+     * The record is only read once the data is first accessed.
+     *
+     * @param id The id of the blob.
+     * @return The retrieved blob.
+     */
+    @Override
+    public Blob getBlob(String id) {
+        if (!segmentLog.contains(id)) {
+            throw new BlobNotFoundException(id);
+        }
+        Blob metadata = mongoClient.findMetadata(id);
+        Blob blob = metadata != null ? metadata : new Blob(id, null);
+        blob.setDataLoader(() -> {
+            ByteBuffer data = segmentLog.read(id);
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            return bytes;
+        });
+        return blob;
+    }
+
+    /**
+     * Retrieves the metadata of a blob from the "metadata" collection without reading its record.
+     *
+     * @param id The id of the blob.
+     * @return A blob holding only the metadata.
+     */
+    @Override
+    public Blob getMetadata(String id) {
+        Blob metadata = mongoClient.findMetadata(id);
+        if (metadata == null) {
+            throw new BlobNotFoundException(id);
+        }
+        return metadata;
+    }
+
+    @Override
+    public BlobContent openBlob(String id) {
+        return openBlob(id, BlobRange.full());
+    }
+
+    /**
+     * Reads the record of a blob and exposes the requested range of its data as a buffer.
+     *
+     * @param id    The id of the blob.
+     * @param range The requested byte range.
+     * @return The open blob content covering the range.
+     */
+    @Override
+    public BlobContent openBlob(String id, BlobRange range) {
+        ByteBuffer data = segmentLog.read(id);
+        long size = data.remaining();
+        if (!range.isSatisfiable(size)) {
+            throw new RangeNotSatisfiableException(id, size);
+        }
+        int offset = Math.toIntExact(range.getOffset(size));
+        ByteBuffer slice = data.slice(offset, Math.toIntExact(range.getLength(size)));
+        return BlobContent.ofBuffer(id, slice, size, offset, null);
+    }
+}
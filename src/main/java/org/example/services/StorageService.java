@@ -1,13 +1,29 @@
 package org.example.services;
 
+import org.example.exception.BlobNotFoundException;
+import org.example.exception.DuplicateBlobException;
+import org.example.model.BatchItemResult;
 import org.example.model.Blob;
+import org.example.model.BlobContent;
+import org.example.model.BlobRange;
 import org.example.model.BlobDto;
 
+import org.example.utils.ParallelUtils;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.Consumer;
+
 /**
  * Service for local file storage operations.
  */
 public interface StorageService {
 
+    /**
+     * The maximum number of blobs a batch fetches from the backend at the same time.
+     */
+    int BATCH_CONCURRENCY = Integer.getInteger("BATCH_CONCURRENCY", 16);
+
     /**
      * Saves the provided blob data.
      *
@@ -15,6 +31,29 @@ public interface StorageService {
      */
     void saveBlob(BlobDto blobDto);
 
+    /**
+     * Saves the blob by streaming its raw bytes straight to the backend.
+     * Implementations must not buffer the whole payload in memory.
+     *
+     * @param id   The id of the blob.
+     * @param data The raw bytes of the blob.
+     * @param size The number of bytes in the stream, or -1 if it is not known up front.
+     */
+    default void saveBlob(String id, InputStream data, long size) {
+        saveBlob(id, data, size, null);
+    }
+
+    /**
+     * Saves the blob by streaming its raw bytes straight to the backend, recording the content coding they are
+     * already compressed with. The bytes are stored as they are, so they can later be sent without recompressing.
+     *
+     * @param id       The id of the blob.
+     * @param data     The raw bytes of the blob.
+     * @param size     The number of bytes in the stream, or -1 if it is not known up front.
+     * @param encoding The content coding of the bytes (e.g. "gzip"), or null if they are not compressed.
+     */
+    void saveBlob(String id, InputStream data, long size, String encoding);
+
     /**
      * Retrieves the blob data for the provided id.
      *
@@ -23,4 +62,95 @@ public interface StorageService {
      */
     Blob getBlob(String id);
 
+    /**
+     * Retrieves only the metadata of the blob (size, creation time and content hash) from the "metadata" collection.
+     * The data backend is not touched.
+     *
+     * @param id The id of the blob.
+     * @return A blob holding the metadata, without data.
+     * @throws org.example.exception.BlobNotFoundException if there is no metadata for the id.
+     */
+    Blob getMetadata(String id);
+
+    /**
+     * Opens the raw bytes of the blob for streaming to a client without loading them into memory.
+     * The caller is responsible for closing the returned content.
+     *
+     * @param id The id of the blob.
+     * @return The open blob content.
+     */
+    BlobContent openBlob(String id);
+
+    /**
+     * Opens a byte range of the blob for streaming.
+     * Implementations push the range down to the backend, so only the requested bytes are read.
+     * The caller is responsible for closing the returned content.
+     *
+     * @param id    The id of the blob.
+     * @param range The requested byte range.
+     * @return The open blob content covering the range.
+     * @throws org.example.exception.RangeNotSatisfiableException if the range lies outside of the blob.
+     */
+    BlobContent openBlob(String id, BlobRange range);
+
+    /**
+     * Retrieves several blobs at once and hands each result to the consumer as soon as it is available.
+     * Results arrive in completion order, not request order, and the consumer may be called from several threads.
+     * Missing or failing ids are reported per item instead of failing the whole batch.
+     * The default implementation fans out to {@link #getBlob(String)} with at most {@link #BATCH_CONCURRENCY} lookups in flight;
+     * backends that can fetch many blobs in one round trip should override it.
+     *
+     * @param ids      The ids of the blobs.
+     * @param consumer Receives one result per id.
+     */
+    default void getBlobs(List<String> ids, Consumer<BatchItemResult> consumer) {
+        ParallelUtils.forEachBounded(ids, BATCH_CONCURRENCY, id -> {
+            BatchItemResult result;
+            try {
+                result = BatchItemResult.found(getBlob(id));
+            } catch (BlobNotFoundException e) {
+                result = BatchItemResult.notFound(id);
+            } catch (RuntimeException e) {
+                result = BatchItemResult.failed(id, e.getMessage());
+            }
+            consumer.accept(result);
+        });
+    }
+
+    /**
+     * Saves several blobs and hands each outcome to the consumer as soon as it is known.
+     * Outcomes arrive in completion order and the consumer may be called from several threads.
+     * A duplicate or failing blob is reported per item and never aborts the rest of the batch.
+     * The default implementation pipelines {@link #saveBlob(BlobDto)} calls with at most {@link #BATCH_CONCURRENCY} writes in flight;
+     * backends that can write many blobs in one round trip should override it.
+     *
+     * @param blobs    The blobs to save, with their data already decoded.
+     * @param consumer Receives one result per blob.
+     */
+    default void saveBlobs(List<BlobDto> blobs, Consumer<BatchItemResult> consumer) {
+        ParallelUtils.forEachBounded(blobs, BATCH_CONCURRENCY, blobDto -> {
+            BatchItemResult result;
+            try {
+                saveBlob(blobDto);
+                result = BatchItemResult.created(blobDto.getId());
+            } catch (DuplicateBlobException e) {
+                result = BatchItemResult.duplicate(blobDto.getId());
+            } catch (RuntimeException e) {
+                result = BatchItemResult.failed(blobDto.getId(), e.getMessage());
+            }
+            consumer.accept(result);
+        });
+    }
+
+    /**
+     * Checks whether reading a blob of the given size through this service would keep a copy of it in a cache.
+     * Backends do not cache, so the default implementation returns false; caching layers check their tiers first.
+     *
+     * @param size The size of the blob in bytes.
+     * @return true if a cache would take the blob.
+     */
+    default boolean isCacheable(long size) {
+        return false;
+    }
+
 }
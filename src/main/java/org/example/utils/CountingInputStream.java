@@ -0,0 +1,88 @@
+package org.example.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An InputStream that counts the bytes read through it.
+ * Used by the streaming upload path to learn the blob size without buffering the payload.
+ * With a limit, the stream ends after that many bytes; if the underlying stream had more, {@link #isLimitExceeded()}
+ * tells so afterwards, so the caller can discard what it stored instead of keeping a truncated copy.
+ */
+public class CountingInputStream extends FilterInputStream {
+    private final long limit;
+    private long count;
+    private boolean limitExceeded;
+
+    public CountingInputStream(InputStream in) {
+        this(in, Long.MAX_VALUE);
+    }
+
+    public CountingInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (count >= limit) {
+            return checkEnd();
+        }
+        int b = super.read();
+        if (b != -1) {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (count >= limit) {
+            return len == 0 ? 0 : checkEnd();
+        }
+        int n = super.read(b, off, (int) Math.min(len, limit - count));
+        if (n > 0) {
+            count += n;
+        }
+        return n;
+    }
+
+    /**
+     * Ends the stream at the limit, noting whether the underlying stream had more bytes.
+     */
+    private int checkEnd() throws IOException {
+        if (!limitExceeded && super.read() != -1) {
+            limitExceeded = true;
+        }
+        return -1;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(Math.min(n, limit - count));
+        count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Returns the number of bytes read so far.
+     *
+     * @return The byte count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns true if the stream was cut off at the limit while the underlying stream had more bytes.
+     */
+    public boolean isLimitExceeded() {
+        return limitExceeded;
+    }
+}
@@ -1,21 +1,78 @@
 package org.example.utils;
 
+import org.example.exception.BlobTooLargeException;
+import org.example.model.Blob;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 public class FileUtils {
 
-    public static int getBlobSize(String data) {
-        if (data == null || data.isEmpty()) {
-            return 0;
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    /**
+     * The size of the largest blob, as the size is recorded as an int.
+     */
+    public static final long MAX_BLOB_SIZE = Integer.MAX_VALUE;
+    private static final HexFormat HEX = HexFormat.of();
+    private static final int DIGEST_POOL_SIZE = Integer.getInteger("DIGEST_POOL_SIZE", 64);
+    private static final BlockingQueue<MessageDigest> SHA256_POOL = new ArrayBlockingQueue<>(DIGEST_POOL_SIZE);
+
+    /**
+     * Checks whether blobs may be stored compressed with the given content coding.
+     *
+     * @param encoding The content coding, as sent in a Content-Encoding header.
+     * @return true for "gzip" and "deflate".
+     */
+    public static boolean isSupportedEncoding(String encoding) {
+        return GZIP.equalsIgnoreCase(encoding) || DEFLATE.equalsIgnoreCase(encoding);
+    }
+
+    /**
+     * Wraps a stream of compressed bytes so that reading it yields the original bytes.
+     * "deflate" is the zlib format, as used by HTTP.
+     *
+     * @param in       The compressed stream.
+     * @param encoding The content coding of the stream.
+     * @return A stream of the decompressed bytes.
+     * @throws IOException If the gzip header cannot be read.
+     */
+    public static InputStream decodingStream(InputStream in, String encoding) throws IOException {
+        if (GZIP.equalsIgnoreCase(encoding)) {
+            return new GZIPInputStream(in, 64 * 1024);
         }
-        try {
-            return data.getBytes().length;
-        } catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException("Invalid Base64 data", e);
+        if (DEFLATE.equalsIgnoreCase(encoding)) {
+            return new InflaterInputStream(in);
         }
+        throw new IllegalArgumentException("Unsupported content encoding: " + encoding);
+    }
+
+    /**
+     * Rejects an upload that is announced to be larger than {@link #MAX_BLOB_SIZE}, before any of it is stored.
+     *
+     * @param id   The id of the blob.
+     * @param size The announced size, or -1 if unknown.
+     * @throws BlobTooLargeException If the size is over the limit.
+     */
+    public static void checkBlobSize(String id, long size) {
+        if (size > MAX_BLOB_SIZE) {
+            throw new BlobTooLargeException(id, MAX_BLOB_SIZE);
+        }
+    }
+
+    public static int getBlobSize(byte[] data) {
+        return data == null ? 0 : data.length;
     }
 
     public static String encodeStringToBase64(String data) {
@@ -28,30 +85,101 @@ public class FileUtils {
     }
 
     public static String hashStringContent(String base64Data) throws NoSuchAlgorithmException {
-        byte[] data = Base64.getDecoder().decode(base64Data);
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hash = digest.digest(data);
-        return bytesToHex(hash);
+        return hashBytes(Base64.getDecoder().decode(base64Data));
     }
 
-    private static String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
-        }
-        return sb.toString();
+    public static String hash(String text) {
+        return hashBytes(text.getBytes(StandardCharsets.UTF_8));
     }
 
-    public static String hash(String text) {
+    /**
+     * Creates a new SHA-256 digest.
+     *
+     * @return The digest.
+     */
+    public static MessageDigest newSha256Digest() {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hashedBytes = md.digest(text.getBytes(StandardCharsets.UTF_8));
-            return bytesToHex(hashedBytes);
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Takes a SHA-256 digest from the pool, or creates one if the pool is empty.
+     * The digest should be handed back with {@link #releaseDigest(MessageDigest)} once it has been used.
+     *
+     * @return A reset digest.
+     */
+    public static MessageDigest acquireSha256Digest() {
+        MessageDigest digest = SHA256_POOL.poll();
+        return digest != null ? digest : newSha256Digest();
+    }
+
+    /**
+     * Resets a SHA-256 digest and returns it to the pool. Digests beyond the pool capacity are dropped.
+     *
+     * @param digest The digest to release.
+     */
+    public static void releaseDigest(MessageDigest digest) {
+        digest.reset();
+        SHA256_POOL.offer(digest);
+    }
+
+    /**
+     * Hashes the content of a blob.
+     *
+     * @param data The blob content.
+     * @return The hex encoded SHA-256 of the content.
+     */
+    public static String hashBytes(byte[] data) {
+        MessageDigest digest = acquireSha256Digest();
+        try {
+            return toHex(digest.digest(data));
+        } finally {
+            releaseDigest(digest);
+        }
+    }
+
+    /**
+     * Sets the SHA-256 of a blob held in memory, along with its CRC32C if "HASH_CRC32C" is enabled
+     * and its tree hash if "TREE_HASH" is enabled.
+     *
+     * @param blob The blob to update.
+     * @param data The content of the blob.
+     */
+    public static void applyHashes(Blob blob, byte[] data) {
+        blob.setHash(hashBytes(data));
+        if (HashingInputStream.CRC32C_ENABLED) {
+            CRC32C crc = new CRC32C();
+            crc.update(data);
+            blob.setCrc32c(toHex((int) crc.getValue()));
+        }
+        if (TreeHasher.ENABLED) {
+            blob.setTreeHash(TreeHasher.treeHash(data));
+        }
+    }
+
+    /**
+     * Hex encodes bytes, such as a digest.
+     *
+     * @param bytes The bytes to encode.
+     * @return The lower case hex string.
+     */
+    public static String toHex(byte[] bytes) {
+        return HEX.formatHex(bytes);
+    }
+
+    /**
+     * Hex encodes a 32-bit checksum as eight digits.
+     *
+     * @param value The checksum.
+     * @return The lower case hex string.
+     */
+    public static String toHex(int value) {
+        return HEX.toHexDigits(value);
+    }
+
     public static byte[] decodeBase64(String base64Str) {
         return Base64.getDecoder().decode(base64Str);
     }
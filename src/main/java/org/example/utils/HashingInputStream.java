@@ -0,0 +1,135 @@
+package org.example.utils;
+
+import org.example.model.Blob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.zip.CRC32C;
+
+/**
+ * An InputStream that computes the SHA-256 of the bytes read through it, and their CRC32C if "HASH_CRC32C" is enabled.
+ * Wrapping an upload in it lets a backend learn the size and hashes of a blob in the same pass that stores it,
+ * so the payload is never read twice. The SHA-256 digest is borrowed from the pool in {@link FileUtils}
+ * and returned once the hash has been taken; a stream that is abandoned before that simply leaves it to the garbage collector.
+ * With "TREE_HASH" enabled both the SHA-256 and a tree hash are computed by a {@link TreeHasher} on a fork-join pool.
+ * The stream ends after {@link FileUtils#MAX_BLOB_SIZE} bytes, the largest size a blob can record; see
+ * {@link #isLimitExceeded()}.
+ */
+public class HashingInputStream extends CountingInputStream {
+    public static final boolean CRC32C_ENABLED = Boolean.parseBoolean(System.getProperty("HASH_CRC32C", "false"));
+
+    private MessageDigest digest;
+    private final CRC32C crc;
+    private final TreeHasher tree;
+    private String sha256;
+    private String treeHash;
+
+    public HashingInputStream(InputStream in) {
+        super(in, FileUtils.MAX_BLOB_SIZE);
+        this.digest = FileUtils.acquireSha256Digest();
+        this.crc = CRC32C_ENABLED ? new CRC32C() : null;
+        this.tree = TreeHasher.ENABLED ? new TreeHasher(digest) : null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            update(new byte[]{(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            update(b, off, n);
+        }
+        return n;
+    }
+
+    /**
+     * Skipped bytes are read and hashed, so the hashes always cover every byte of the stream.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    private void update(byte[] b, int off, int len) {
+        checkOpen();
+        if (tree != null) {
+            tree.update(b, off, len);
+        } else {
+            digest.update(b, off, len);
+        }
+        if (crc != null) {
+            crc.update(b, off, len);
+        }
+    }
+
+    private void checkOpen() {
+        if (sha256 != null) {
+            throw new IllegalStateException("The stream has already been hashed");
+        }
+    }
+
+    /**
+     * Returns the SHA-256 of the bytes read so far and releases the digest.
+     * Reading more bytes afterwards is an error.
+     *
+     * @return The hex encoded hash.
+     */
+    public String getSha256() {
+        if (sha256 == null) {
+            if (tree != null) {
+                treeHash = FileUtils.toHex(tree.finish());
+            }
+            sha256 = FileUtils.toHex(digest.digest());
+            FileUtils.releaseDigest(digest);
+            digest = null;
+        }
+        return sha256;
+    }
+
+    /**
+     * Returns the CRC32C of the bytes read so far.
+     *
+     * @return The hex encoded checksum, or null if "HASH_CRC32C" is disabled.
+     */
+    public String getCrc32c() {
+        return crc == null ? null : FileUtils.toHex((int) crc.getValue());
+    }
+
+    /**
+     * Returns the tree hash of the bytes read so far, finishing the stream's hashes like {@link #getSha256()}.
+     *
+     * @return The hex encoded root hash, or null if "TREE_HASH" is disabled.
+     */
+    public String getTreeHash() {
+        getSha256();
+        return treeHash;
+    }
+
+    /**
+     * Sets the hashes of the bytes read so far on a blob.
+     *
+     * @param blob The blob the stream carried.
+     */
+    public void applyTo(Blob blob) {
+        blob.setHash(getSha256());
+        blob.setCrc32c(getCrc32c());
+        blob.setTreeHash(getTreeHash());
+    }
+}
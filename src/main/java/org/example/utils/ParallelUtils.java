@@ -0,0 +1,56 @@
+package org.example.utils;
+
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+public class ParallelUtils {
+
+    /**
+     * Runs the action for every item on virtual threads, with at most {@code parallelism} items in flight at a time.
+     * Returns once every action has finished. Actions are expected to handle their own failures; if one throws anyway,
+     * the remaining items are still processed and the first failure is rethrown once all actions have finished,
+     * with later failures attached as suppressed exceptions.
+     *
+     * @param items       The items to process.
+     * @param parallelism The maximum number of concurrent actions.
+     * @param action      The action to run for each item.
+     * @param <T>         The item type.
+     */
+    public static <T> void forEachBounded(Collection<T> items, int parallelism, Consumer<T> action) {
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (T item : items) {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    executor.shutdownNow();
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while scheduling parallel work", e);
+                }
+                executor.execute(() -> {
+                    try {
+                        action.accept(item);
+                    } catch (Throwable t) {
+                        if (!failure.compareAndSet(null, t) && failure.get() != t) {
+                            failure.get().addSuppressed(t);
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        Throwable first = failure.get();
+        if (first instanceof RuntimeException e) {
+            throw e;
+        }
+        if (first instanceof Error e) {
+            throw e;
+        }
+    }
+}
@@ -1,37 +1,39 @@
 package org.example.utils;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import org.example.exception.InvalidRequestException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import org.example.core.JsonCodec;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.text.SimpleDateFormat;
 
+/**
+ * Static access to JSON parsing for code that is not managed by Guice.
+ * All calls share one JsonCodec, so no ObjectMapper is built per call.
+ */
 public class ParsingUtils {
 
+    private static final JsonCodec CODEC = new JsonCodec();
+
     public static <T> T parseJson(InputStream in, Class<T> clazz) throws IOException {
-        try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            return objectMapper.readValue(in, clazz);
-        } catch (JsonProcessingException e) {
-            // Handle invalid JSON format (e.g., log, throw custom exception)
-
-            throw new InvalidRequestException("Invalid JSON format", e);
-        }
+        return CODEC.read(in, clazz);
+    }
+
+    /**
+     * Reads a stream of JSON values separated by whitespace, such as newline-delimited JSON, one value at a time.
+     * Only the current record is held in memory, so arbitrarily long bodies can be consumed.
+     *
+     * @param in    The input stream.
+     * @param clazz The type of every record.
+     * @param <T>   The record type.
+     * @return An iterator over the records; closing it closes the stream.
+     * @throws IOException If the stream cannot be read.
+     */
+    public static <T> MappingIterator<T> readJsonLines(InputStream in, Class<T> clazz) throws IOException {
+        return CODEC.readValues(in, clazz);
     }
 
     public static String objectToJson(Object object) throws IOException {
-        try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
-            objectMapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'"));
-            return objectMapper.writeValueAsString(object);
-        } catch (JsonProcessingException e) {
-            // Handle invalid JSON format (e.g., log, throw custom exception)
-            throw new InvalidRequestException("Invalid JSON format", e);
-        }
+        return CODEC.writeAsString(object);
     }
 
 
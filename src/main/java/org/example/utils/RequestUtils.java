@@ -1,10 +1,19 @@
 package org.example.utils;
 
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.ByteRange;
 import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import org.example.model.BlobContent;
+import org.example.model.BlobRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xnio.channels.Channels;
+import org.xnio.channels.StreamSinkChannel;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 
 import java.util.Date;
@@ -14,12 +23,123 @@ import java.util.stream.Collectors;
 
 public class RequestUtils {
     private static final Logger log = LoggerFactory.getLogger(RequestUtils.class);
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
 
     public static void sendResponse(HttpServerExchange exchange, String s) {
         exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain");
         exchange.getResponseSender().send(s);
     }
 
+    /**
+     * Writes raw blob content to the response. The exchange must be in blocking mode.
+     * File backed content is transferred straight from the FileChannel to the socket so XNIO can use sendfile,
+     * starting at the content offset, so a range is served with a single positional transfer.
+     * Buffer backed content, such as a blob cached off-heap, is written from its buffer directly.
+     * Stream backed content is copied through one fixed-size buffer, so memory use does not grow with the blob size.
+     * Partial content is answered with 206 and a Content-Range header.
+     *
+     * @param exchange The HttpServerExchange.
+     * @param content  The open blob content.
+     * @throws IOException If writing the response fails.
+     */
+    public static void sendContent(HttpServerExchange exchange, BlobContent content) throws IOException {
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/octet-stream");
+        exchange.getResponseHeaders().put(Headers.ACCEPT_RANGES, "bytes");
+        if (content.isPartial()) {
+            exchange.setStatusCode(StatusCodes.PARTIAL_CONTENT);
+            exchange.getResponseHeaders().put(Headers.CONTENT_RANGE,
+                    "bytes " + content.getOffset() + "-" + (content.getOffset() + content.getLength() - 1) + "/" + content.getSize());
+        }
+        if (content.getLength() >= 0) {
+            exchange.setResponseContentLength(content.getLength());
+        }
+        if (content.hasChannel()) {
+            StreamSinkChannel sink = exchange.getResponseChannel();
+            Channels.transferBlocking(sink, content.getChannel(), content.getOffset(), content.getLength());
+            sink.shutdownWrites();
+            Channels.flushBlocking(sink);
+        } else if (content.hasBuffer()) {
+            // Direct buffers go to the socket as they are, without a copy onto the heap.
+            StreamSinkChannel sink = exchange.getResponseChannel();
+            Channels.writeBlocking(sink, content.getBuffer());
+            sink.shutdownWrites();
+            Channels.flushBlocking(sink);
+        } else {
+            InputStream in = content.getStream();
+            OutputStream out = exchange.getOutputStream();
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            out.close();
+        }
+        log.debug("Sent content of blob {}", content.getId());
+    }
+
+    /**
+     * Sends compressed-at-rest content to a client that does not accept its coding, decompressing it on the fly.
+     * The decoded length is not known up front, so the response is chunked and ranges are not offered.
+     *
+     * @param exchange The HttpServerExchange.
+     * @param content  The open blob content, covering the whole stored blob.
+     * @param encoding The content coding the blob is stored with.
+     * @throws IOException If reading the blob or writing the response fails.
+     */
+    public static void sendDecodedContent(HttpServerExchange exchange, BlobContent content, String encoding) throws IOException {
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/octet-stream");
+        try (InputStream in = FileUtils.decodingStream(content.openStream(), encoding)) {
+            OutputStream out = exchange.getOutputStream();
+            in.transferTo(out);
+            out.close();
+        }
+        log.debug("Sent decoded content of blob {}", content.getId());
+    }
+
+    /**
+     * Checks whether the Accept-Encoding request header allows the given content coding.
+     * A coding listed with "q=0" is refused, and "*" matches any coding.
+     *
+     * @param exchange The HttpServerExchange.
+     * @param encoding The content coding, e.g. "gzip".
+     * @return true if the client accepts the coding.
+     */
+    public static boolean acceptsEncoding(HttpServerExchange exchange, String encoding) {
+        String header = exchange.getRequestHeaders().getFirst(Headers.ACCEPT_ENCODING);
+        if (header == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String entry : header.split(",")) {
+            String[] parts = entry.trim().split(";");
+            String coding = parts[0].trim();
+            boolean refused = parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?");
+            if (coding.equalsIgnoreCase(encoding)) {
+                return !refused;
+            }
+            if (coding.equals("*")) {
+                wildcard = !refused;
+            }
+        }
+        return wildcard;
+    }
+
+    /**
+     * Reads a single byte range from the Range request header.
+     * Multiple ranges are not supported and, like a missing or malformed header, result in the full range,
+     * which RFC 9110 allows a server to answer with the whole representation.
+     *
+     * @param exchange The HttpServerExchange.
+     * @return The requested range.
+     */
+    public static BlobRange parseRange(HttpServerExchange exchange) {
+        ByteRange byteRange = ByteRange.parse(exchange.getRequestHeaders().getFirst(Headers.RANGE));
+        if (byteRange == null || byteRange.getRanges() != 1) {
+            return BlobRange.full();
+        }
+        return BlobRange.of(byteRange.getStart(0), byteRange.getEnd(0));
+    }
+
     public static String headersToString(Map<String, String> headers) {
         return headers.entrySet().stream()
                 .sorted(Map.Entry.comparingByKey())
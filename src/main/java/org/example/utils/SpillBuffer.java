@@ -0,0 +1,123 @@
+package org.example.utils;
+
+import org.example.exception.BlobTooLargeException;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An OutputStream that keeps its bytes in memory up to a threshold and moves them to a temporary file beyond it.
+ * Used to hold a decoded upload until it can be handed to the storage backend, so heap use per upload is bounded
+ * by the threshold rather than by the payload size.
+ * The total is capped: a write past the limit throws BlobTooLargeException before anything more is stored.
+ * Closing the buffer deletes the temporary file.
+ */
+public class SpillBuffer extends OutputStream {
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    private final int threshold;
+    private final long limit;
+    private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private Path spillFile;
+    private OutputStream fileOut;
+    private long size;
+
+    /**
+     * @param threshold The number of bytes kept in memory before spilling to disk.
+     * @param limit     The largest number of bytes the buffer accepts.
+     */
+    public SpillBuffer(int threshold, long limit) {
+        this.threshold = threshold;
+        this.limit = limit;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (size + len > limit) {
+            throw new BlobTooLargeException(limit);
+        }
+        if (fileOut == null && size + len > threshold) {
+            spill();
+        }
+        if (fileOut != null) {
+            fileOut.write(b, off, len);
+        } else {
+            memory.write(b, off, len);
+        }
+        size += len;
+    }
+
+    /**
+     * Moves the bytes written so far to a temporary file and sends all further writes there.
+     *
+     * @throws IOException If the file cannot be created.
+     */
+    private void spill() throws IOException {
+        spillFile = Files.createTempFile("blob-upload-", ".spill");
+        fileOut = new BufferedOutputStream(Files.newOutputStream(spillFile), FILE_BUFFER_SIZE);
+        memory.writeTo(fileOut);
+        memory = null;
+    }
+
+    /**
+     * Returns the number of bytes written.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the bytes were moved to a temporary file.
+     */
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * Returns the bytes held in memory.
+     *
+     * @return The bytes written.
+     * @throws IllegalStateException If the buffer has spilled to disk.
+     */
+    public byte[] toByteArray() {
+        if (isSpilled()) {
+            throw new IllegalStateException("Buffer has spilled to disk");
+        }
+        return memory.toByteArray();
+    }
+
+    /**
+     * Opens a stream over the bytes written. Further writes are not allowed afterwards.
+     *
+     * @return A stream over the bytes written.
+     * @throws IOException If the temporary file cannot be opened.
+     */
+    public InputStream openInputStream() throws IOException {
+        if (!isSpilled()) {
+            return new ByteArrayInputStream(memory.toByteArray());
+        }
+        fileOut.close();
+        return Files.newInputStream(spillFile);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileOut != null) {
+            fileOut.close();
+        }
+        if (spillFile != null) {
+            Files.deleteIfExists(spillFile);
+        }
+    }
+}
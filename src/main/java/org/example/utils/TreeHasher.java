@@ -0,0 +1,155 @@
+package org.example.utils;
+
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class is responsible for computing the tree hash of a blob while it streams through the server.
+ * The content is cut into chunks of "TREE_HASH_CHUNK_SIZE" bytes (1 MiB by default); every chunk is hashed with SHA-256
+ * on a shared fork-join pool as soon as it is complete, and the chunk digests are combined pairwise into a single root,
+ * in the same way as the Amazon Glacier tree hash. The linear SHA-256 of the whole blob is fed the same chunks, in order,
+ * on the pool as well, so the thread reading the upload only copies bytes and neither hash is bound to it.
+ * At most a few chunks per core are in flight; the reader waits for the oldest one beyond that, which bounds memory per upload.
+ */
+public class TreeHasher {
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("TREE_HASH", "false"));
+    public static final int CHUNK_SIZE = Integer.getInteger("TREE_HASH_CHUNK_SIZE", 1024 * 1024);
+    private static final int PARALLELISM = Integer.getInteger("TREE_HASH_PARALLELISM", Runtime.getRuntime().availableProcessors());
+    private static final int MAX_PENDING_CHUNKS = PARALLELISM * 2;
+    private static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM);
+
+    private final MessageDigest linear;
+    private final List<CompletableFuture<byte[]>> chunkDigests = new ArrayList<>();
+    private final Deque<CompletableFuture<Void>> inFlight = new ArrayDeque<>();
+    private CompletableFuture<Void> linearTail = CompletableFuture.completedFuture(null);
+    private byte[] buffer;
+    private int filled;
+    private byte[] root;
+
+    /**
+     * Constructor for the TreeHasher.
+     *
+     * @param linear The digest that receives the whole content in order; it must not be updated by anyone else until {@link #finish()} returns.
+     */
+    public TreeHasher(MessageDigest linear) {
+        this.linear = linear;
+    }
+
+    /**
+     * Adds bytes to the current chunk, handing the chunk to the pool once it is full.
+     *
+     * @param b   The bytes.
+     * @param off The offset of the first byte.
+     * @param len The number of bytes.
+     */
+    public void update(byte[] b, int off, int len) {
+        while (len > 0) {
+            if (buffer == null) {
+                buffer = new byte[CHUNK_SIZE];
+            }
+            int n = Math.min(len, CHUNK_SIZE - filled);
+            System.arraycopy(b, off, buffer, filled, n);
+            filled += n;
+            off += n;
+            len -= n;
+            if (filled == CHUNK_SIZE) {
+                submitChunk();
+            }
+        }
+    }
+
+    /**
+     * Hashes the current chunk on the pool and appends it to the linear digest after the chunks before it.
+     */
+    private void submitChunk() {
+        byte[] chunk = filled == buffer.length ? buffer : Arrays.copyOf(buffer, filled);
+        buffer = null;
+        filled = 0;
+        CompletableFuture<byte[]> chunkDigest = CompletableFuture.supplyAsync(() -> sha256(chunk, 0, chunk.length), POOL);
+        linearTail = linearTail.thenRunAsync(() -> linear.update(chunk), POOL);
+        chunkDigests.add(chunkDigest);
+        inFlight.add(CompletableFuture.allOf(chunkDigest, linearTail));
+        while (inFlight.size() > MAX_PENDING_CHUNKS) {
+            inFlight.poll().join();
+        }
+    }
+
+    /**
+     * Waits for every chunk, after which the linear digest holds the whole content, and returns the root of the tree.
+     *
+     * @return The root hash; the SHA-256 of nothing for empty content.
+     */
+    public byte[] finish() {
+        if (root == null) {
+            if (filled > 0) {
+                submitChunk();
+            }
+            linearTail.join();
+            List<byte[]> digests = new ArrayList<>(chunkDigests.size());
+            for (CompletableFuture<byte[]> chunkDigest : chunkDigests) {
+                digests.add(chunkDigest.join());
+            }
+            root = combine(digests);
+        }
+        return root;
+    }
+
+    /**
+     * Computes the tree hash of content held in memory, on the calling thread.
+     *
+     * @param data The content.
+     * @return The hex encoded root hash.
+     */
+    public static String treeHash(byte[] data) {
+        List<byte[]> digests = new ArrayList<>();
+        for (int off = 0; off < data.length; off += CHUNK_SIZE) {
+            digests.add(sha256(data, off, Math.min(CHUNK_SIZE, data.length - off)));
+        }
+        return FileUtils.toHex(combine(digests));
+    }
+
+    /**
+     * Combines chunk digests pairwise, level by level, until one remains; an odd digest is carried up unchanged.
+     *
+     * @param digests The chunk digests in order.
+     * @return The root hash.
+     */
+    static byte[] combine(List<byte[]> digests) {
+        if (digests.isEmpty()) {
+            return sha256(new byte[0], 0, 0);
+        }
+        List<byte[]> level = digests;
+        while (level.size() > 1) {
+            List<byte[]> next = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                if (i + 1 == level.size()) {
+                    next.add(level.get(i));
+                } else {
+                    MessageDigest digest = FileUtils.acquireSha256Digest();
+                    digest.update(level.get(i));
+                    digest.update(level.get(i + 1));
+                    next.add(digest.digest());
+                    FileUtils.releaseDigest(digest);
+                }
+            }
+            level = next;
+        }
+        return level.get(0);
+    }
+
+    private static byte[] sha256(byte[] data, int off, int len) {
+        MessageDigest digest = FileUtils.acquireSha256Digest();
+        try {
+            digest.update(data, off, len);
+            return digest.digest();
+        } finally {
+            FileUtils.releaseDigest(digest);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.undertow.Handlers;
+import io.undertow.Undertow;
+import io.undertow.server.RoutingHandler;
+import io.undertow.util.Methods;
+import org.example.controllers.AdminController;
+import org.example.core.BlobCache;
+import org.example.core.DiskBlobCache;
+import org.example.core.HotKeyTracker;
+import org.example.core.JsonCodec;
+import org.example.core.OffHeapBlobCache;
+import org.example.core.ServerProfile;
+import org.example.core.SingleFlight;
+import org.example.database.MetadataCache;
+import org.example.model.Blob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdminControllerTest {
+    private Undertow server;
+    private HttpClient client;
+    private int serverPort;
+    private BlobCache blobCache;
+    private HotKeyTracker hotKeyTracker;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        System.setProperty("SERVER_PROFILE", "small-blob");
+        blobCache = new BlobCache(1024, 256);
+        hotKeyTracker = new HotKeyTracker(2, 1024, Files.createTempDirectory("admin-test").resolve("hot-keys.txt"), 0);
+        AdminController adminController = new AdminController(new ServerProfile(), new JsonCodec(), blobCache,
+                new OffHeapBlobCache(0, 4096, 0), new DiskBlobCache(Files.createTempDirectory("admin-test-disk"), 0, 0),
+                new MetadataCache(10, 1000), new SingleFlight(), hotKeyTracker);
+
+        RoutingHandler routingHandler = Handlers.routing()
+                .add(Methods.GET, "/v1/admin/server-profile", adminController.getServerProfile())
+                .add(Methods.GET, "/v1/admin/cache", adminController.getCacheStats())
+                .add(Methods.GET, "/v1/admin/hot-keys", adminController.getHotKeys());
+
+        server = Undertow.builder()
+                .addHttpListener(0, "localhost")
+                .setHandler(routingHandler)
+                .build();
+        server.start();
+        serverPort = ((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+        System.clearProperty("SERVER_PROFILE");
+    }
+
+    @Test
+    public void getServerProfile_ShouldReturnActiveProfile_WhenRequested() throws Exception {
+        HttpResponse<String> response = get("/v1/admin/server-profile");
+
+        assertEquals(200, response.statusCode());
+        assertEquals("application/json", response.headers().firstValue("Content-Type").orElse(null));
+        JsonNode profile = new ObjectMapper().readTree(response.body());
+        assertEquals("small-blob", profile.get("name").asText());
+        assertEquals(4096, profile.get("bufferSize").asInt());
+        assertEquals(64L * 1024 * 1024, profile.get("maxEntitySize").asLong());
+        assertTrue(profile.get("http2").asBoolean());
+    }
+
+    @Test
+    public void getCacheStats_ShouldReturnCountersOfEveryTier_WhenRequested() throws Exception {
+        blobCache.put(new Blob("cached", new byte[16], 16));
+        blobCache.get("cached");
+        blobCache.get("missing");
+
+        HttpResponse<String> response = get("/v1/admin/cache");
+
+        assertEquals(200, response.statusCode());
+        JsonNode stats = new ObjectMapper().readTree(response.body());
+        assertEquals(1, stats.get("heap").get("entries").asInt());
+        assertEquals(1, stats.get("heap").get("hits").asLong());
+        assertEquals(1, stats.get("heap").get("misses").asLong());
+        assertFalse(stats.get("offHeap").get("enabled").asBoolean());
+        assertFalse(stats.get("disk").get("enabled").asBoolean());
+        assertTrue(stats.get("metadata").get("enabled").asBoolean());
+        assertEquals(0, stats.get("coalescing").get("coalesced").asLong());
+    }
+
+    @Test
+    public void getHotKeys_ShouldReturnHottestIdsFirst_WhenBlobsWereRead() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            hotKeyTracker.record("first");
+        }
+        hotKeyTracker.record("second");
+
+        HttpResponse<String> response = get("/v1/admin/hot-keys");
+
+        assertEquals(200, response.statusCode());
+        JsonNode hotKeys = new ObjectMapper().readTree(response.body()).get("hotKeys");
+        assertEquals(2, hotKeys.size());
+        assertEquals("first", hotKeys.get(0).get("id").asText());
+        assertEquals(3, hotKeys.get(0).get("estimate").asLong());
+        assertEquals("second", hotKeys.get(1).get("id").asText());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI("http://localhost:" + serverPort + path))
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,121 @@
+package api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.core.JsonCodec;
+import org.example.exception.InvalidRequestException;
+import org.example.model.Blob;
+import org.example.model.BlobDto;
+import org.example.utils.ParsingUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonCodecTest {
+    private JsonCodec jsonCodec;
+    private byte[] data;
+
+    @BeforeEach
+    void setUp() {
+        jsonCodec = new JsonCodec();
+        // Large enough that the generator and parser go through their buffers several times.
+        data = new byte[100_003];
+        new Random(42).nextBytes(data);
+    }
+
+    @Test
+    public void writeBlob_ShouldRoundTripData_WhenLengthIsKnown() throws IOException {
+        Blob blob = new Blob("test", null, data.length);
+        blob.setHash("abc123");
+        // Dates are written to the second.
+        blob.setCreatedAt(new Timestamp(1_700_000_000_000L));
+
+        Blob read = ParsingUtils.parseJson(new ByteArrayInputStream(writeBlob(blob, data.length)), Blob.class);
+
+        assertEquals("test", read.getId());
+        assertEquals(data.length, read.getSize());
+        assertEquals("abc123", read.getHash());
+        assertEquals(blob.getCreatedAt(), read.getCreatedAt());
+        assertArrayEquals(data, read.getData());
+    }
+
+    @Test
+    public void writeBlob_ShouldRoundTripData_WhenLengthIsUnknown() throws IOException {
+        Blob blob = new Blob("test", null, data.length);
+
+        Blob read = ParsingUtils.parseJson(new ByteArrayInputStream(writeBlob(blob, -1)), Blob.class);
+
+        assertArrayEquals(data, read.getData());
+    }
+
+    @Test
+    public void writeBlob_ShouldWriteSameBase64AsParsingUtils_WhenBlobIsSerialized() throws IOException {
+        Blob blob = new Blob("test", data, data.length);
+        blob.setHash("abc123");
+        ObjectMapper mapper = new ObjectMapper();
+
+        JsonNode streamed = mapper.readTree(writeBlob(blob, data.length));
+        JsonNode mapped = mapper.readTree(ParsingUtils.objectToJson(blob));
+
+        assertEquals(mapped.get("data").asText(), streamed.get("data").asText());
+        assertEquals(mapped.get("createdAt").asText(), streamed.get("createdAt").asText());
+        assertEquals(mapped, streamed);
+    }
+
+    @Test
+    public void readBlobUpload_ShouldDecodeSameBytesAsParsingUtils_WhenBodyIsSerializedDto() throws IOException {
+        byte[] body = ParsingUtils.objectToJson(new BlobDto("test", data)).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+
+        String id = jsonCodec.readBlobUpload(new ByteArrayInputStream(body), decoded);
+        BlobDto parsed = ParsingUtils.parseJson(new ByteArrayInputStream(body), BlobDto.class);
+
+        assertEquals("test", id);
+        assertArrayEquals(parsed.getData(), decoded.toByteArray());
+        assertArrayEquals(data, decoded.toByteArray());
+    }
+
+    @Test
+    public void readBlobUpload_ShouldAcceptUnpaddedBase64_WhenDataLengthIsNotAMultipleOfThree() throws IOException {
+        byte[] body = "{\"data\": \"SGk\", \"id\": \"test\"}".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+
+        String id = jsonCodec.readBlobUpload(new ByteArrayInputStream(body), decoded);
+
+        assertEquals("test", id);
+        assertEquals("Hi", decoded.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void readBlobUpload_ShouldThrowInvalidRequestException_WhenDataIsMissing() {
+        byte[] body = "{\"id\": \"test\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(InvalidRequestException.class,
+                () -> jsonCodec.readBlobUpload(new ByteArrayInputStream(body), new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void readBlobUpload_ShouldThrowInvalidRequestException_WhenDataIsRepeated() {
+        byte[] body = "{\"id\": \"test\", \"data\": \"SGk=\", \"data\": \"SGk=\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(InvalidRequestException.class,
+                () -> jsonCodec.readBlobUpload(new ByteArrayInputStream(body), new ByteArrayOutputStream()));
+    }
+
+    /**
+     * Streams the test data as the data of the blob, the way the controller writes a JSON response.
+     */
+    private byte[] writeBlob(Blob blob, long length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        jsonCodec.writeBlob(out, blob, new ByteArrayInputStream(data), length);
+        return out.toByteArray();
+    }
+}
@@ -6,9 +6,14 @@ import io.undertow.server.RoutingHandler;
 import io.undertow.util.Headers;
 import io.undertow.util.Methods;
 import org.example.controllers.StorageController;
+import org.example.core.DispatchingHandler;
+import org.example.core.RequestExecutor;
 import org.example.exception.BlobNotFoundException;
 import org.example.exception.DuplicateBlobException;
+import org.example.model.BatchGetRequest;
+import org.example.model.BatchItemResult;
 import org.example.model.Blob;
+import org.example.model.BlobContent;
 import org.example.model.BlobDto;
 import org.example.services.StorageService;
 import org.example.utils.FileUtils;
@@ -20,19 +25,29 @@ import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import static org.mockito.ArgumentMatchers.any;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.times;
 
 public class StorageControllerTest {
     private static final Logger log = LoggerFactory.getLogger(StorageControllerTest.class);
     private Undertow server;
+    private RequestExecutor requestExecutor;
     private HttpClient client;
     private StorageService storageServiceMock;
     private StorageController storageController; // Controller under test
@@ -42,14 +57,20 @@ public class StorageControllerTest {
     void setUp() {
         storageServiceMock = Mockito.mock(StorageService.class);
         storageController = new StorageController(storageServiceMock);
+        requestExecutor = new RequestExecutor();
 
         RoutingHandler routingHandler = Handlers.routing()
                 .add(Methods.GET, "/v1/blobs/{id}", storageController.getBlob())
-                .add(Methods.POST, "/v1/blobs", storageController.saveBlob());
+                .add(Methods.GET, "/v1/blobs/{id}/content", storageController.getBlobContent())
+                .add(Methods.HEAD, "/v1/blobs/{id}", storageController.headBlob())
+                .add(Methods.POST, "/v1/blobs", storageController.saveBlob())
+                .add(Methods.POST, "/v1/blobs:batchGet", storageController.batchGetBlobs())
+                .add(Methods.POST, "/v1/blobs:batch", storageController.batchSaveBlobs())
+                .add(Methods.PUT, "/v1/blobs/{id}", storageController.uploadBlob());
 
         server = Undertow.builder()
                 .addHttpListener(0, "localhost")
-                .setHandler(routingHandler)
+                .setHandler(new DispatchingHandler(routingHandler, requestExecutor.getExecutor()))
                 .build();
         server.start();
         serverPort = ((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort();
@@ -59,13 +80,14 @@ public class StorageControllerTest {
     @AfterEach
     void tearDown() {
         server.stop();
+        requestExecutor.shutdown();
     }
 
     @Test
     void testGetBlobEndpoint() throws Exception {
 
         String id = "testId";
-        Blob blob = new Blob(id, "testData");
+        Blob blob = new Blob(id, "testData".getBytes());
         when(storageServiceMock.getBlob(id)).thenReturn(blob);
 
 
@@ -79,7 +101,7 @@ public class StorageControllerTest {
         assertEquals(200, response.statusCode());
         Blob responseBlob = ParsingUtils.parseJson(response.body(), Blob.class);
         assertEquals(id, responseBlob.getId());
-        assertEquals("testData", FileUtils.decodeBase64ToString(responseBlob.getData()));
+        assertEquals("testData", new String(responseBlob.getData()));
     }
 
     @Test
@@ -87,7 +109,7 @@ public class StorageControllerTest {
         // Arrange
         String id = "testId";
         String data = "testData";
-        BlobDto blobDto = new BlobDto(id, data);
+        BlobDto blobDto = new BlobDto(id, data.getBytes());
         doNothing().when(storageServiceMock).saveBlob(any(BlobDto.class));
 
 
@@ -124,7 +146,7 @@ public class StorageControllerTest {
         // Arrange
         String id = "existingId";
         String data = "testData";
-        BlobDto blobDto = new BlobDto(id, data);
+        BlobDto blobDto = new BlobDto(id, data.getBytes());
         doThrow(new DuplicateBlobException("Blob already exists")).when(storageServiceMock).saveBlob(any(BlobDto.class));
 
         // Act
@@ -144,7 +166,7 @@ public class StorageControllerTest {
         // Arrange
         String id = "testId";
         String data = "testData";
-        BlobDto blobDto = new BlobDto(id, data);
+        BlobDto blobDto = new BlobDto(id, data.getBytes());
         doNothing().when(storageServiceMock).saveBlob(any(BlobDto.class));
 
         // Act
@@ -159,4 +181,268 @@ public class StorageControllerTest {
         assertEquals(201, response.statusCode());
         verify(storageServiceMock, times(1)).saveBlob(any(BlobDto.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testUploadBlobEndpoint_StreamsRawBody() throws Exception {
+        // Arrange
+        String id = "rawId";
+        byte[] body = "raw binary payload".getBytes();
+        doNothing().when(storageServiceMock).saveBlob(eq(id), any(InputStream.class), anyLong());
+
+        // Act
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI("http://localhost:" + serverPort + "/v1/blobs/" + id))
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(body))
+                .header(Headers.CONTENT_TYPE.toString(), "application/octet-stream")
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        // Assert
+        assertEquals(201, response.statusCode());
+        verify(storageServiceMock, times(1)).saveBlob(eq(id), any(InputStream.class), eq((long) body.length));
+    }
+
+    @Test
+    void testGetBlobContentEndpoint_StreamsRawBytes() throws Exception {
+        // Arrange
+        String id = "rawId";
+        byte[] data = new byte[]{0, 1, 2, (byte) 0xff, 42};
+        when(storageServiceMock.openBlob(id)).thenReturn(BlobContent.ofStream(id, new ByteArrayInputStream(data), data.length));
+
+        // Act
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI("http://localhost:" + serverPort + "/v1/blobs/" + id + "/content"))
+                .GET()
+                .build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        // Assert
+        assertEquals(200, response.statusCode());
+        assertEquals("application/octet-stream", response.headers().firstValue("Content-Type").orElse(null));
+        assertArrayEquals(data, response.body());
+    }
+
+    @Test
+    void testGetBlobEndpoint_NotModified_WhenETagMatches() throws Exception {
+        // Arrange
+        String id = "cachedId";
+        Blob metadata = new Blob(id, null, 8);
+        metadata.setHash("abc123");
+        when(storageServiceMock.getMetadata(id)).thenReturn(metadata);
+
+        // Act
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI("http://localhost:" + serverPort + "/v1/blobs/" + id))
+                .header("If-None-Match", "W/\"abc123-json\"")
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        // Assert
+        assertEquals(304, response.statusCode());
+        assertEquals("W/\"abc123-json\"", response.headers().firstValue("ETag").orElse(null));
+        verify(storageServiceMock, never()).getBlob(id);
+    }
+
+    @Test
+    void testGetBlobEndpoint_SendsJson_WhenOnlyRawETagMatches() throws Exception {
+        // Arrange
+        String id = "cachedId";
+        Blob blob = new Blob(id, "testData".getBytes());
+        blob.setHash("abc123");
+        when(storageServiceMock.getMetadata(id)).thenReturn(blob);
+        when(storageServiceMock.getBlob(id)).thenReturn(blob);
+
+        // Act
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI("http://localhost:" + serverPort + "/v1/blobs/" + id))
+                .header("If-None-Match", "\"abc123\"")
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        // Assert
+        assertEquals(200, response.statusCode());
+        assertEquals("W/\"abc123-json\"", response.headers().firstValue("ETag").orElse(null));
+    }
+
+    @Test
+    void testBatchGetEndpoint_ReportsEachIdOnItsOwnLine() throws Exception {
+        // Arrange
+        when(storageServiceMock.getBlob("found")).thenReturn(new Blob("found", "testData".getBytes()));
+        doThrow(new BlobNotFoundException("missing")).when(storageServiceMock).getBlob("missing");
+        doCallRealMethod().when(storageServiceMock).getBlobs(any(), any());
+
+        // Act
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI("http://localhost:" + serverPort + "/v1/blobs:batchGet"))
+                .POST(HttpRequest.BodyPublishers.ofString(ParsingUtils.objectToJson(new BatchGetRequest(List.of("found", "missing", "found")))))
+                .header(Headers.CONTENT_TYPE.toString(), "application/json")
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        // Assert
+        assertEquals(200, response.statusCode());
+        Map<String, BatchItemResult> results = new HashMap<>();
+        for (String line : response.body().split("\n")) {
+            BatchItemResult result = ParsingUtils.parseJson(new ByteArrayInputStream(line.getBytes()), BatchItemResult.class);
+            results.put(result.getId(), result);
+        }
+        assertEquals(2, results.size());
+        assertEquals(BatchItemResult.OK, results.get("found").getStatus());
+        assertEquals("testData", new String(results.get("found").getBlob().getData()));
+        assertEquals(BatchItemResult.NOT_FOUND, results.get("missing").getStatus());
+        verify(storageServiceMock, times(1)).getBlob("found");
+    }
+
+    @Test
+    void testBatchSaveEndpoint_DuplicateDoesNotAbortBatch() throws Exception {
+        // Arrange
+        doThrow(new DuplicateBlobException("dup")).when(storageServiceMock).saveBlob(argThat((BlobDto dto) -> dto != null && "dup".equals(dto.getId())));
+        doCallRealMethod().when(storageServiceMock).saveBlobs(any(), any());
+        String body = ParsingUtils.objectToJson(new BlobDto("first", "one".getBytes())) + "\n"
+                + ParsingUtils.objectToJson(new BlobDto("dup", "two".getBytes())) + "\n"
+                + ParsingUtils.objectToJson(new BlobDto("last", "three".getBytes())) + "\n";
+
+        // Act
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI("http://localhost:" + serverPort + "/v1/blobs:batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header(Headers.CONTENT_TYPE.toString(), "application/x-ndjson")
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        // Assert
+        assertEquals(200, response.statusCode());
+        Map<String, BatchItemResult> results = new HashMap<>();
+        for (String line : response.body().split("\n")) {
+            BatchItemResult result = ParsingUtils.parseJson(new ByteArrayInputStream(line.getBytes()), BatchItemResult.class);
+            results.put(result.getId(), result);
+        }
+        assertEquals(BatchItemResult.CREATED, results.get("first").getStatus());
+        assertEquals(BatchItemResult.DUPLICATE, results.get("dup").getStatus());
+        assertEquals(BatchItemResult.CREATED, results.get("last").getStatus());
+        verify(storageServiceMock, times(3)).saveBlob(any(BlobDto.class));
+    }
+
+    @Test
+    void testBatchSaveEndpoint_BackendFailureEndsBatchWithErrorLine() throws Exception {
+        // Arrange
+        doThrow(new RuntimeException("backend down")).when(storageServiceMock).saveBlobs(any(), any());
+        String body = ParsingUtils.objectToJson(new BlobDto("first", "one".getBytes())) + "\n";
+
+        // Act
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI("http://localhost:" + serverPort + "/v1/blobs:batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header(Headers.CONTENT_TYPE.toString(), "application/x-ndjson")
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        // Assert
+        assertEquals(200, response.statusCode());
+        BatchItemResult result = ParsingUtils.parseJson(new ByteArrayInputStream(response.body().trim().getBytes()), BatchItemResult.class);
+        assertNull(result.getId());
+        assertEquals(BatchItemResult.ERROR, result.getStatus());
+        assertTrue(result.getError().contains("backend down"));
+    }
+
+    @Test
+    void testHeadBlobEndpoint_AnswersFromMetadataOnly() throws Exception {
+        // Arrange
+        String id = "headId";
+        Blob metadata = new Blob(id, null, 42);
+        metadata.setHash("abc123");
+        when(storageServiceMock.getMetadata(id)).thenReturn(metadata);
+
+        // Act
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI("http://localhost:" + serverPort + "/v1/blobs/" + id))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+
+        // Assert
+        assertEquals(200, response.statusCode());
+        assertEquals("42", response.headers().firstValue("Content-Length").orElse(null));
+        assertEquals("\"abc123\"", response.headers().firstValue("ETag").orElse(null));
+        verify(storageServiceMock, never()).getBlob(id);
+        verify(storageServiceMock, never()).openBlob(id);
+    }
+
+    @Test
+    void testGetBlobContentEndpoint_SendsStoredGzipBytes_WhenClientAcceptsGzip() throws Exception {
+        // Arrange
+        String id = "gzipId";
+        byte[] compressed = gzip("text that was uploaded with Content-Encoding: gzip");
+        Blob metadata = new Blob(id, null, compressed.length);
+        metadata.setEncoding("gzip");
+        metadata.setHash("abc123");
+        when(storageServiceMock.getMetadata(id)).thenReturn(metadata);
+        when(storageServiceMock.openBlob(id)).thenReturn(BlobContent.ofStream(id, new ByteArrayInputStream(compressed), compressed.length));
+
+        // Act
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI("http://localhost:" + serverPort + "/v1/blobs/" + id + "/content"))
+                .header("Accept-Encoding", "gzip, deflate")
+                .GET()
+                .build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+        // Assert
+        assertEquals(200, response.statusCode());
+        assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+        assertEquals("\"abc123-gzip\"", response.headers().firstValue("ETag").orElse(null));
+        assertArrayEquals(compressed, response.body());
+    }
+
+    @Test
+    void testGetBlobContentEndpoint_DecompressesStoredGzip_WhenClientDoesNotAcceptIt() throws Exception {
+        // Arrange
+        String id = "gzipId";
+        String original = "text that was uploaded with Content-Encoding: gzip";
+        byte[] compressed = gzip(original);
+        Blob metadata = new Blob(id, null, compressed.length);
+        metadata.setEncoding("gzip");
+        when(storageServiceMock.getMetadata(id)).thenReturn(metadata);
+        when(storageServiceMock.openBlob(id)).thenReturn(BlobContent.ofStream(id, new ByteArrayInputStream(compressed), compressed.length));
+
+        // Act
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI("http://localhost:" + serverPort + "/v1/blobs/" + id + "/content"))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        // Assert
+        assertEquals(200, response.statusCode());
+        assertEquals(null, response.headers().firstValue("Content-Encoding").orElse(null));
+        assertEquals(original, response.body());
+    }
+
+    private static byte[] gzip(String data) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data.getBytes());
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void testSaveBlobEndpoint_DecodesDataWhileParsing_InAnyFieldOrder() throws Exception {
+        // Arrange
+        String body = "{\"data\":\"" + FileUtils.encodeStringToBase64("testData") + "\",\"id\":\"streamedId\"}";
+
+        // Act
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI("http://localhost:" + serverPort + "/v1/blobs"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header(Headers.CONTENT_TYPE.toString(), "application/json")
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        // Assert
+        assertEquals(201, response.statusCode());
+        verify(storageServiceMock).saveBlob(argThat((BlobDto dto) -> "streamedId".equals(dto.getId()) && "testData".equals(new String(dto.getData()))));
+    }
+}
@@ -0,0 +1,167 @@
+package benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures the ways the local backend could read a blob across a range of blob sizes, and prints the fastest one per size.
+ * "read" loads the whole blob into a byte[], as Blob.getData needs it: Files.readAllBytes, a memory-mapped file copied
+ * into the heap, or an AsynchronousFileChannel read the caller waits for. "send" writes the blob to a loopback socket,
+ * as a download does: FileChannel.transferTo (sendfile), a memory-mapped buffer, or the bytes read into the heap first.
+ * Files are measured in the page cache, as hot blobs are.
+ * Not a unit test: run it with {@code java -cp target/classes:target/test-classes benchmark.LocalFileIoBenchmark [sizes...]},
+ * passing the blob sizes of the workload in bytes to override the default sizes.
+ */
+public class LocalFileIoBenchmark {
+    private static final List<String> READS = List.of("readAllBytes", "mmap", "async");
+    private static final List<String> SENDS = List.of("sendfile", "mmap", "heap");
+    private static final long BYTES_PER_RUN = 256L * 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        long[] sizes = args.length > 0 ? Arrays.stream(args).mapToLong(Long::parseLong).toArray()
+                : new long[]{1024, 16 * 1024, 64 * 1024, 256 * 1024, 1024 * 1024, 4 * 1024 * 1024, 16 * 1024 * 1024, 64 * 1024 * 1024};
+        Path directory = Files.createTempDirectory("local-io-benchmark");
+        try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0));
+             SocketChannel socket = SocketChannel.open(server.getLocalAddress());
+             SocketChannel peer = server.accept()) {
+            Thread drain = Thread.ofPlatform().daemon().start(() -> drain(peer));
+            System.out.printf("%12s %6s %14s %12s%n", "size", "op", "strategy", "us/op");
+            for (long size : sizes) {
+                byte[] data = new byte[Math.toIntExact(size)];
+                ThreadLocalRandom.current().nextBytes(data);
+                Path file = directory.resolve("blob-" + size);
+                Files.write(file, data);
+                int iterations = (int) Math.max(20, Math.min(20_000, BYTES_PER_RUN / size));
+                report(size, "read", READS, measure(iterations, READS, strategy -> read(file, strategy)));
+                report(size, "send", SENDS, measure(iterations, SENDS, strategy -> send(file, strategy, socket)));
+                Files.delete(file);
+            }
+            drain.interrupt();
+        } finally {
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static byte[] read(Path file, String strategy) throws IOException {
+        switch (strategy) {
+            case "readAllBytes":
+                return Files.readAllBytes(file);
+            case "mmap":
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    byte[] data = new byte[mapped.remaining()];
+                    mapped.get(data);
+                    return data;
+                }
+            case "async":
+                try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ)) {
+                    ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, buffer.position()).get() < 0) {
+                            break;
+                        }
+                    }
+                    return buffer.array();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IOException(e);
+                }
+            default:
+                throw new IllegalArgumentException(strategy);
+        }
+    }
+
+    private static void send(Path file, String strategy, SocketChannel socket) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            switch (strategy) {
+                case "sendfile":
+                    for (long sent = 0; sent < size; ) {
+                        sent += channel.transferTo(sent, size - sent, socket);
+                    }
+                    break;
+                case "mmap":
+                    writeFully(socket, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+                    break;
+                case "heap":
+                    writeFully(socket, ByteBuffer.wrap(Files.readAllBytes(file)));
+                    break;
+                default:
+                    throw new IllegalArgumentException(strategy);
+            }
+        }
+    }
+
+    private static void writeFully(SocketChannel socket, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            socket.write(buffer);
+        }
+    }
+
+    /**
+     * Reads and discards everything sent to the socket, as a fast client would.
+     */
+    private static void drain(SocketChannel peer) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        try {
+            while (peer.read(buffer) >= 0) {
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            // The benchmark is over.
+        }
+    }
+
+    /**
+     * Runs every strategy for a warm-up round and then the measured rounds, interleaved so drift affects all alike.
+     *
+     * @return The median time per operation of each strategy, in nanoseconds.
+     */
+    private static long[] measure(int iterations, List<String> strategies, Operation operation) throws IOException {
+        long[][] samples = new long[strategies.size()][5];
+        for (int round = -1; round < 5; round++) {
+            for (int s = 0; s < strategies.size(); s++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    operation.run(strategies.get(s));
+                }
+                if (round >= 0) {
+                    samples[s][round] = (System.nanoTime() - start) / iterations;
+                }
+            }
+        }
+        long[] medians = new long[strategies.size()];
+        for (int s = 0; s < strategies.size(); s++) {
+            Arrays.sort(samples[s]);
+            medians[s] = samples[s][2];
+        }
+        return medians;
+    }
+
+    private static void report(long size, String op, List<String> strategies, long[] nanos) {
+        int fastest = 0;
+        for (int s = 0; s < nanos.length; s++) {
+            if (nanos[s] < nanos[fastest]) {
+                fastest = s;
+            }
+            System.out.printf("%12d %6s %14s %12.1f%n", size, op, strategies.get(s), nanos[s] / 1000.0);
+        }
+        System.out.printf("%12d %6s %14s%n", size, op, "-> " + strategies.get(fastest));
+    }
+
+    private interface Operation {
+        void run(String strategy) throws IOException;
+    }
+}
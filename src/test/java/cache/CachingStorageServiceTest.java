@@ -0,0 +1,171 @@
+package cache;
+
+import org.example.core.BlobCache;
+import org.example.core.OffHeapBlobCache;
+import org.example.core.SingleFlight;
+import org.example.model.Blob;
+import org.example.model.BlobContent;
+import org.example.model.BlobRange;
+import org.example.services.CachingStorageService;
+import org.example.services.StorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CachingStorageServiceTest {
+    private StorageService backend;
+    private BlobCache blobCache;
+    private CachingStorageService cachingStorageService;
+
+    @BeforeEach
+    public void setup() {
+        backend = Mockito.mock(StorageService.class);
+        blobCache = new BlobCache(1024, 64);
+        cachingStorageService = new CachingStorageService(backend, blobCache);
+    }
+
+    private static Blob blob(String id, int size) {
+        return new Blob(id, new byte[size], size);
+    }
+
+    @Test
+    public void getBlob_ShouldReadBackendOnce_WhenBlobIsReadTwice() {
+        when(backend.getBlob("hot")).thenReturn(blob("hot", 10));
+
+        cachingStorageService.getBlob("hot");
+        Blob second = cachingStorageService.getBlob("hot");
+
+        assertEquals(10, second.getData().length);
+        verify(backend, times(1)).getBlob("hot");
+        assertEquals(1, blobCache.getHits());
+        assertEquals(1, blobCache.getMisses());
+    }
+
+    @Test
+    public void getBlob_ShouldNotCache_WhenBlobExceedsEntryCap() {
+        when(backend.getBlob("huge")).thenReturn(blob("huge", 100));
+
+        cachingStorageService.getBlob("huge");
+        cachingStorageService.getBlob("huge");
+
+        verify(backend, times(2)).getBlob("huge");
+        assertEquals(0, blobCache.getEntries());
+    }
+
+    @Test
+    public void getBlob_ShouldKeepProtectedBlob_WhenOneHitBlobsScanThroughCache() {
+        when(backend.getBlob("hot")).thenReturn(blob("hot", 64));
+        cachingStorageService.getBlob("hot");
+        cachingStorageService.getBlob("hot");
+        for (int i = 0; i < 20; i++) {
+            String id = "scan" + i;
+            when(backend.getBlob(id)).thenReturn(blob(id, 64));
+            cachingStorageService.getBlob(id);
+        }
+
+        cachingStorageService.getBlob("hot");
+
+        verify(backend, times(1)).getBlob("hot");
+        assertTrue(blobCache.getEvictions() > 0);
+        assertTrue(blobCache.getBytes() <= blobCache.getMaxBytes());
+    }
+
+    @Test
+    public void openBlob_ShouldServeFromMemory_WhenBlobWasStreamedBefore() throws IOException {
+        byte[] data = "cached".getBytes();
+        when(backend.openBlob("id")).thenReturn(BlobContent.ofStream("id", new ByteArrayInputStream(data), data.length));
+        when(backend.getMetadata("id")).thenReturn(new Blob("id", null, data.length));
+
+        try (BlobContent first = cachingStorageService.openBlob("id")) {
+            assertArrayEquals(data, first.openStream().readAllBytes());
+        }
+        try (BlobContent second = cachingStorageService.openBlob("id")) {
+            assertArrayEquals(data, second.openStream().readAllBytes());
+        }
+
+        verify(backend, times(1)).openBlob("id");
+    }
+
+    @Test
+    public void openBlob_ShouldServeFromOffHeapBuffer_WhenBlobIsTooLargeForHeapCache() throws IOException {
+        byte[] data = new byte[200];
+        data[199] = 7;
+        OffHeapBlobCache offHeapCache = new OffHeapBlobCache(4096, 1024, 1024);
+        CachingStorageService service = new CachingStorageService(backend, blobCache, offHeapCache);
+        when(backend.openBlob("large")).thenReturn(BlobContent.ofStream("large", new ByteArrayInputStream(data), data.length));
+        when(backend.getMetadata("large")).thenReturn(new Blob("large", null, data.length));
+
+        try (BlobContent first = service.openBlob("large")) {
+            assertTrue(first.hasBuffer());
+            assertArrayEquals(data, first.openStream().readAllBytes());
+        }
+        try (BlobContent second = service.openBlob("large", BlobRange.of(-1, 1))) {
+            assertTrue(second.hasBuffer());
+            assertEquals(7, second.getBuffer().get());
+        }
+
+        verify(backend, times(1)).openBlob("large");
+        assertEquals(1, offHeapCache.getHits());
+    }
+
+    @Test
+    public void getBlob_ShouldReadBackendOnce_WhenBlobIsReadConcurrently() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        CachingStorageService service = new CachingStorageService(backend, blobCache, new OffHeapBlobCache(0, 0, 0), singleFlight);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(backend.getBlob("popular")).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return blob("popular", 10);
+        });
+
+        CompletableFuture<Blob> first = CompletableFuture.supplyAsync(() -> service.getBlob("popular"));
+        entered.await();
+        CompletableFuture<Blob> second = CompletableFuture.supplyAsync(() -> service.getBlob("popular"));
+        while (singleFlight.getCoalesced() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertEquals(10, first.get().getData().length);
+        assertEquals(10, second.get().getData().length);
+        verify(backend, times(1)).getBlob("popular");
+        assertEquals(1, singleFlight.getFlights());
+    }
+
+    @Test
+    public void openBlob_ShouldOpenOwnContent_WhenWaitingForUncacheableDownload() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        CachingStorageService service = new CachingStorageService(backend, blobCache, new OffHeapBlobCache(0, 0, 0), singleFlight);
+        BlobContent leaderContent = BlobContent.ofStream("large", new ByteArrayInputStream(new byte[100]), 100);
+        BlobContent waiterContent = BlobContent.ofStream("large", new ByteArrayInputStream(new byte[100]), 100);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(backend.openBlob("large")).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return leaderContent;
+        }).thenReturn(waiterContent);
+
+        CompletableFuture<BlobContent> first = CompletableFuture.supplyAsync(() -> service.openBlob("large"));
+        entered.await();
+        CompletableFuture<BlobContent> second = CompletableFuture.supplyAsync(() -> service.openBlob("large"));
+        while (singleFlight.getCoalesced() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertSame(leaderContent, first.get());
+        assertSame(waiterContent, second.get());
+        verify(backend, times(2)).openBlob("large");
+    }
+}
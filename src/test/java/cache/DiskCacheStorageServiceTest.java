@@ -0,0 +1,105 @@
+package cache;
+
+import org.example.core.DiskBlobCache;
+import org.example.core.SingleFlight;
+import org.example.model.Blob;
+import org.example.model.BlobContent;
+import org.example.model.BlobDto;
+import org.example.services.DiskCacheStorageService;
+import org.example.services.StorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class DiskCacheStorageServiceTest {
+    private StorageService backend;
+    private Path directory;
+    private DiskBlobCache diskCache;
+    private DiskCacheStorageService diskCacheStorageService;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        backend = Mockito.mock(StorageService.class);
+        directory = Files.createTempDirectory("disk-cache-test");
+        diskCache = new DiskBlobCache(directory, 1024, 1024);
+        diskCacheStorageService = new DiskCacheStorageService(backend, diskCache, new SingleFlight());
+    }
+
+    @Test
+    public void openBlob_ShouldServeFromDisk_WhenBlobWasDownloadedBefore() throws IOException {
+        byte[] data = "remote".getBytes();
+        when(backend.getMetadata("id")).thenReturn(new Blob("id", null, data.length));
+        when(backend.openBlob("id")).thenReturn(BlobContent.ofStream("id", new ByteArrayInputStream(data), data.length));
+
+        try (BlobContent first = diskCacheStorageService.openBlob("id")) {
+            assertTrue(first.hasChannel());
+            assertArrayEquals(data, first.openStream().readAllBytes());
+        }
+        try (BlobContent second = diskCacheStorageService.openBlob("id")) {
+            assertArrayEquals(data, second.openStream().readAllBytes());
+        }
+
+        verify(backend, times(1)).openBlob("id");
+        assertEquals(1, diskCache.getHits());
+    }
+
+    @Test
+    public void saveBlob_ShouldWriteThrough_WhenBlobIsStreamed() throws IOException {
+        byte[] data = "uploaded".getBytes();
+        doAnswer(invocation -> invocation.getArgument(1, InputStream.class).readAllBytes())
+                .when(backend).saveBlob(eq("id"), any(), anyLong(), any());
+
+        diskCacheStorageService.saveBlob("id", new ByteArrayInputStream(data), data.length, null);
+
+        try (BlobContent content = diskCacheStorageService.openBlob("id")) {
+            assertArrayEquals(data, content.openStream().readAllBytes());
+        }
+        verify(backend, never()).openBlob(anyString());
+    }
+
+    @Test
+    public void constructor_ShouldIndexExistingFiles_WhenRestarted() {
+        diskCacheStorageService.saveBlob(new BlobDto("kept", "kept".getBytes()));
+
+        DiskBlobCache restarted = new DiskBlobCache(directory, 1024, 1024);
+
+        assertTrue(restarted.contains("kept"));
+        assertEquals(4, restarted.getBytes());
+    }
+
+    @Test
+    public void saveBlob_ShouldEvictUnreadBlobs_WhenBudgetIsExceeded() {
+        diskCacheStorageService.saveBlob(new BlobDto("hot", new byte[400]));
+        diskCacheStorageService.saveBlob(new BlobDto("cold", new byte[400]));
+        diskCache.touch("hot");
+
+        diskCacheStorageService.saveBlob(new BlobDto("new", new byte[400]));
+
+        assertTrue(diskCache.contains("hot"));
+        assertFalse(diskCache.contains("cold"));
+        assertEquals(1, diskCache.getEvictions());
+    }
+
+    @Test
+    public void saveBlob_ShouldKeepFilesInsideCacheDirectory_WhenIdContainsPathSeparators() throws IOException {
+        diskCacheStorageService.saveBlob(new BlobDto("../escaped", "x".getBytes()));
+        diskCacheStorageService.saveBlob(new BlobDto("nested/id", "y".getBytes()));
+
+        assertTrue(diskCache.contains("../escaped"));
+        assertTrue(diskCache.contains("nested/id"));
+        assertFalse(Files.exists(directory.resolveSibling("escaped")));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.filter(Files::isRegularFile).count());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package cache;
+
+import org.example.core.CacheWarmer;
+import org.example.core.HotKeyTracker;
+import org.example.model.Blob;
+import org.example.model.BlobContent;
+import org.example.services.StorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class HotKeyTrackerTest {
+    private Path file;
+    private HotKeyTracker hotKeyTracker;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        file = Files.createTempDirectory("hot-keys-test").resolve("hot-keys.txt");
+        hotKeyTracker = new HotKeyTracker(2, 1024, file, 0);
+    }
+
+    @Test
+    public void getHotKeys_ShouldReturnMostReadIds_WhenManyIdsAreRead() {
+        for (int i = 0; i < 50; i++) {
+            hotKeyTracker.record("hot");
+            hotKeyTracker.record("warm" + (i % 2 == 0 ? "" : "er"));
+            hotKeyTracker.record("cold" + i);
+        }
+
+        List<HotKeyTracker.HotKey> hotKeys = hotKeyTracker.getHotKeys();
+
+        assertEquals(2, hotKeys.size());
+        assertEquals("hot", hotKeys.get(0).getId());
+        assertTrue(hotKeys.get(1).getId().startsWith("warm"));
+    }
+
+    @Test
+    public void loadPersisted_ShouldReturnHottestFirst_WhenHotKeysWerePersisted() {
+        for (int i = 0; i < 3; i++) {
+            hotKeyTracker.record("first");
+        }
+        hotKeyTracker.record("second");
+
+        hotKeyTracker.persist();
+        HotKeyTracker restarted = new HotKeyTracker(2, 1024, file, 0);
+
+        assertEquals(List.of("first", "second"), restarted.loadPersisted());
+    }
+
+    @Test
+    public void warm_ShouldSkipBlobs_WhenNoCacheTakesTheirSize() throws IOException {
+        hotKeyTracker.record("small");
+        hotKeyTracker.record("huge");
+        hotKeyTracker.persist();
+        StorageService storageService = mock(StorageService.class);
+        when(storageService.getMetadata("small")).thenReturn(new Blob("small", null, 10));
+        when(storageService.getMetadata("huge")).thenReturn(new Blob("huge", null, 1_000_000));
+        when(storageService.isCacheable(10)).thenReturn(true);
+        when(storageService.openBlob("small")).thenReturn(BlobContent.ofStream("small", new ByteArrayInputStream(new byte[10]), 10));
+
+        int warmed = new CacheWarmer(storageService, new HotKeyTracker(2, 1024, file, 0)).warm();
+
+        assertEquals(1, warmed);
+        verify(storageService, never()).openBlob("huge");
+    }
+}
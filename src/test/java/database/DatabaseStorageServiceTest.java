@@ -4,12 +4,19 @@ import com.mongodb.client.FindIterable;
 import org.bson.Document;
 import org.example.database.MongoDBClient;
 import org.example.exception.BlobNotFoundException;
+import org.example.model.BatchItemResult;
+import org.example.model.Blob;
 import org.example.model.BlobDto;
 import org.example.services.DatabaseStorageService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
@@ -33,7 +40,7 @@ public class DatabaseStorageServiceTest {
 
     @Test
     public void saveBlob_ShouldCallInsertDocument_WhenBlobIsProvided() {
-        BlobDto blobDto = new BlobDto("id", "data");
+        BlobDto blobDto = new BlobDto("id", "data".getBytes());
 
         databaseStorageService.saveBlob(blobDto);
 
@@ -51,11 +58,15 @@ public class DatabaseStorageServiceTest {
         FindIterable findIterable = mock(FindIterable.class);
         when(findIterable.first()).thenReturn(document);
         when(mongoDBClient.findDocument(anyString(), any(Document.class))).thenReturn(findIterable);
+        Blob metadata = new Blob(id, null);
+        metadata.setSize(size);
+        metadata.setCreatedAt(new Timestamp(timestamp.getTime()));
+        when(mongoDBClient.findMetadata(id)).thenReturn(metadata);
 
         var blob = databaseStorageService.getBlob(id);
 
         assertEquals(id, blob.getId());
-        assertEquals(data, blob.getData());
+        assertEquals(data, new String(blob.getData()));
         assertEquals(size, blob.getSize());
         assertEquals(timestamp.getTime(), blob.getCreatedAt().getTime());
     }
@@ -67,4 +78,17 @@ public class DatabaseStorageServiceTest {
 
         assertThrows(BlobNotFoundException.class, () -> databaseStorageService.getBlob(id));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void saveBlobs_ShouldReportFailedAndRemoveBlobs_WhenMetadataInsertFails() {
+        when(mongoDBClient.insertDocuments(eq("blobs"), anyList())).thenReturn(Map.of());
+        when(mongoDBClient.insertAllMetadata(anyList())).thenThrow(new RuntimeException("metadata unavailable"));
+        List<BatchItemResult> results = new ArrayList<>();
+
+        databaseStorageService.saveBlobs(List.of(new BlobDto("a", "one".getBytes()), new BlobDto("b", "two".getBytes())), results::add);
+
+        assertEquals(2, results.size());
+        results.forEach(result -> assertEquals(BatchItemResult.ERROR, result.getStatus()));
+        verify(mongoDBClient).deleteDocuments("blobs", Set.of("a", "b"));
+    }
+}
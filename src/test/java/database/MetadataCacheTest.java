@@ -0,0 +1,75 @@
+package database;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.example.database.MongoDBClient;
+import org.example.model.Blob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class MetadataCacheTest {
+    private MongoCollection<Document> collection;
+    private FindIterable<Document> findIterable;
+    private MongoDBClient mongoDBClient;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        MongoClient mongoClient = Mockito.mock(MongoClient.class);
+        MongoDatabase database = Mockito.mock(MongoDatabase.class);
+        collection = Mockito.mock(MongoCollection.class);
+        findIterable = Mockito.mock(FindIterable.class);
+        when(mongoClient.getDatabase(anyString())).thenReturn(database);
+        when(database.getCollection(anyString())).thenReturn(collection);
+        when(collection.find(any(Document.class))).thenReturn(findIterable);
+        mongoDBClient = new MongoDBClient(mongoClient);
+    }
+
+    @Test
+    public void findMetadata_ShouldQueryOnce_WhenMetadataIsReadTwice() {
+        when(findIterable.first()).thenReturn(new Document("id", "hot").append("size", 10).append("timestamp", new Date()));
+
+        mongoDBClient.findMetadata("hot");
+        Blob second = mongoDBClient.findMetadata("hot");
+
+        assertEquals(10, second.getSize());
+        verify(collection, times(1)).find(any(Document.class));
+        assertEquals(1, mongoDBClient.getMetadataCache().getHits());
+    }
+
+    @Test
+    public void findMetadata_ShouldQueryOnce_WhenMissingIdIsReadTwice() {
+        when(findIterable.first()).thenReturn(null);
+
+        assertNull(mongoDBClient.findMetadata("missing"));
+        assertNull(mongoDBClient.findMetadata("missing"));
+
+        verify(collection, times(1)).find(any(Document.class));
+        assertEquals(1, mongoDBClient.getMetadataCache().getNegativeHits());
+    }
+
+    @Test
+    public void insertMetadata_ShouldReplaceMissingEntry_WhenBlobIsWritten() {
+        when(findIterable.first()).thenReturn(null);
+        assertNull(mongoDBClient.findMetadata("new"));
+
+        Blob blob = new Blob("new", null, 5);
+        blob.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+        mongoDBClient.insertMetadata(blob);
+        Blob metadata = mongoDBClient.findMetadata("new");
+
+        assertNotNull(metadata);
+        assertEquals(5, metadata.getSize());
+        verify(collection, times(1)).find(any(Document.class));
+    }
+}
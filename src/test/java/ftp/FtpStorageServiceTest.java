@@ -70,7 +70,7 @@ public class FtpStorageServiceTest {
 
     @Test
     public void saveBlob_ShouldStoreBlobOnServer_WhenBlobIsProvided() throws IOException {
-        BlobDto blobDto = new BlobDto("test", "Hello, Waleed:))!");
+        BlobDto blobDto = new BlobDto("test", "Hello, Waleed:))!".getBytes());
         ftpStorageService.saveBlob(blobDto);
 
         FTPClient ftpClient = new FTPClient();
@@ -86,7 +86,7 @@ public class FtpStorageServiceTest {
 
     @Test
     public void saveBlob_ShouldStoreEmptyFileOnServer_WhenBlobDataIsEmpty() throws IOException {
-        BlobDto blobDto = new BlobDto("test", "");
+        BlobDto blobDto = new BlobDto("test", "".getBytes());
         ftpStorageService.saveBlob(blobDto);
 
         FTPClient ftpClient = new FTPClient();
@@ -102,12 +102,12 @@ public class FtpStorageServiceTest {
 
     @Test
     public void getBlob_ShouldReturnBlobWithCorrectData_WhenFileExists() throws IOException {
-        BlobDto blobDto = new BlobDto("test", "Hello, Waleed:))!");
+        BlobDto blobDto = new BlobDto("test", "Hello, Waleed:))!".getBytes());
         ftpStorageService.saveBlob(blobDto);
 
         Blob retrievedBlob = ftpStorageService.getBlob("test");
         assertEquals("test", retrievedBlob.getId());
-        assertEquals("Hello, Waleed:))!", retrievedBlob.getData());
+        assertEquals("Hello, Waleed:))!", new String(retrievedBlob.getData()));
     }
 
     @Test
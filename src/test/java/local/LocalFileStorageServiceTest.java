@@ -5,21 +5,29 @@ import org.bson.Document;
 import org.example.database.MongoDBClient;
 import org.example.exception.FileAlreadyExistsException;
 import org.example.exception.BlobNotFoundException;
+import org.example.exception.InvalidRequestException;
+import org.example.exception.RangeNotSatisfiableException;
 import org.example.model.Blob;
+import org.example.model.BlobContent;
+import org.example.model.BlobRange;
 import org.example.model.BlobDto;
 import org.example.services.LocalFileStorageService;
+import org.example.utils.FileUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -42,16 +50,39 @@ public class LocalFileStorageServiceTest {
 
     @Test
     public void saveBlob_ShouldStoreBlobInLocalStorage_WhenBlobIsProvided() {
-        BlobDto blobDto = new BlobDto("test", "Hello, Waleed:))!");
+        BlobDto blobDto = new BlobDto("test", "Hello, Waleed:))!".getBytes());
         localFileStorageService.saveBlob(blobDto);
 
         Path filePath = Path.of(System.getProperty("LOCAL_STORAGE_PATH"), blobDto.getId());
         assertTrue(Files.exists(filePath));
     }
 
+    @Test
+    public void saveBlob_ShouldStoreSameHash_WhenBlobIsStreamed() {
+        byte[] data = "Hello, Waleed:))!".getBytes();
+        localFileStorageService.saveBlob(new BlobDto("test", data));
+        localFileStorageService.saveBlob("streamed", new ByteArrayInputStream(data), -1);
+
+        ArgumentCaptor<Blob> captor = ArgumentCaptor.forClass(Blob.class);
+        verify(mongoDBClient, times(2)).insertMetadata(captor.capture());
+        Blob saved = captor.getAllValues().get(0);
+        Blob streamed = captor.getAllValues().get(1);
+        assertEquals(FileUtils.hashBytes(data), saved.getHash());
+        assertEquals(saved.getHash(), streamed.getHash());
+        assertEquals(data.length, streamed.getSize());
+    }
+
+    @Test
+    public void saveBlob_ShouldThrowInvalidRequestException_WhenIdIsNotAFileName() {
+        assertThrows(InvalidRequestException.class, () -> localFileStorageService.saveBlob(new BlobDto(".tmp", new byte[1])));
+        assertThrows(InvalidRequestException.class, () -> localFileStorageService.saveBlob(new BlobDto("../escaped", new byte[1])));
+        assertThrows(BlobNotFoundException.class, () -> localFileStorageService.getBlob(".tmp"));
+        assertTrue(Files.isDirectory(Path.of(System.getProperty("LOCAL_STORAGE_PATH"), ".tmp")));
+    }
+
     @Test
     public void saveBlob_ShouldThrowFileAlreadyExistsException_WhenBlobAlreadyExists() {
-        BlobDto blobDto = new BlobDto("test", "Hello, Waleed:))!");
+        BlobDto blobDto = new BlobDto("test", "Hello, Waleed:))!".getBytes());
         localFileStorageService.saveBlob(blobDto);
 
         assertThrows(FileAlreadyExistsException.class, () -> localFileStorageService.saveBlob(blobDto));
@@ -59,11 +90,11 @@ public class LocalFileStorageServiceTest {
 
     @Test
     public void getBlob_ShouldReturnBlobWithCorrectData_WhenFileExists() {
-        BlobDto blobDto = new BlobDto("test", "Hello, Waleed:))!");
+        BlobDto blobDto = new BlobDto("test", "Hello, Waleed:))!".getBytes());
         localFileStorageService.saveBlob(blobDto);
 
         Document mockDocument = new Document("id", "test")
-                .append("size", blobDto.getData().length())
+                .append("size", blobDto.getData().length)
                 .append("timestamp", new Date());
         FindIterable<Document> mockFindIterable = Mockito.mock(FindIterable.class);
         when(mockFindIterable.first()).thenReturn(mockDocument);
@@ -71,7 +102,20 @@ public class LocalFileStorageServiceTest {
 
         Blob retrievedBlob = localFileStorageService.getBlob("test");
         assertEquals("test", retrievedBlob.getId());
-        assertEquals("Hello, Waleed:))!", retrievedBlob.getData());
+        assertEquals("Hello, Waleed:))!", new String(retrievedBlob.getData()));
+    }
+
+    @Test
+    public void getBlob_ShouldNotReadFile_UntilDataIsAccessed() {
+        BlobDto blobDto = new BlobDto("test", "Hello, Waleed:))!".getBytes());
+        localFileStorageService.saveBlob(blobDto);
+        FindIterable<Document> mockFindIterable = Mockito.mock(FindIterable.class);
+        when(mongoDBClient.findDocument(anyString(), any(Document.class))).thenReturn(mockFindIterable);
+
+        Blob retrievedBlob = localFileStorageService.getBlob("test");
+        assertFalse(retrievedBlob.isDataLoaded());
+        assertEquals("Hello, Waleed:))!", new String(retrievedBlob.getData()));
+        assertTrue(retrievedBlob.isDataLoaded());
     }
 
     @Test
@@ -79,6 +123,107 @@ public class LocalFileStorageServiceTest {
         assertThrows(BlobNotFoundException.class, () -> localFileStorageService.getBlob("nonexistent"));
     }
 
+    @Test
+    public void openBlob_ShouldExposeFileChannel_WhenFileExists() throws IOException {
+        BlobDto blobDto = new BlobDto("test", "Hello, Waleed:))!".getBytes());
+        localFileStorageService.saveBlob(blobDto);
+
+        try (BlobContent content = localFileStorageService.openBlob("test")) {
+            assertTrue(content.hasChannel());
+            assertEquals(blobDto.getData().length, content.getSize());
+        }
+    }
+
+    @Test
+    public void openBlob_ShouldThrowBlobNotFoundException_WhenFileDoesNotExist() {
+        assertThrows(BlobNotFoundException.class, () -> localFileStorageService.openBlob("nonexistent"));
+    }
+
+    @Test
+    public void openBlob_ShouldResolveRangeAgainstFileSize_WhenRangeIsRequested() throws IOException {
+        BlobDto blobDto = new BlobDto("test", "Hello, Waleed:))!".getBytes());
+        localFileStorageService.saveBlob(blobDto);
+
+        try (BlobContent content = localFileStorageService.openBlob("test", BlobRange.of(-1, 4))) {
+            assertTrue(content.isPartial());
+            assertEquals(blobDto.getData().length - 4, content.getOffset());
+            assertEquals(4, content.getLength());
+        }
+    }
+
+    @Test
+    public void openBlob_ShouldThrowRangeNotSatisfiableException_WhenRangeStartsAfterEnd() {
+        BlobDto blobDto = new BlobDto("test", "Hello, Waleed:))!".getBytes());
+        localFileStorageService.saveBlob(blobDto);
+
+        assertThrows(RangeNotSatisfiableException.class, () -> localFileStorageService.openBlob("test", BlobRange.of(1000, -1)));
+    }
+
+    @Test
+    public void migrate_ShouldMoveFlatFilesIntoShards_WhenShardingIsEnabled() throws IOException {
+        localFileStorageService.saveBlob(new BlobDto("flat", "Hello, Waleed:))!".getBytes()));
+        Path flatPath = Path.of(System.getProperty("LOCAL_STORAGE_PATH"), "flat");
+        String hash = FileUtils.hash("flat");
+        Path shardedPath = Path.of(System.getProperty("LOCAL_STORAGE_PATH"), hash.substring(0, 2), hash.substring(2, 4), "flat");
+
+        System.setProperty("LOCAL_STORAGE_SHARD_LEVELS", "2");
+        try {
+            LocalFileStorageService sharded = new LocalFileStorageService(mongoDBClient);
+            sharded.migrate();
+
+            assertFalse(Files.exists(flatPath));
+            assertTrue(Files.exists(shardedPath));
+            assertEquals("Hello, Waleed:))!", new String(sharded.getBlob("flat").getData()));
+            assertThrows(FileAlreadyExistsException.class, () -> sharded.saveBlob(new BlobDto("flat", new byte[1])));
+        } finally {
+            System.clearProperty("LOCAL_STORAGE_SHARD_LEVELS");
+        }
+    }
+
+    @Test
+    public void constructor_ShouldFail_WhenShardsNeedMoreDigitsThanTheHashHas() {
+        System.setProperty("LOCAL_STORAGE_SHARD_LEVELS", "17");
+        System.setProperty("LOCAL_STORAGE_SHARD_WIDTH", "4");
+        try {
+            assertThrows(IllegalArgumentException.class, () -> new LocalFileStorageService(mongoDBClient));
+        } finally {
+            System.clearProperty("LOCAL_STORAGE_SHARD_LEVELS");
+            System.clearProperty("LOCAL_STORAGE_SHARD_WIDTH");
+        }
+    }
+
+    @Test
+    public void saveBlob_ShouldAcceptOneWriter_WhenSameIdIsSavedConcurrently() throws InterruptedException {
+        System.setProperty("LOCAL_STORAGE_DURABILITY", "group");
+        try {
+            LocalFileStorageService durable = new LocalFileStorageService(mongoDBClient);
+            AtomicInteger saved = new AtomicInteger();
+            AtomicInteger rejected = new AtomicInteger();
+            Thread[] writers = new Thread[8];
+            for (int i = 0; i < writers.length; i++) {
+                byte[] data = ("writer " + i).getBytes();
+                writers[i] = new Thread(() -> {
+                    try {
+                        durable.saveBlob(new BlobDto("contended", data));
+                        saved.incrementAndGet();
+                    } catch (FileAlreadyExistsException e) {
+                        rejected.incrementAndGet();
+                    }
+                });
+                writers[i].start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+
+            assertEquals(1, saved.get());
+            assertEquals(writers.length - 1, rejected.get());
+            assertTrue(new String(durable.getBlob("contended").getData()).startsWith("writer "));
+        } finally {
+            System.clearProperty("LOCAL_STORAGE_DURABILITY");
+        }
+    }
+
     @AfterEach
     void tearDown() {
         try {
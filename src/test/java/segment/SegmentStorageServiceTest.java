@@ -0,0 +1,127 @@
+package segment;
+
+import org.example.core.SegmentLog;
+import org.example.database.MongoDBClient;
+import org.example.exception.BlobNotFoundException;
+import org.example.exception.BlobTooLargeException;
+import org.example.exception.DuplicateBlobException;
+import org.example.model.Blob;
+import org.example.model.BlobContent;
+import org.example.model.BlobDto;
+import org.example.model.BlobRange;
+import org.example.services.SegmentStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class SegmentStorageServiceTest {
+    private MongoDBClient mongoDBClient;
+    private Path directory;
+    private SegmentLog segmentLog;
+    private SegmentStorageService segmentStorageService;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        mongoDBClient = Mockito.mock(MongoDBClient.class);
+        directory = Files.createTempDirectory("segment-test");
+        segmentLog = new SegmentLog(directory, 100, 0, 50);
+        segmentStorageService = new SegmentStorageService(mongoDBClient, segmentLog);
+    }
+
+    @Test
+    public void openBlob_ShouldReturnRange_WhenBlobWasAppended() throws IOException {
+        segmentStorageService.saveBlob(new BlobDto("id", "Hello, Waleed:))!".getBytes()));
+
+        try (BlobContent content = segmentStorageService.openBlob("id", BlobRange.of(7, 12))) {
+            assertEquals(17, content.getSize());
+            assertEquals("Waleed", new String(content.openStream().readAllBytes()));
+        }
+        assertEquals("Hello, Waleed:))!", new String(segmentStorageService.getBlob("id").getData()));
+    }
+
+    @Test
+    public void saveBlob_ShouldThrowDuplicateBlobException_WhenBlobAlreadyExists() {
+        segmentStorageService.saveBlob(new BlobDto("id", "first".getBytes()));
+
+        assertThrows(DuplicateBlobException.class, () -> segmentStorageService.saveBlob(new BlobDto("id", "second".getBytes())));
+    }
+
+    @Test
+    public void saveBlob_ShouldThrowBlobTooLargeException_WhenBlobDoesNotFitIntoASegment() {
+        byte[] data = new byte[200];
+
+        assertThrows(BlobTooLargeException.class, () -> segmentStorageService.saveBlob("streamed", new ByteArrayInputStream(data), -1));
+        assertThrows(BlobTooLargeException.class, () -> segmentStorageService.saveBlob(new BlobDto("id", data)));
+        assertFalse(segmentLog.contains("streamed"));
+        verify(mongoDBClient, never()).insertMetadata(any(Blob.class));
+    }
+
+    @Test
+    public void saveBlob_ShouldSyncEachAppend_WhenDurabilityIsGroup() throws IOException {
+        SegmentLog durable = new SegmentLog(Files.createTempDirectory("segment-test"), 100, 0, 50, "group");
+        SegmentStorageService service = new SegmentStorageService(mongoDBClient, durable);
+
+        service.saveBlob(new BlobDto("id", "data".getBytes()));
+
+        assertEquals("data", new String(service.getBlob("id").getData()));
+    }
+
+    @Test
+    public void saveBlob_ShouldRemoveRecord_WhenMetadataCannotBeSaved() {
+        doThrow(new RuntimeException("down")).when(mongoDBClient).insertMetadata(any(Blob.class));
+
+        assertThrows(RuntimeException.class, () -> segmentStorageService.saveBlob(new BlobDto("id", "data".getBytes())));
+
+        assertThrows(BlobNotFoundException.class, () -> segmentStorageService.getBlob("id"));
+        assertFalse(new SegmentLog(directory, 100, 0, 50).contains("id"));
+    }
+
+    @Test
+    public void constructor_ShouldRecoverIndexAndCutTornRecord_WhenRestarted() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            segmentStorageService.saveBlob(new BlobDto("id" + i, ("value" + i).getBytes()));
+        }
+        assertTrue(segmentLog.getSegments() > 1);
+        Path active;
+        try (var files = Files.list(directory)) {
+            active = files.filter(file -> file.toString().endsWith(".segment")).max(Path::compareTo).orElseThrow();
+        }
+        try (OutputStream out = Files.newOutputStream(active, StandardOpenOption.APPEND)) {
+            out.write(new byte[]{1, 2, 3});
+        }
+
+        SegmentLog restarted = new SegmentLog(directory, 100, 0, 50);
+
+        assertEquals(10, restarted.getBlobs());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("value" + i, new String(new SegmentStorageService(mongoDBClient, restarted).getBlob("id" + i).getData()));
+        }
+    }
+
+    @Test
+    public void compact_ShouldDropGarbageAndKeepLiveBlobs_WhenSegmentsAreMostlyGarbage() {
+        for (int i = 0; i < 10; i++) {
+            segmentStorageService.saveBlob(new BlobDto("id" + i, ("value" + i).getBytes()));
+        }
+        for (int i = 0; i < 10; i += 2) {
+            segmentLog.remove("id" + i);
+        }
+
+        assertTrue(segmentLog.compact() > 0);
+
+        for (int i = 1; i < 10; i += 2) {
+            assertEquals("value" + i, new String(segmentStorageService.getBlob("id" + i).getData()));
+        }
+        assertFalse(new SegmentLog(directory, 100, 0, 50).contains("id0"));
+    }
+}
@@ -0,0 +1,63 @@
+package server;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.example.core.PinnedThreadMonitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PinnedThreadMonitorTest {
+    private Logger logger;
+    private ListAppender<ILoggingEvent> appender;
+    private PinnedThreadMonitor monitor;
+
+    @BeforeEach
+    public void setup() {
+        logger = (Logger) LoggerFactory.getLogger(PinnedThreadMonitor.class);
+        appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        monitor = new PinnedThreadMonitor(0);
+        monitor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.close();
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    public void onPinned_ShouldLogPin_WhenVirtualThreadBlocksInsideSynchronized() throws InterruptedException {
+        Object lock = new Object();
+        long deadline = System.currentTimeMillis() + 10_000;
+        // JFR delivers events to the stream about once a second, so keep pinning until the first one has been logged.
+        while (!hasLoggedPin() && System.currentTimeMillis() < deadline) {
+            Thread.ofVirtual().start(() -> {
+                synchronized (lock) {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }).join();
+            Thread.sleep(100);
+        }
+
+        assertTrue(hasLoggedPin());
+        assertTrue(monitor.getPinCounts().getOrDefault("application", 0L) >= 1);
+    }
+
+    private boolean hasLoggedPin() {
+        // The appender adds events while holding its own lock.
+        synchronized (appender) {
+            return appender.list.stream().anyMatch(event -> event.getFormattedMessage().contains("pinned its carrier"));
+        }
+    }
+}
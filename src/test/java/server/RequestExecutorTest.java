@@ -0,0 +1,109 @@
+package server;
+
+import io.undertow.Undertow;
+import org.example.core.DispatchingHandler;
+import org.example.core.RequestExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestExecutorTest {
+    private Undertow server;
+    private RequestExecutor requestExecutor;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+        if (requestExecutor != null) {
+            requestExecutor.shutdown();
+        }
+        System.clearProperty("REQUEST_EXECUTOR");
+        System.clearProperty("REQUEST_EXECUTOR_THREADS");
+    }
+
+    @Test
+    public void handleRequest_ShouldRunHandlerOnVirtualRequestThread_WhenModeIsVirtual() throws Exception {
+        requestExecutor = new RequestExecutor();
+
+        HttpResponse<String> response = send(requestExecutor);
+
+        assertEquals("virtual", requestExecutor.getMode());
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("request-"));
+        assertTrue(response.body().endsWith(" virtual=true blocking=true"));
+    }
+
+    @Test
+    public void handleRequest_ShouldRunHandlerOnPooledThread_WhenModeIsPlatform() throws Exception {
+        System.setProperty("REQUEST_EXECUTOR", "platform");
+        System.setProperty("REQUEST_EXECUTOR_THREADS", "2");
+        requestExecutor = new RequestExecutor();
+
+        HttpResponse<String> response = send(requestExecutor);
+
+        assertEquals("platform", requestExecutor.getMode());
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("request-"));
+        assertTrue(response.body().endsWith(" virtual=false blocking=true"));
+    }
+
+    @Test
+    public void shutdown_ShouldFinishRunningRequestsAndRejectNewOnes() throws Exception {
+        requestExecutor = new RequestExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        Future<?> running = requestExecutor.getExecutor().submit(() -> {
+            started.countDown();
+            TimeUnit.MILLISECONDS.sleep(100);
+            return null;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        requestExecutor.shutdown();
+
+        assertTrue(running.isDone());
+        assertFalse(running.isCancelled());
+        assertTrue(requestExecutor.getExecutor().isTerminated());
+        assertThrows(RejectedExecutionException.class, () -> requestExecutor.getExecutor().execute(() -> { }));
+    }
+
+    @Test
+    public void constructor_ShouldThrowIllegalArgumentException_WhenModeIsUnknown() {
+        System.setProperty("REQUEST_EXECUTOR", "reactive");
+
+        assertThrows(IllegalArgumentException.class, RequestExecutor::new);
+    }
+
+    /**
+     * Starts a server whose only handler reports the thread it runs on, behind a DispatchingHandler, and sends it a request.
+     */
+    private HttpResponse<String> send(RequestExecutor executor) throws Exception {
+        server = Undertow.builder()
+                .addHttpListener(0, "localhost")
+                .setHandler(new DispatchingHandler(exchange -> {
+                    Thread thread = Thread.currentThread();
+                    exchange.getResponseSender().send(thread.getName() + " virtual=" + thread.isVirtual()
+                            + " blocking=" + exchange.isBlocking());
+                }, executor.getExecutor()))
+                .build();
+        server.start();
+        int port = ((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(new URI("http://localhost:" + port + "/"))
+                .GET()
+                .build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,89 @@
+package server;
+
+import org.example.core.ServerProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerProfileTest {
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty("SERVER_PROFILE");
+        System.clearProperty("SERVER_BUFFER_SIZE");
+        System.clearProperty("SERVER_HTTP2");
+        System.clearProperty("SERVER_MAX_ENTITY_SIZE");
+        System.clearProperty("SERVER_DIRECT_BUFFERS");
+    }
+
+    @Test
+    public void constructor_ShouldLoadDefaultPreset_WhenNoProfileIsSet() {
+        ServerProfile profile = new ServerProfile();
+        int cores = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        assertEquals("default", profile.getName());
+        assertEquals(cores, profile.getIoThreads());
+        assertEquals(cores * 8, profile.getWorkerThreads());
+        assertEquals(16 * 1024, profile.getBufferSize());
+        assertEquals(1000, profile.getBacklog());
+        assertEquals(-1, profile.getMaxEntitySize());
+        assertTrue(profile.isDirectBuffers());
+        assertTrue(profile.isKeepAlive());
+        assertFalse(profile.isHttp2());
+    }
+
+    @Test
+    public void constructor_ShouldLoadSmallBlobPreset_WhenProfileIsSmallBlob() {
+        System.setProperty("SERVER_PROFILE", "small-blob");
+
+        ServerProfile profile = new ServerProfile();
+
+        assertEquals("small-blob", profile.getName());
+        assertEquals(4 * 1024, profile.getBufferSize());
+        assertEquals(4096, profile.getBacklog());
+        assertEquals(30_000, profile.getIdleTimeoutMs());
+        assertEquals(64L * 1024 * 1024, profile.getMaxEntitySize());
+        assertTrue(profile.isHttp2());
+        assertTrue(profile.isBufferPipelinedData());
+    }
+
+    @Test
+    public void constructor_ShouldLoadLargeBlobPreset_WhenProfileIsLargeBlob() {
+        System.setProperty("SERVER_PROFILE", "large-blob");
+
+        ServerProfile profile = new ServerProfile();
+
+        assertEquals("large-blob", profile.getName());
+        assertEquals(64 * 1024, profile.getBufferSize());
+        assertEquals(300_000, profile.getIdleTimeoutMs());
+        assertEquals(-1, profile.getMaxEntitySize());
+        assertFalse(profile.isHttp2());
+        assertFalse(profile.isBufferPipelinedData());
+    }
+
+    @Test
+    public void constructor_ShouldApplyOverridesOnTopOfPreset_WhenServerPropertiesAreSet() {
+        System.setProperty("SERVER_PROFILE", "small-blob");
+        System.setProperty("SERVER_BUFFER_SIZE", "8192");
+        System.setProperty("SERVER_HTTP2", "false");
+        System.setProperty("SERVER_MAX_ENTITY_SIZE", "1048576");
+        System.setProperty("SERVER_DIRECT_BUFFERS", "false");
+
+        ServerProfile profile = new ServerProfile();
+
+        assertEquals(8192, profile.getBufferSize());
+        assertFalse(profile.isHttp2());
+        assertEquals(1048576, profile.getMaxEntitySize());
+        assertFalse(profile.isDirectBuffers());
+        assertEquals(4096, profile.getBacklog());
+        assertTrue(profile.isBufferPipelinedData());
+    }
+
+    @Test
+    public void constructor_ShouldThrowIllegalArgumentException_WhenProfileIsUnknown() {
+        System.setProperty("SERVER_PROFILE", "tiny-blob");
+
+        assertThrows(IllegalArgumentException.class, ServerProfile::new);
+    }
+}
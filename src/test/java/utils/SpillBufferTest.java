@@ -0,0 +1,36 @@
+package utils;
+
+import org.example.exception.BlobTooLargeException;
+import org.example.utils.SpillBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpillBufferTest {
+
+    @Test
+    public void write_ShouldSpillToDisk_WhenThresholdIsExceeded() throws IOException {
+        try (SpillBuffer buffer = new SpillBuffer(4, 16)) {
+            buffer.write("Hello, Waleed".getBytes());
+
+            assertTrue(buffer.isSpilled());
+            assertEquals(13, buffer.size());
+            try (InputStream in = buffer.openInputStream()) {
+                assertEquals("Hello, Waleed", new String(in.readAllBytes()));
+            }
+        }
+    }
+
+    @Test
+    public void write_ShouldThrowBlobTooLargeException_WhenLimitIsExceeded() throws IOException {
+        try (SpillBuffer buffer = new SpillBuffer(4, 16)) {
+            buffer.write(new byte[16]);
+
+            assertThrows(BlobTooLargeException.class, () -> buffer.write(1));
+            assertEquals(16, buffer.size());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package utils;
+
+import org.example.utils.FileUtils;
+import org.example.utils.TreeHasher;
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Known vectors for the default 1 MiB chunk size, computed independently as in the Amazon Glacier tree hash:
+ * SHA-256 per chunk, then pairwise SHA-256 of the concatenated digests, carrying an odd digest up unchanged.
+ */
+public class TreeHasherTest {
+    private static final int MIB = 1024 * 1024;
+
+    @Test
+    public void treeHash_ShouldBeSha256OfNothing_WhenContentIsEmpty() {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", TreeHasher.treeHash(new byte[0]));
+    }
+
+    @Test
+    public void treeHash_ShouldBeSha256OfContent_WhenContentFitsIntoOneChunk() {
+        assertEquals("1b11b11e180bf440cb683f82864fea419453b142228d4f91dca80402d17f3730",
+                TreeHasher.treeHash("Hello, Waleed:))!".getBytes()));
+        assertEquals("631b84027d6b9e52b539c4e8373622d23032dfadc64d60af87339c9037e4f769", TreeHasher.treeHash(pattern(MIB)));
+    }
+
+    @Test
+    public void treeHash_ShouldCarryOddChunkUp_WhenContentSpansThreeChunks() {
+        assertEquals("51cac7f570aa825080a610fe5772009f36bcee47ddc485802a22baaa8d854761", TreeHasher.treeHash(pattern(2 * MIB + 5)));
+    }
+
+    @Test
+    public void treeHash_ShouldCombinePairwise_WhenContentSpansFourChunks() {
+        assertEquals("c7d749cd55cefa8ed8fbc208202e18d019b7701f29886f7c5d662d77b3903833", TreeHasher.treeHash(pattern(4 * MIB)));
+    }
+
+    @Test
+    public void finish_ShouldMatchKnownVectors_WhenContentIsStreamedInUnevenPieces() throws NoSuchAlgorithmException {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", streamTreeHash(new byte[0]));
+        assertEquals("1b11b11e180bf440cb683f82864fea419453b142228d4f91dca80402d17f3730",
+                streamTreeHash("Hello, Waleed:))!".getBytes()));
+        assertEquals("51cac7f570aa825080a610fe5772009f36bcee47ddc485802a22baaa8d854761", streamTreeHash(pattern(2 * MIB + 5)));
+    }
+
+    @Test
+    public void finish_ShouldLeaveLinearSha256OfWholeContent_WhenContentSpansSeveralChunks() throws NoSuchAlgorithmException {
+        MessageDigest linear = MessageDigest.getInstance("SHA-256");
+        TreeHasher hasher = new TreeHasher(linear);
+        byte[] data = pattern(2 * MIB + 5);
+        hasher.update(data, 0, data.length);
+        hasher.finish();
+
+        assertEquals("0044055b55bfc09c6930ac1b8058f74a520b410193a83b8619911304325377a6", FileUtils.toHex(linear.digest()));
+    }
+
+    /**
+     * Feeds the content to a TreeHasher in pieces that do not line up with the chunk boundaries.
+     */
+    private String streamTreeHash(byte[] data) throws NoSuchAlgorithmException {
+        TreeHasher hasher = new TreeHasher(MessageDigest.getInstance("SHA-256"));
+        int off = 0;
+        int piece = 1;
+        while (off < data.length) {
+            int len = Math.min(piece, data.length - off);
+            hasher.update(data, off, len);
+            off += len;
+            piece = piece * 3 + 7;
+        }
+        return FileUtils.toHex(hasher.finish());
+    }
+
+    /**
+     * Returns deterministic content whose period (251) does not divide the chunk size, so every chunk differs.
+     */
+    private static byte[] pattern(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i % 251);
+        }
+        return data;
+    }
+}